@@ -62,6 +62,9 @@ dependencies {
     // SwipeRefreshLayout
     implementation ("androidx.swiperefreshlayout:swiperefreshlayout:1.1.0")
 
+    // WorkManager (finishes queued post uploads in the background, across restarts)
+    implementation ("androidx.work:work-runtime:2.9.1")
+
     // AndroidX KTX extensions (provides Consumer and other utilities)
     implementation ("androidx.core:core-ktx:1.13.1") // Keep this updated with the latest stable version
 
@@ -0,0 +1,109 @@
+package com.uoc.fot.ict.edunews;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the post backfills against the Firestore emulator. Skipped unless an emulator host is given:
+ *
+ * ./gradlew connectedAndroidTest \
+ *     -Pandroid.testInstrumentationRunnerArguments.class=com.uoc.fot.ict.edunews.PostBackfillRunner \
+ *     -Pandroid.testInstrumentationRunnerArguments.firestoreEmulatorHost=10.0.2.2
+ *
+ * Add -Pandroid.testInstrumentationRunnerArguments.method=... (e.g. backfillSearchFields) to run
+ * a single backfill. Optional arguments: firestoreEmulatorPort (default 8080), postWriterZone
+ * (default Asia/Colombo).
+ *
+ * The app's own {@link FirebaseFirestore} instance is never used: the app process has already
+ * started (see {@link EduNewsApp}) and may have read production through it, after which it can no
+ * longer be pointed at the emulator. The backfills run on a separate {@link FirebaseApp} instead.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PostBackfillRunner {
+
+    private static FirebaseFirestore db;
+    private static ZoneId writerZone;
+
+    private static final String EMULATOR_APP_NAME = "post-backfill-emulator";
+
+    @BeforeClass
+    public static void connectToEmulator() {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        String host = arguments.getString("firestoreEmulatorHost");
+        assumeTrue("No firestoreEmulatorHost argument, skipping backfill", host != null);
+
+        // A fresh instance nothing has used yet, so useEmulator cannot be too late. If it still
+        // throws, the run fails here rather than carrying on against production.
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp emulatorApp = FirebaseApp.initializeApp(context,
+                FirebaseApp.getInstance().getOptions(), EMULATOR_APP_NAME);
+        db = FirebaseFirestore.getInstance(emulatorApp);
+        db.useEmulator(host, Integer.parseInt(arguments.getString("firestoreEmulatorPort", "8080")));
+        writerZone = ZoneId.of(arguments.getString("postWriterZone", "Asia/Colombo"));
+    }
+
+    @Test
+    public void backfillPostTimestamps() throws Exception {
+        // Seed one legacy post so the run is verifiable on an empty emulator
+        Map<String, Object> legacyPost = new HashMap<>();
+        legacyPost.put("title", "Legacy post");
+        legacyPost.put("postDate", "2024-05-01 09:30:00");
+        legacyPost.put("editDate", "");
+        Tasks.await(db.collection("posts").document("legacy-post-date").set(legacyPost));
+
+        int updated = Tasks.await(new PostBackfill(db, new PostDateMigration(writerZone)).run());
+        assertTrue(updated >= 1);
+
+        DocumentSnapshot migrated = Tasks.await(db.collection("posts").document("legacy-post-date").get());
+        Timestamp timestamp = migrated.getTimestamp(PostDates.POST_TIMESTAMP_FIELD);
+        assertEquals(PostDates.parseStored("2024-05-01 09:30:00", writerZone), timestamp.toDate().getTime());
+
+        // A second run finds nothing left to do
+        assertEquals(0, (int) Tasks.await(new PostBackfill(db, new PostDateMigration(writerZone)).run()));
+    }
+
+    @Test
+    public void backfillSearchFields() throws Exception {
+        // Seed one post written before the search fields existed
+        Map<String, Object> legacyPost = new HashMap<>();
+        legacyPost.put("title", "Éducation Week");
+        legacyPost.put("description", "Schools reopen");
+        legacyPost.put("titleLower", "education week"); // Written by earlier versions
+        Tasks.await(db.collection("posts").document("legacy-search-fields").set(legacyPost));
+
+        int updated = Tasks.await(new PostBackfill(db, new PostSearchFieldsMigration()).run());
+        assertTrue(updated >= 1);
+
+        DocumentSnapshot migrated = Tasks.await(db.collection("posts").document("legacy-search-fields").get());
+        assertFalse(migrated.contains("titleLower")); // Dropped, search tokens cover title prefixes
+        List<?> tokens = (List<?>) migrated.get(PostSearchFields.SEARCH_TOKENS_FIELD);
+        assertTrue(tokens.contains("edu"));
+        assertTrue(tokens.contains("schools"));
+
+        // A second run finds nothing left to do
+        assertEquals(0, (int) Tasks.await(new PostBackfill(db, new PostSearchFieldsMigration()).run()));
+    }
+}
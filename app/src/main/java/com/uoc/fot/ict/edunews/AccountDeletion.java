@@ -0,0 +1,257 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+import com.google.firebase.storage.FirebaseStorage;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deletes an account step by step: the profile picture, optionally every post with its images,
+ * the user document, and finally the Firebase Authentication account.
+ *
+ * Posts are deleted one page at a time: the page's images first, a few at a time so storage
+ * is not flooded, then its documents in one WriteBatch. The current step and the number of
+ * deleted posts are checkpointed in SharedPreferences, so a deletion that was interrupted
+ * (app killed, connection lost, sign-in too old) can be {@link #resume resumed} where it stopped.
+ */
+public class AccountDeletion {
+
+    private static final String TAG = "AccountDeletion";
+
+    private static final String PREFS_NAME = "account_deletion";
+    private static final String KEY_USER_ID = "user_id";
+    private static final String KEY_DELETE_POSTS = "delete_posts";
+    private static final String KEY_PROFILE_PICTURE_URL = "profile_picture_url";
+    private static final String KEY_STEP = "step";
+    private static final String KEY_POSTS_DELETED = "posts_deleted";
+
+    // Firestore allows at most 500 writes per batch; every post is one delete
+    private static final int PAGE_SIZE = 500;
+    // Image deletions in flight at once; each image has up to three stored sizes
+    private static final int MAX_PARALLEL_IMAGE_DELETES = 8;
+
+    /**
+     * The steps of a deletion, in order.
+     */
+    public enum Step { PROFILE_PICTURE, POSTS, USER_DOCUMENT, AUTH_ACCOUNT }
+
+    /**
+     * Receives progress on the main thread.
+     */
+    public interface ProgressListener {
+        /**
+         * @param step The step being worked on.
+         * @param postsDone Posts deleted so far, including those of an earlier, interrupted run.
+         * @param postsTotal All posts to delete, or 0 while not known or if posts are kept.
+         */
+        void onProgress(Step step, int postsDone, int postsTotal);
+    }
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final FirebaseFirestore db;
+    private final FirebaseStorage storage;
+
+    public AccountDeletion(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.db = FirebaseFirestore.getInstance();
+        this.storage = FirebaseStorage.getInstance();
+    }
+
+    /**
+     * @return True if a deletion of this user's account was started and did not finish.
+     */
+    public boolean hasPending(String userId) {
+        return userId.equals(prefs.getString(KEY_USER_ID, null));
+    }
+
+    /**
+     * Starts deleting the account, replacing any earlier checkpoint.
+     * @param deletePosts True to delete the user's posts and their images too.
+     * @param profilePictureUrl The user's profile picture, or null if none.
+     * @return A task that succeeds once the authentication account is deleted. On failure the
+     * checkpoint is kept; a FirebaseAuthRecentLoginRequiredException asks for a fresh sign-in.
+     */
+    public Task<Void> start(FirebaseUser user, boolean deletePosts, @Nullable String profilePictureUrl,
+                            ProgressListener listener) {
+        prefs.edit()
+                .putString(KEY_USER_ID, user.getUid())
+                .putBoolean(KEY_DELETE_POSTS, deletePosts)
+                .putString(KEY_PROFILE_PICTURE_URL, profilePictureUrl)
+                .putString(KEY_STEP, Step.PROFILE_PICTURE.name())
+                .putInt(KEY_POSTS_DELETED, 0)
+                .commit(); // Written before anything is deleted, so a crash can always be resumed
+        return resume(user, listener);
+    }
+
+    /**
+     * Continues a pending deletion from its checkpoint.
+     * @return See {@link #start}.
+     */
+    public Task<Void> resume(FirebaseUser user, ProgressListener listener) {
+        if (!hasPending(user.getUid())) {
+            return Tasks.forException(new IllegalStateException("No account deletion to resume."));
+        }
+        return runStep(user, Step.valueOf(prefs.getString(KEY_STEP, Step.PROFILE_PICTURE.name())), listener);
+    }
+
+    /**
+     * Forgets a pending deletion. What was deleted already stays deleted.
+     */
+    public void abandon() {
+        prefs.edit().clear().apply();
+    }
+
+    private Task<Void> runStep(FirebaseUser user, Step step, ProgressListener listener) {
+        prefs.edit().putString(KEY_STEP, step.name()).apply();
+        listener.onProgress(step, prefs.getInt(KEY_POSTS_DELETED, 0), 0);
+        switch (step) {
+            case PROFILE_PICTURE:
+                // A picture that cannot be deleted must not keep the account alive
+                return PostImages.delete(storage, prefs.getString(KEY_PROFILE_PICTURE_URL, null))
+                        .continueWithTask(task -> {
+                            if (!task.isSuccessful()) {
+                                Log.e(TAG, "Failed to delete profile picture: " + task.getException());
+                            }
+                            return runStep(user, Step.POSTS, listener);
+                        });
+            case POSTS:
+                if (!prefs.getBoolean(KEY_DELETE_POSTS, false)) {
+                    return runStep(user, Step.USER_DOCUMENT, listener);
+                }
+                return deletePosts(user.getUid(), listener)
+                        .onSuccessTask(unused -> runStep(user, Step.USER_DOCUMENT, listener));
+            case USER_DOCUMENT:
+                return db.collection("users").document(user.getUid()).delete()
+                        .onSuccessTask(unused -> runStep(user, Step.AUTH_ACCOUNT, listener));
+            case AUTH_ACCOUNT:
+            default:
+                // The profile is deleted again first: it may have been recreated (e.g. by an older
+                // app version) while the deletion waited for a fresh sign-in
+                return db.collection("users").document(user.getUid()).delete()
+                        .onSuccessTask(unused -> user.delete())
+                        .onSuccessTask(unused -> {
+                            abandon(); // Done, nothing left to resume
+                            return Tasks.forResult(null);
+                        });
+        }
+    }
+
+    /**
+     * Counts the remaining posts for the progress bar, then deletes them page by page.
+     */
+    private Task<Void> deletePosts(String userId, ProgressListener listener) {
+        Query remaining = db.collection("posts").whereEqualTo("userId", userId);
+        return remaining.count().get(AggregateSource.SERVER).continueWithTask(countTask -> {
+            int deleted = prefs.getInt(KEY_POSTS_DELETED, 0);
+            // The count only sizes the progress bar; without it the pages are deleted all the same
+            int total = countTask.isSuccessful() ? deleted + (int) countTask.getResult().getCount() : 0;
+            return deletePage(remaining, total, listener);
+        }).addOnSuccessListener(unused -> PostRepository.getInstance(context).invalidate()); // Feeds must drop the posts
+    }
+
+    /**
+     * Deletes the first page of the user's remaining posts, then the next, until none are left.
+     * Every page starts from the beginning again, as the previous one no longer exists.
+     */
+    private Task<Void> deletePage(Query remaining, int total, ProgressListener listener) {
+        return remaining.limit(PAGE_SIZE).get().onSuccessTask(page -> {
+            List<DocumentSnapshot> posts = page.getDocuments();
+            if (posts.isEmpty()) {
+                return Tasks.forResult(null);
+            }
+            int deletedBefore = prefs.getInt(KEY_POSTS_DELETED, 0);
+            // Images first: once a document is gone, nothing points at its images any more
+            return deleteImages(posts, done -> listener.onProgress(Step.POSTS, deletedBefore + done, total))
+                    .continueWithTask(imagesTask -> {
+                        WriteBatch batch = db.batch();
+                        for (DocumentSnapshot post : posts) {
+                            batch.delete(post.getReference());
+                        }
+                        return batch.commit();
+                    })
+                    .onSuccessTask(unused -> {
+                        int deleted = deletedBefore + posts.size();
+                        prefs.edit().putInt(KEY_POSTS_DELETED, deleted).apply(); // Checkpoint
+                        PostSearchStore searchStore = PostSearchStore.getInstance(context);
+                        for (DocumentSnapshot post : posts) {
+                            searchStore.remove(post.getId());
+                        }
+                        listener.onProgress(Step.POSTS, deleted, total);
+                        Log.d(TAG, "Deleted " + deleted + " posts so far.");
+                        return posts.size() < PAGE_SIZE
+                                ? Tasks.forResult(null) // Last page
+                                : deletePage(remaining, total, listener);
+                    });
+        });
+    }
+
+    /**
+     * Receives how many images of a page are done.
+     */
+    private interface ImageProgress {
+        void onImagesDone(int done);
+    }
+
+    /**
+     * Deletes the images of the given posts, at most {@link #MAX_PARALLEL_IMAGE_DELETES} at a
+     * time. Failures are logged and skipped, as the original code did, so one stuck file does not
+     * block the account deletion.
+     * @return A task that completes once every image was attempted.
+     */
+    private Task<Void> deleteImages(List<DocumentSnapshot> posts, ImageProgress progress) {
+        TaskCompletionSource<Void> allDone = new TaskCompletionSource<>();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        int lanes = Math.min(MAX_PARALLEL_IMAGE_DELETES, posts.size());
+        AtomicInteger activeLanes = new AtomicInteger(lanes);
+        for (int i = 0; i < lanes; i++) {
+            deleteNextImage(posts, next, done, activeLanes, progress, allDone);
+        }
+        return allDone.getTask();
+    }
+
+    /**
+     * Runs one lane: deletes the images of the next post nobody took yet, then takes another,
+     * until the list is used up. The last lane to finish completes allDone.
+     */
+    private void deleteNextImage(List<DocumentSnapshot> posts, AtomicInteger next, AtomicInteger done,
+                                 AtomicInteger activeLanes, ImageProgress progress,
+                                 TaskCompletionSource<Void> allDone) {
+        int index = next.getAndIncrement();
+        if (index >= posts.size()) {
+            if (activeLanes.decrementAndGet() == 0) {
+                allDone.setResult(null);
+            }
+            return;
+        }
+        DocumentSnapshot post = posts.get(index);
+        PostImages.delete(storage,
+                        post.getString(PostImages.IMAGE_URL_FIELD),
+                        post.getString(PostImages.MEDIUM_URL_FIELD),
+                        post.getString(PostImages.THUMB_URL_FIELD))
+                .addOnCompleteListener(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.e(TAG, "Failed to delete post image for post " + post.getId() + ": " + task.getException());
+                    }
+                    progress.onImagesDone(done.incrementAndGet());
+                    deleteNextImage(posts, next, done, activeLanes, progress, allDone);
+                });
+    }
+}
@@ -0,0 +1,55 @@
+package com.uoc.fot.ict.edunews;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shared background executors for work that must stay off the main thread
+ * (disk caches, sorting, indexing, image encoding). Results are handed back with {@link #runOnMain(Runnable)}.
+ */
+public final class AppExecutors {
+
+    // Single thread so cache files are never read and written concurrently
+    private static final ExecutorService DISK_IO = Executors.newSingleThreadExecutor();
+    // Single thread so results of CPU work (sorting, filtering) complete in submission order
+    private static final ExecutorService COMPUTE = Executors.newSingleThreadExecutor();
+    // Separate from COMPUTE so a slow image decode never delays list updates
+    private static final ExecutorService IMAGE_WORK = Executors.newSingleThreadExecutor();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private AppExecutors() {
+        // Static helpers only
+    }
+
+    /**
+     * @return The executor used for all local file reads and writes.
+     */
+    public static ExecutorService diskIO() {
+        return DISK_IO;
+    }
+
+    /**
+     * @return The executor used for CPU work on lists, such as sorting and filtering.
+     */
+    public static ExecutorService compute() {
+        return COMPUTE;
+    }
+
+    /**
+     * @return The executor used for decoding, scaling and encoding images before upload.
+     */
+    public static ExecutorService imageWork() {
+        return IMAGE_WORK;
+    }
+
+    /**
+     * Posts the given runnable to the main (UI) thread.
+     * @param runnable The work to run on the main thread.
+     */
+    public static void runOnMain(Runnable runnable) {
+        MAIN_HANDLER.post(runnable);
+    }
+}
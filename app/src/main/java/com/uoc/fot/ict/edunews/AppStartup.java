@@ -0,0 +1,142 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthInvalidUserException;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.List;
+
+/**
+ * Does the work the first screens wait for as soon as the process starts, all in parallel:
+ * opening Firestore, checking that the signed-in account still exists, reading the user's
+ * profile and loading the first page of the home feed. The {@link SplashScreen} stays up only
+ * until {@link #whenReady} completes, so a signed-in cold start opens on a populated feed.
+ *
+ * The feed and profile are not kept here; they land in the {@link PostRepository} and the
+ * {@link UserProfileStore}, where the home screen finds them. Must be used on the main thread.
+ */
+public class AppStartup {
+
+    private static final String TAG = "AppStartup";
+
+    // The splash never waits longer than this; home shows its own progress after that
+    private static final long MAX_WAIT_MILLIS = 2500;
+
+    /**
+     * Where the app goes after the splash.
+     */
+    public enum Route {
+        HOME, // Signed in with a valid account
+        SIGNED_OUT // No user, or the account was deleted or disabled
+    }
+
+    private static AppStartup instance;
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    @Nullable
+    private Task<Void> ready; // Null until started
+    // Completed by the first home feed result the home screen can draw
+    private final TaskCompletionSource<Void> homeFeed = new TaskCompletionSource<>();
+
+    private AppStartup(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @param context Any context; only the application context is retained.
+     * @return The process-wide startup.
+     */
+    public static synchronized AppStartup getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppStartup(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the startup work. Later calls do nothing.
+     */
+    public void start() {
+        if (ready != null) {
+            return;
+        }
+        FirebaseFirestore.getInstance(); // Opens the local cache now, not on the first screen's query
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser(); // Restored from disk, no network
+        if (user == null) {
+            ready = Tasks.forResult(null);
+            return;
+        }
+
+        Task<Boolean> session = user.reload().continueWith(task -> {
+            if (task.isSuccessful() || !(task.getException() instanceof FirebaseAuthInvalidUserException)) {
+                return true; // Offline or slow: the cached session still counts
+            }
+            Log.w(TAG, "Signed-in account no longer exists, signing out.", task.getException());
+            FirebaseAuth.getInstance().signOut();
+            return false;
+        });
+        UserProfileStore.getInstance(context).prefetch(user.getUid());
+        ready = session.continueWithTask(sessionTask -> sessionTask.getResult()
+                ? homeFeed.getTask()
+                : Tasks.forResult(null));
+        // Both reads run at once: the feed was requested before the session check answered
+        prefetchHomeFeed();
+    }
+
+    /**
+     * @return A task that completes on the main thread once the first screen can be shown: right
+     * away when signed out, else when the account is checked and the home feed can be drawn, or
+     * after {@link #MAX_WAIT_MILLIS} at the latest.
+     */
+    public Task<Route> whenReady() {
+        start();
+        TaskCompletionSource<Route> result = new TaskCompletionSource<>();
+        ready.addOnCompleteListener(task -> result.trySetResult(currentRoute()));
+        handler.postDelayed(() -> {
+            if (result.trySetResult(currentRoute())) {
+                Log.d(TAG, "Startup not ready after " + MAX_WAIT_MILLIS + " ms, continuing.");
+            }
+        }, MAX_WAIT_MILLIS);
+        return result.getTask();
+    }
+
+    /**
+     * @return The route for whoever is signed in now; the session check signs out a deleted account.
+     */
+    private Route currentRoute() {
+        return FirebaseAuth.getInstance().getCurrentUser() != null ? Route.HOME : Route.SIGNED_OUT;
+    }
+
+    /**
+     * Loads the home feed into the repository. A non-empty cached copy is enough to draw the
+     * feed; the server read keeps running, and the home screen joins it.
+     */
+    private void prefetchHomeFeed() {
+        PostRepository.getInstance(context).loadHomeFeed(ReadPolicy.HOME_MAX_AGE_MILLIS, new PostRepository.FeedCallback() {
+            @Override
+            public void onArticlesLoaded(List<NewsArticle> articles, boolean fromCache) {
+                if (!fromCache || !articles.isEmpty()) {
+                    homeFeed.trySetResult(null);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.w(TAG, "Home feed prefetch failed: " + e.getMessage());
+                homeFeed.trySetResult(null); // Home shows its own error and cached copy
+            }
+        });
+    }
+}
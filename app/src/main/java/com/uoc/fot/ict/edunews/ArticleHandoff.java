@@ -0,0 +1,46 @@
+package com.uoc.fot.ict.edunews;
+
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+/**
+ * In-process handoff of articles from the lists to the article screen. A list puts the tapped
+ * article here before starting {@link news} with only its ID, so the article screen can draw it
+ * in its first frame instead of waiting for Firestore. The article screen still revalidates the
+ * document and patches whatever changed.
+ *
+ * Entries are kept in a small LRU instead of being removed on read, so the article screen can
+ * draw instantly again after a configuration change. After process death the store is empty and
+ * the article screen simply loads the document as before.
+ */
+public final class ArticleHandoff {
+
+    // A few recently opened articles are plenty; each is only a handful of strings
+    private static final int MAX_ENTRIES = 16;
+
+    private static final LruCache<String, NewsArticle> articles = new LruCache<>(MAX_ENTRIES);
+
+    private ArticleHandoff() {
+        // Static helpers only
+    }
+
+    /**
+     * Makes an article available to the article screen.
+     * @param article The article about to be opened.
+     */
+    public static void put(NewsArticle article) {
+        if (article != null && article.getId() != null) {
+            articles.put(article.getId(), article);
+        }
+    }
+
+    /**
+     * @param articleId The ID passed to the article screen.
+     * @return The handed-off article, or null if there is none (e.g. after process death).
+     */
+    @Nullable
+    public static NewsArticle get(String articleId) {
+        return articleId != null ? articles.get(articleId) : null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.uoc.fot.ict.edunews;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Ordering helpers for article lists, working only on the pre-parsed
+ * {@link NewsArticle#getPostDateMillis()} keys. Intended to run off the main thread.
+ */
+final class ArticleOrdering {
+
+    // Newest first; posts without a date (UNKNOWN == 0) naturally sort last
+    private static final Comparator<NewsArticle> NEWEST_FIRST =
+            (a1, a2) -> Long.compare(a2.getPostDateMillis(), a1.getPostDateMillis());
+
+    private ArticleOrdering() {
+        // Static helpers only
+    }
+
+    /**
+     * Puts a list into newest-first order. Lists coming straight from a feed query already are,
+     * which is detected in a single pass, so the sort itself only runs after local changes.
+     * @param articles The list to order in place.
+     */
+    static void ensureNewestFirst(List<NewsArticle> articles) {
+        for (int i = 1; i < articles.size(); i++) {
+            if (NEWEST_FIRST.compare(articles.get(i - 1), articles.get(i)) > 0) {
+                Collections.sort(articles, NEWEST_FIRST); // Stable, keeps server order among equal dates
+                return;
+            }
+        }
+    }
+
+    /**
+     * Turns a newest-first list into the requested order. Oldest first is simply the reverse.
+     * @param newestFirst A list in newest-first order, modified in place.
+     * @param oldestFirst True for oldest first.
+     */
+    static void applyOrder(List<NewsArticle> newestFirst, boolean oldestFirst) {
+        if (oldestFirst) {
+            Collections.reverse(newestFirst);
+        }
+    }
+}
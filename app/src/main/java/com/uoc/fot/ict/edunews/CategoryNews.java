@@ -16,35 +16,35 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.bumptech.glide.Glide;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 public class CategoryNews extends AppCompatActivity {
 
     // Key for passing the category name via Intent
     public static final String EXTRA_CATEGORY_NAME = "extra_category_name";
 
+    // Request the next page when this many rows are left below the screen
+    private static final int PREFETCH_DISTANCE = 5;
+
     private NewsArticleAdapter newsArticleAdapter; // Reusing your existing adapter for news cards
     private TextView emptyStateText;
     private ProgressBar progressBar;
 
     // Data and Firebase
     private String currentCategory;
-    private FirebaseFirestore db;
+    // The category as loaded, in display order, before local changes from the PostStore
     private final List<NewsArticle> articlesList = new ArrayList<>();
 
     // Enum to keep track of the current sort order for articles
     private SortOrder currentSortOrder = SortOrder.LATEST_TO_OLDEST;
+    // Direction of the server query that articlesList was loaded with. It differs from
+    // currentSortOrder when a fully loaded category was reversed locally instead of refetched.
+    private boolean loadedOldestFirst = false;
+    private LiveFeed liveFeed; // Null unless live updates are enabled in the profile screen
 
     // Enum defining the possible sorting orders
     private enum SortOrder {
@@ -65,9 +65,6 @@ public class CategoryNews extends AppCompatActivity {
         emptyStateText = findViewById(R.id.emptyStateText);
         progressBar = findViewById(R.id.progressBar);
 
-        // Initialize Firestore instance
-        db = FirebaseFirestore.getInstance();
-
         // Retrieve the category name passed from the previous activity (e.g., HomeFragment)
         if (getIntent().hasExtra(EXTRA_CATEGORY_NAME)) {
             currentCategory = getIntent().getStringExtra(EXTRA_CATEGORY_NAME);
@@ -81,8 +78,17 @@ public class CategoryNews extends AppCompatActivity {
 
         // Set up the RecyclerView with its adapter and layout manager
         newsArticleAdapter = new NewsArticleAdapter(new ArrayList<>(), this::navigateToNewsDetail);
-        categoryNewsRecyclerView.setLayoutManager(new LinearLayoutManager(this)); // Vertical list layout
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        categoryNewsRecyclerView.setLayoutManager(layoutManager); // Vertical list layout
         categoryNewsRecyclerView.setAdapter(newsArticleAdapter);
+        // Load the next page before the user reaches the end of the list
+        categoryNewsRecyclerView.addOnScrollListener(new PaginationScrollListener(
+                layoutManager, PREFETCH_DISTANCE, this::loadMoreArticles));
+        // Warm the thumbnails of the rows about to scroll in
+        categoryNewsRecyclerView.addOnScrollListener(new ScrollAheadPreloader(
+                this, Glide.with(this), layoutManager, newsArticleAdapter, 0));
+        // Hold back image loads for rows that only fly past during a fling
+        new FlingImagePauser(Glide.with(this)).attachTo(categoryNewsRecyclerView);
 
         // NEW: Register OnBackPressedCallback for modern back press handling
         getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true /* enabled by default */) {
@@ -103,45 +109,140 @@ public class CategoryNews extends AppCompatActivity {
         backButton.setOnClickListener(v -> getOnBackPressedDispatcher().onBackPressed());
         sortButton.setOnClickListener(this::showSortPopupMenu); // Show sorting options when sort button is clicked
 
+        if (FeedSettings.isLiveUpdatesEnabled(this)) {
+            liveFeed = new LiveFeed(this, PostSearchStore.getInstance(this), new LiveFeed.Listener() {
+                @Override
+                public void onLiveFeedChanged(List<NewsArticle> articles) {
+                    showLiveArticles(articles);
+                }
+
+                @Override
+                public void onLiveFeedError(Exception e) {
+                    Log.e("CategoryNewsActivity", "Live category feed stopped: " + e.getMessage());
+                }
+            });
+        }
+
         // Fetch news articles from Firestore for the determined category
         fetchNewsArticles();
+        // Posts created, edited or deleted on this device show up without refetching
+        PostStore.getInstance(this).observe(this, this::showArticles);
     }
 
     /**
-     * Fetches news articles from Firestore based on the currentCategory.
-     * Articles are initially ordered by postDate in descending order (latest to oldest).
+     * Fetches the first page of the currentCategory in the current sort order through the
+     * PostRepository, followed by any pages already loaded in that order earlier.
+     * Both sort orders are server-side queries with their own cursors.
+     * A cached copy is shown immediately when available and then replaced by the server result,
+     * unless the server was asked less than ReadPolicy.CATEGORY_MAX_AGE_MILLIS ago.
      */
     private void fetchNewsArticles() {
         progressBar.setVisibility(View.VISIBLE); // Show progress bar while loading
         emptyStateText.setVisibility(View.GONE); // Hide empty state text
 
-        db.collection("posts")
-                .whereEqualTo("category", currentCategory)
-                .orderBy("postDate", Query.Direction.DESCENDING) // Default sort for fetching
-                .get()
-                .addOnCompleteListener(task -> {
-                    progressBar.setVisibility(View.GONE); // Hide progress bar after loading
-                    if (task.isSuccessful()) {
-                        articlesList.clear(); // Clear any previously loaded articles
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            NewsArticle article = document.toObject(NewsArticle.class);
-                            article.setId(document.getId()); // Explicitly set the document ID
-                            articlesList.add(article); // Add to the list
-                        }
-
-                        if (articlesList.isEmpty()) {
-                            emptyStateText.setVisibility(View.VISIBLE); // Show empty state if no articles found
-                        } else {
-                            sortArticles(currentSortOrder); // Apply the current sorting order to the fetched list
-                            newsArticleAdapter.updateData(articlesList); // Update the RecyclerView adapter with the (sorted) data
-                            emptyStateText.setVisibility(View.GONE); // Ensure empty state is hidden
-                        }
-                    } else {
-                        Log.e("CategoryNewsActivity", "Error getting documents: " + (task.getException() != null ? task.getException().getMessage() : "Unknown error"));
-                        Toast.makeText(this, "Failed to load articles: " + (task.getException() != null ? task.getException().getMessage() : "Unknown error"), Toast.LENGTH_SHORT).show();
-                        emptyStateText.setVisibility(View.VISIBLE); // Show empty state on error
-                    }
-                });
+        final boolean oldestFirst = currentSortOrder == SortOrder.OLDEST_TO_LATEST;
+        PostRepository repository = PostRepository.getInstance(this);
+        repository.loadCategory(currentCategory, oldestFirst, ReadPolicy.CATEGORY_MAX_AGE_MILLIS, new PostRepository.FeedCallback() {
+            @Override
+            public void onArticlesLoaded(List<NewsArticle> articles, boolean fromCache) {
+                if (isFinishing() || isDestroyed() || oldestFirst != isOldestFirst()) {
+                    return; // Activity gone, or the sort order changed while this page was loading
+                }
+                progressBar.setVisibility(articles.isEmpty() && fromCache ? View.VISIBLE : View.GONE);
+                loadedOldestFirst = oldestFirst;
+                articlesList.clear(); // Clear any previously loaded articles
+                articlesList.addAll(articles);
+                articlesList.addAll(repository.getLoadedCategoryPages(currentCategory, oldestFirst));
+                List<NewsArticle> shown = showArticles();
+
+                if (shown.isEmpty()) {
+                    emptyStateText.setVisibility(fromCache ? View.GONE : View.VISIBLE); // Show empty state if no articles found
+                } else {
+                    emptyStateText.setVisibility(View.GONE); // Ensure empty state is hidden
+                }
+                if (!fromCache && liveFeed != null) {
+                    // Follow this exact list from now on instead of refetching it
+                    liveFeed.seed(repository.categoryQuery(currentCategory, oldestFirst), repository.sortField(),
+                            !oldestFirst, articlesList);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                progressBar.setVisibility(View.GONE);
+                Log.e("CategoryNewsActivity", "Error getting documents: " + e.getMessage());
+                Toast.makeText(CategoryNews.this, "Failed to load articles: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                if (articlesList.isEmpty()) {
+                    emptyStateText.setVisibility(View.VISIBLE); // Show empty state on error
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the next page in the current sort order and appends it to the list.
+     * Called while scrolling; the repository ignores calls while a page is in flight.
+     */
+    private void loadMoreArticles() {
+        final boolean oldestFirst = loadedOldestFirst;
+        if (oldestFirst != isOldestFirst()) {
+            return; // The list was reversed locally because it is already complete
+        }
+        PostRepository.getInstance(this).loadNextCategoryPage(currentCategory, oldestFirst, new PostRepository.PageCallback() {
+            @Override
+            public void onPageLoaded(List<NewsArticle> page, boolean endReached) {
+                if (isFinishing() || isDestroyed() || oldestFirst != isOldestFirst() || oldestFirst != loadedOldestFirst) {
+                    return;
+                }
+                if (liveFeed != null && liveFeed.appendPage(page)) {
+                    return; // The LiveFeed republishes the whole list with the page at the end
+                }
+                articlesList.addAll(page);
+                showArticles();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                Log.e("CategoryNewsActivity", "Error getting next page: " + e.getMessage());
+                Toast.makeText(CategoryNews.this, "Failed to load more articles: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Shows the list published by the LiveFeed. It is in the order the category was loaded
+     * in, so it is reversed when the user has since flipped a fully loaded category locally.
+     */
+    private void showLiveArticles(List<NewsArticle> articles) {
+        if (loadedOldestFirst != isOldestFirst()) {
+            Collections.reverse(articles);
+        }
+        articlesList.clear();
+        articlesList.addAll(articles);
+        emptyStateText.setVisibility(showArticles().isEmpty() ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Shows articlesList with the local changes of the PostStore laid over it: posts of this
+     * category created or edited on this device, without the ones deleted or moved elsewhere.
+     * @return The list shown.
+     */
+    private List<NewsArticle> showArticles() {
+        boolean complete = PostRepository.getInstance(this).isCategoryFullyLoaded(currentCategory, loadedOldestFirst);
+        List<NewsArticle> shown = PostStore.getInstance(this).applyTo(articlesList,
+                article -> currentCategory.equals(article.getCategory()), !isOldestFirst(), complete);
+        newsArticleAdapter.updateData(shown);
+        return shown;
+    }
+
+    private boolean isOldestFirst() {
+        return currentSortOrder == SortOrder.OLDEST_TO_LATEST;
     }
 
     /**
@@ -157,12 +258,10 @@ public class CategoryNews extends AppCompatActivity {
             public boolean onMenuItemClick(MenuItem item) {
                 int id = item.getItemId(); // Get the ID of the clicked menu item
                 if (id == R.id.action_sort_latest_to_oldest) {
-                    currentSortOrder = SortOrder.LATEST_TO_OLDEST; // Set sort order
-                    sortArticles(currentSortOrder); // Apply sort
+                    applySortOrder(SortOrder.LATEST_TO_OLDEST);
                     return true;
                 } else if (id == R.id.action_sort_oldest_to_latest) {
-                    currentSortOrder = SortOrder.OLDEST_TO_LATEST; // Set sort order
-                    sortArticles(currentSortOrder); // Apply sort
+                    applySortOrder(SortOrder.OLDEST_TO_LATEST);
                     return true;
                 }
                 return false; // Return false for unhandled menu items
@@ -172,35 +271,38 @@ public class CategoryNews extends AppCompatActivity {
     }
 
     /**
-     * Sorts the articlesList based on the specified SortOrder.
-     * Uses a custom Comparator to parse and compare dates.
+     * Switches the sort order. If the whole category is already loaded, the list is server
+     * ordered and complete, so the other order is a cheap reverse done off the UI thread.
+     * Otherwise each order is loaded from the server with its own query and cursor, so
+     * "oldest first" really starts at the oldest post of the category.
      *
      * @param order The desired sorting order (LATEST_TO_OLDEST or OLDEST_TO_LATEST).
      */
-    private void sortArticles(SortOrder order) {
-        SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-
-        Collections.sort(articlesList, new Comparator<NewsArticle>() {
-            @Override
-            public int compare(NewsArticle a1, NewsArticle a2) {
-                try {
-                    Date date1 = inputFormat.parse(a1.getPostDate());
-                    Date date2 = inputFormat.parse(a2.getPostDate());
-
-                    // Handle cases where date parsing might fail or dates are null
-                    if (date1 == null && date2 == null) return 0;
-                    if (date1 == null) return (order == SortOrder.LATEST_TO_OLDEST) ? 1 : -1; // Nulls last for L->O, first for O->L
-                    if (date2 == null) return (order == SortOrder.LATEST_TO_OLDEST) ? -1 : 1; // Nulls last for L->O, first for O->L
-
-                    return (order == SortOrder.LATEST_TO_OLDEST) ? date2.compareTo(date1) : date1.compareTo(date2);
+    private void applySortOrder(SortOrder order) {
+        if (order == currentSortOrder) {
+            return;
+        }
+        currentSortOrder = order;
 
-                } catch (ParseException e) {
-                    Log.e("CategoryNewsActivity", "Date parsing error for sorting: " + e.getMessage());
-                    return 0; // Treat items as equal if date cannot be parsed for sorting purposes
-                }
+        if (!PostRepository.getInstance(this).isCategoryFullyLoaded(currentCategory, loadedOldestFirst)) {
+            if (liveFeed != null) {
+                liveFeed.reset(); // The followed list belongs to the other order
             }
+            fetchNewsArticles();
+            return;
+        }
+        final List<NewsArticle> reversed = new ArrayList<>(articlesList);
+        AppExecutors.compute().execute(() -> {
+            Collections.reverse(reversed);
+            AppExecutors.runOnMain(() -> {
+                if (isFinishing() || isDestroyed() || order != currentSortOrder) {
+                    return;
+                }
+                articlesList.clear();
+                articlesList.addAll(reversed);
+                showArticles(); // Diffed into move animations
+            });
         });
-        newsArticleAdapter.updateData(articlesList); // Notify adapter that data has changed and is sorted
     }
 
     /**
@@ -210,6 +312,7 @@ public class CategoryNews extends AppCompatActivity {
      * @param article The NewsArticle object that was clicked.
      */
     private void navigateToNewsDetail(NewsArticle article) {
+        ArticleHandoff.put(article); // Lets the article screen draw it before Firestore answers
         Intent intent = new Intent(this, news.class);
         intent.putExtra("NEWS_ARTICLE_ID", article.getId());
         startActivity(intent);
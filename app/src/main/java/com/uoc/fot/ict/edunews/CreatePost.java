@@ -13,11 +13,12 @@ import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.Switch; // NEW IMPORT for Switch
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import com.bumptech.glide.Glide;
 import com.google.android.material.imageview.ShapeableImageView;
@@ -25,20 +26,11 @@ import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot; // For fetching username
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
 
 public class CreatePost extends AppCompatActivity {
 
@@ -52,15 +44,18 @@ public class CreatePost extends AppCompatActivity {
     private ImageView postImagePreview;
     private Button submitButton;
     private ProgressBar progressBar;
+    private TextView uploadStatusText;
     private TextInputLayout titleInputLayout, categoryInputLayout, descriptionInputLayout;
     private Switch anonymousToggle; // NEW: Anonymous post toggle
 
     // Firebase instances
     private FirebaseAuth mAuth;
     private FirebaseFirestore db;
-    private FirebaseStorage storage;
     private Uri imageUri;
 
+    // The failed upload shown in the status line, if any
+    private PostUploadJob failedUpload;
+
     // Activity Result Launcher for picking images
     private ActivityResultLauncher<Intent> pickImageLauncher;
 
@@ -78,12 +73,12 @@ public class CreatePost extends AppCompatActivity {
         setupListeners();
         loadCurrentUserProfileData(); // Modified to load both profile picture and username
         updateImageButtonsVisibility();
+        observeUploadQueue();
     }
 
     private void initializeFirebase() {
         mAuth = FirebaseAuth.getInstance();
         db = FirebaseFirestore.getInstance();
-        storage = FirebaseStorage.getInstance();
     }
 
     private void initializeViews() {
@@ -96,6 +91,7 @@ public class CreatePost extends AppCompatActivity {
         pickImageButton = findViewById(R.id.pickImageButton);
         submitButton = findViewById(R.id.submitButton);
         progressBar = findViewById(R.id.progressBar);
+        uploadStatusText = findViewById(R.id.uploadStatusText);
         clearImageButton = findViewById(R.id.clearImageButton);
         anonymousToggle = findViewById(R.id.anonymousToggle); // NEW: Initialize the Switch
 
@@ -111,6 +107,7 @@ public class CreatePost extends AppCompatActivity {
                         if (imageUri != null) {
                             Glide.with(this)
                                     .load(imageUri)
+                                    .apply(ImageRequests.detail(this))
                                     .placeholder(R.drawable.rounded_transparent_white_background)
                                     .error(R.drawable.rounded_transparent_white_background)
                                     .into(postImagePreview);
@@ -129,6 +126,7 @@ public class CreatePost extends AppCompatActivity {
         submitButton.setOnClickListener(v -> createNewPost());
         profileIcon.setOnClickListener(v -> navigateToUserProfile());
         clearImageButton.setOnClickListener(v -> clearSelectedImage());
+        uploadStatusText.setOnClickListener(v -> showFailedUploadDialog());
 
         categoryInput.setOnClickListener(v -> categoryInput.showDropDown());
         categoryInput.setOnFocusChangeListener((v, hasFocus) -> {
@@ -155,44 +153,46 @@ public class CreatePost extends AppCompatActivity {
     }
 
     /**
-     * Loads the current user's profile picture and username from Firestore.
+     * Loads the current user's profile picture and username from the shared UserProfileStore,
+     * which usually already holds them from the home screen.
      */
     private void loadCurrentUserProfileData() {
         FirebaseUser currentUser = mAuth.getCurrentUser();
         if (currentUser != null) {
-            String userId = currentUser.getUid();
-            db.collection("users").document(userId).get()
-                    .addOnSuccessListener(documentSnapshot -> {
-                        if (documentSnapshot.exists()) {
-                            // Load profile picture
-                            String profilePictureUrl = documentSnapshot.getString("profilePictureUrl");
-                            if (profilePictureUrl != null && !profilePictureUrl.isEmpty()) {
-                                Glide.with(this)
-                                        .load(profilePictureUrl)
-                                        .placeholder(R.drawable.user)
-                                        .error(R.drawable.user)
-                                        .into(profileIcon);
-                            } else {
-                                profileIcon.setImageResource(R.drawable.user);
-                            }
-
-                            // Load username for non-anonymous posts
-                            String username = documentSnapshot.getString("username");
-                            if (username != null && !username.isEmpty()) {
-                                currentUserName = username;
-                            } else {
-                                currentUserName = "Unknown User"; // Fallback if username not found in Firestore
-                            }
-                        } else {
-                            profileIcon.setImageResource(R.drawable.user);
-                            currentUserName = "Unknown User";
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to load profile data for top bar: " + e.getMessage());
+            UserProfileStore.getInstance(this).observe(this, currentUser.getUid(), new UserProfileStore.Listener() {
+                @Override
+                public void onProfile(UserProfile profile) {
+                    // Load profile picture
+                    if (profile.hasProfilePicture()) {
+                        Glide.with(CreatePost.this)
+                                .load(profile.getProfilePictureUrl())
+                                .apply(ImageRequests.avatar(profileIcon))
+                                .placeholder(R.drawable.user)
+                                .error(R.drawable.user)
+                                .into(profileIcon);
+                    } else {
+                        profileIcon.setImageResource(R.drawable.user);
+                    }
+
+                    // Load username for non-anonymous posts
+                    String username = profile.getUsername();
+                    if (username != null && !username.isEmpty()) {
+                        currentUserName = username;
+                    } else {
+                        currentUserName = "Unknown User"; // Fallback if there is no profile or no username
+                    }
+                }
+
+                @Override
+                public void onProfileError(Exception e) {
+                    Log.e(TAG, "Failed to load profile data for top bar: " + e.getMessage());
+                    if (UserProfileStore.getInstance(CreatePost.this).peek(currentUser.getUid()) == null) {
+                        // Nothing cached was delivered before the failure
                         profileIcon.setImageResource(R.drawable.user);
                         currentUserName = "Unknown User";
-                    });
+                    }
+                }
+            });
         } else {
             profileIcon.setImageResource(R.drawable.user);
             currentUserName = "Guest User"; // For truly unauthenticated access, though usually this page requires auth.
@@ -275,81 +275,89 @@ public class CreatePost extends AppCompatActivity {
         progressBar.setVisibility(View.VISIBLE);
         submitButton.setEnabled(false);
 
-        // Pass isAnonymous to the image upload function
-        uploadImageToFirebase(title, category, description, isAnonymous);
-    }
-
-    /**
-     * Uploads the selected image to Firebase Storage.
-     *
-     * @param title       Post title.
-     * @param category    Post category.
-     * @param description Post description.
-     * @param isAnonymous Whether the post should be anonymous.
-     */
-    private void uploadImageToFirebase(String title, String category, String description, boolean isAnonymous) {
-        if (imageUri == null) {
-            handleUploadFailure(new Exception("Image URI is null during upload."));
+        FirebaseUser user = mAuth.getCurrentUser();
+        if (user == null) {
+            handleUploadFailure(new Exception("User not logged in"));
             return;
         }
 
-        StorageReference storageRef = storage.getReference()
-                .child("post_images/" + UUID.randomUUID().toString());
-
-        storageRef.putFile(imageUri)
-                .addOnSuccessListener(taskSnapshot ->
-                        storageRef.getDownloadUrl().addOnSuccessListener(uri ->
-                                // Pass isAnonymous to savePostToFirestore
-                                savePostToFirestore(title, category, description, uri.toString(), isAnonymous)
-                        ).addOnFailureListener(e -> {
-                            Log.e(TAG, "Failed to get download URL: " + e.getMessage());
-                            handleUploadFailure(new Exception("Failed to get image download URL."));
-                        })
-                )
+        // The ID is chosen now, so however often the upload is retried there is only ever one post
+        String postId = db.collection("posts").document().getId();
+        String author = isAnonymous ? "Anonymous" : currentUserName; // FIX: Set author based on isAnonymous toggle
+        PostUploadQueue queue = PostUploadQueue.getInstance(this);
+        queue.enqueueCreate(postId, user.getUid(), title, category, description, author, isAnonymous, imageUri)
+                .addOnSuccessListener(job -> {
+                    // Every feed shows the post from now on, with the queued copy of its image
+                    PostStore.getInstance(this).put(job.createdArticle(queue.localImageUrl(job)), job.getId());
+                    if (isFinishing() || isDestroyed()) {
+                        return; // Queued all the same; the worker publishes it
+                    }
+                    progressBar.setVisibility(View.GONE);
+                    submitButton.setEnabled(true);
+                    Toast.makeText(this, "Post queued. It is published in the background.", Toast.LENGTH_SHORT).show();
+                    clearFields();
+                })
                 .addOnFailureListener(e -> {
-                    Log.e(TAG, "Image upload failed: " + e.getMessage());
-                    handleUploadFailure(new Exception("Image upload failed."));
+                    if (!isFinishing() && !isDestroyed()) {
+                        handleUploadFailure(e);
+                    }
                 });
     }
 
     /**
-     * Saves the post data (including image URL and anonymity status) to Firebase Firestore.
-     *
-     * @param title       Post title.
-     * @param category    Post category.
-     * @param description Post description.
-     * @param imageUrl    URL of the uploaded image.
-     * @param isAnonymous Whether the post should be anonymous.
+     * Shows how the queued posts are doing below the submit button: the upload progress of the
+     * current one, how many wait for a connection, or a failure that can be retried.
      */
-    private void savePostToFirestore(@NonNull String title, @NonNull String category, @NonNull String description, @NonNull String imageUrl, boolean isAnonymous) {
-        FirebaseUser user = mAuth.getCurrentUser();
-        if (user == null) {
-            handleUploadFailure(new Exception("User not logged in"));
+    private void observeUploadQueue() {
+        PostUploadQueue.getInstance(this).observe(this, jobs -> {
+            List<PostUploadJob> creations = new ArrayList<>();
+            for (PostUploadJob job : jobs) {
+                if (job.getType() == PostUploadJob.Type.CREATE) {
+                    creations.add(job);
+                }
+            }
+            failedUpload = null;
+            if (creations.isEmpty()) {
+                uploadStatusText.setVisibility(View.GONE);
+                return;
+            }
+
+            PostUploadJob current = creations.get(0);
+            for (PostUploadJob job : creations) {
+                if (job.getState() == PostUploadJob.State.FAILED) {
+                    failedUpload = job;
+                    break;
+                }
+            }
+            if (failedUpload != null) {
+                uploadStatusText.setText("Upload of \"" + failedUpload.getTitle() + "\" failed: "
+                        + failedUpload.getLastError() + " Tap to retry.");
+            } else if (current.getState() == PostUploadJob.State.QUEUED) {
+                uploadStatusText.setText(creations.size() == 1
+                        ? "1 post waiting for a connection."
+                        : creations.size() + " posts waiting for a connection.");
+            } else {
+                uploadStatusText.setText("Publishing \"" + current.getTitle() + "\"… " + current.getProgressPercent() + "%");
+            }
+            uploadStatusText.setVisibility(View.VISIBLE);
+        });
+    }
+
+    /**
+     * Lets the user retry or discard the failed upload shown in the status line.
+     */
+    private void showFailedUploadDialog() {
+        if (failedUpload == null) {
             return;
         }
-
-        Map<String, Object> post = new HashMap<>();
-        post.put("title", title);
-        post.put("category", category);
-        post.put("description", description);
-        post.put("imageUrl", imageUrl);
-        // FIX: Set author based on isAnonymous toggle
-        post.put("author", isAnonymous ? "Anonymous" : currentUserName);
-        post.put("isAnonymousPost", isAnonymous); // NEW: Store anonymity status in Firestore
-        post.put("postDate", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date()));
-        post.put("userId", user.getUid());
-        post.put("edited", false);
-        post.put("editDate", "");
-
-        db.collection("posts")
-                .add(post)
-                .addOnSuccessListener(ref -> {
-                    progressBar.setVisibility(View.GONE);
-                    submitButton.setEnabled(true);
-                    Toast.makeText(this, "Post created successfully!", Toast.LENGTH_SHORT).show();
-                    clearFields();
-                })
-                .addOnFailureListener(this::handleUploadFailure);
+        final String jobId = failedUpload.getId();
+        new AlertDialog.Builder(this)
+                .setTitle("Upload failed")
+                .setMessage("\"" + failedUpload.getTitle() + "\" was not published: " + failedUpload.getLastError())
+                .setPositiveButton("Retry", (dialog, which) -> PostUploadQueue.getInstance(this).retry(jobId))
+                .setNegativeButton("Discard", (dialog, which) -> PostUploadQueue.getInstance(this).discard(jobId))
+                .setNeutralButton("Cancel", null)
+                .show();
     }
 
     private void handleUploadFailure(Exception e) {
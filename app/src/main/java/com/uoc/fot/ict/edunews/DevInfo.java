@@ -15,7 +15,6 @@ import com.bumptech.glide.Glide;
 import com.google.android.material.imageview.ShapeableImageView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.FirebaseFirestore;
 
 public class DevInfo extends AppCompatActivity {
 
@@ -23,7 +22,6 @@ public class DevInfo extends AppCompatActivity {
 
     private ShapeableImageView profileIconImageView;
 
-    private FirebaseFirestore db;
     private FirebaseUser currentUser;
 
     @Override
@@ -34,7 +32,6 @@ public class DevInfo extends AppCompatActivity {
         // Initialize Firebase
         // Firebase
         FirebaseAuth mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
         currentUser = mAuth.getCurrentUser();
 
         // Initialize UI components
@@ -80,28 +77,27 @@ public class DevInfo extends AppCompatActivity {
 
     private void loadCurrentUserProfilePicture() {
         if (currentUser != null) {
-            String userId = currentUser.getUid();
-            db.collection("users").document(userId).get()
-                    .addOnSuccessListener(documentSnapshot -> {
-                        if (documentSnapshot.exists()) {
-                            String profilePictureUrl = documentSnapshot.getString("profilePictureUrl");
-                            if (profilePictureUrl != null && !profilePictureUrl.isEmpty()) {
-                                Glide.with(this)
-                                        .load(profilePictureUrl)
-                                        .placeholder(R.drawable.user)
-                                        .error(R.drawable.user)
-                                        .into(profileIconImageView);
-                            } else {
-                                profileIconImageView.setImageResource(R.drawable.user);
-                            }
-                        } else {
-                            profileIconImageView.setImageResource(R.drawable.user);
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to load profile picture for top bar: " + e.getMessage());
+            // Shared store: usually already holds the profile from the screen that opened this one
+            UserProfileStore.getInstance(this).observe(this, currentUser.getUid(), new UserProfileStore.Listener() {
+                @Override
+                public void onProfile(UserProfile profile) {
+                    if (profile.hasProfilePicture()) {
+                        Glide.with(DevInfo.this)
+                                .load(profile.getProfilePictureUrl())
+                                .apply(ImageRequests.avatar(profileIconImageView))
+                                .placeholder(R.drawable.user)
+                                .error(R.drawable.user)
+                                .into(profileIconImageView);
+                    } else {
                         profileIconImageView.setImageResource(R.drawable.user);
-                    });
+                    }
+                }
+
+                @Override
+                public void onProfileError(Exception e) {
+                    Log.e(TAG, "Failed to load profile picture for top bar: " + e.getMessage());
+                }
+            });
         } else {
             profileIconImageView.setImageResource(R.drawable.user);
             Log.d(TAG, "No user logged in, showing default profile icon.");
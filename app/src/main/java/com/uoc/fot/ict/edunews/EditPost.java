@@ -17,7 +17,6 @@ import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.activity.OnBackPressedCallback;
@@ -28,21 +27,13 @@ import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 
-import java.text.SimpleDateFormat;
 import java.util.Arrays;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * EditPost Activity allows users to view and edit their existing news posts.
@@ -74,9 +65,13 @@ public class EditPost extends AppCompatActivity {
     private String postId;
     private Uri imageUri; // Currently displayed image URI (local or remote)
     private String originalImageUrl; // Stores the original image URL from Firestore
+    private String originalImageMediumUrl; // Smaller variants of the original image, null for older posts
+    private String originalImageThumbUrl;
     private String originalTitle;
     private String originalCategory;
     private String originalDescription;
+    private NewsArticle loadedArticle; // The post as loaded; author and date of the version feeds show after an edit
+    private String uploadingImageUrl; // Local copy of a replaced image until its upload is acknowledged, else null
     private boolean isEditMode = false; // Tracks current UI mode (view or edit)
 
     // Activity Result Launcher for picking images (modern approach)
@@ -99,6 +94,7 @@ public class EditPost extends AppCompatActivity {
         postId = intent.getStringExtra("postId");
 
         if (postId != null && !postId.isEmpty()) {
+            PostStore.getInstance(this).observe(this, this::onLocalPostsChanged);
             loadPostData(postId); // Load post details from Firestore
         } else {
             Toast.makeText(this, "Post ID is missing.", Toast.LENGTH_SHORT).show();
@@ -155,6 +151,7 @@ public class EditPost extends AppCompatActivity {
                             // Display the newly selected image using Glide
                             Glide.with(this)
                                     .load(imageUri)
+                                    .apply(ImageRequests.detail(this))
                                     .placeholder(R.drawable.rounded_transparent_white_background)
                                     .error(R.drawable.rounded_transparent_white_background)
                                     .into(postImagePreview);
@@ -362,10 +359,14 @@ public class EditPost extends AppCompatActivity {
                     progressBar.setVisibility(View.GONE);
                     if (documentSnapshot.exists()) {
                         // Store original values for comparison later
+                        loadedArticle = NewsArticle.fromSnapshot(documentSnapshot);
                         originalTitle = documentSnapshot.getString("title");
                         originalCategory = documentSnapshot.getString("category");
                         originalDescription = documentSnapshot.getString("description");
-                        originalImageUrl = documentSnapshot.getString("imageUrl");
+                        originalImageUrl = documentSnapshot.getString(PostImages.IMAGE_URL_FIELD);
+                        originalImageMediumUrl = documentSnapshot.getString(PostImages.MEDIUM_URL_FIELD);
+                        originalImageThumbUrl = documentSnapshot.getString(PostImages.THUMB_URL_FIELD);
+                        uploadingImageUrl = null; // The server's image is the one to delete now
 
                         // Populate UI with fetched data
                         titleInput.setText(originalTitle);
@@ -377,6 +378,7 @@ public class EditPost extends AppCompatActivity {
                             imageUri = Uri.parse(originalImageUrl); // Set current imageUri to original URL
                             Glide.with(this)
                                     .load(originalImageUrl)
+                                    .apply(ImageRequests.detail(this))
                                     .placeholder(R.drawable.rounded_transparent_white_background)
                                     .error(R.drawable.rounded_transparent_white_background)
                                     .into(postImagePreview);
@@ -459,130 +461,6 @@ public class EditPost extends AppCompatActivity {
         submitButton.setEnabled(false);
         deleteButton.setEnabled(false);
 
-        // Handle image update scenarios
-        if (imageChanged) {
-            // If a new image is selected, or an image was cleared
-            if (imageUri != null && (originalImageUrl == null || !imageUri.toString().equals(originalImageUrl))) {
-                // Case 1: New image selected (or first image being added)
-                uploadNewImageThenUpdatePost(newTitle, newCategory, newDescription);
-            } else { // imageUri == null && originalImageUrl != null && !originalImageUrl.isEmpty()
-                // Case 2: Image was explicitly cleared
-                deleteOldImageThenSavePostToFirestore(newTitle, newCategory, newDescription, null); // Pass null for newImageUrl
-            }
-        } else {
-            // Case 3: No change to image, just update text data.
-            savePostToFirestore(newTitle, newCategory, newDescription, imageUri != null ? imageUri.toString() : null);
-        }
-    }
-
-    /**
-     * Handles the scenario where a new image is selected for an existing post.
-     * If there was an old image, it attempts to delete it before uploading the new one.
-     * @param title The updated post title.
-     * @param category The updated post category.
-     * @param description The updated post description.
-     * Dependencies: `originalImageUrl`, `storage`.
-     */
-    private void uploadNewImageThenUpdatePost(String title, String category, String description) {
-        if (originalImageUrl != null && !originalImageUrl.isEmpty() && originalImageUrl.contains("firebasestorage.googleapis.com")) {
-            try {
-                StorageReference oldImageRef = storage.getReferenceFromUrl(originalImageUrl);
-                oldImageRef.delete().addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Old image deleted successfully before new upload.");
-                    performImageUploadAndFirestoreUpdate(title, category, description);
-                }).addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to delete old image before new upload (continuing with new upload): " + (e != null ? e.getMessage() : "Unknown error"));
-                    Toast.makeText(this, "Failed to delete old image, but uploading new one.", Toast.LENGTH_SHORT).show();
-                    performImageUploadAndFirestoreUpdate(title, category, description);
-                });
-            } catch (IllegalArgumentException e) {
-                // If originalImageUrl is not a valid Firebase Storage URL, log and proceed
-                Log.w(TAG, "Original image URL is not a valid Firebase Storage URL. Proceeding with new upload. Error: " + e.getMessage());
-                performImageUploadAndFirestoreUpdate(title, category, description);
-            }
-        } else {
-            // No old image or invalid old image URL, directly perform new upload
-            performImageUploadAndFirestoreUpdate(title, category, description);
-        }
-    }
-
-    /**
-     * Handles the scenario where an existing post's image is cleared.
-     * Deletes the old image from storage and then updates Firestore with a null image URL.
-     * @param title The updated post title.
-     * @param category The updated post category.
-     * @param description The updated post description.
-     * @param newImageUrl Should be `null` in this case to clear the image.
-     * Dependencies: `originalImageUrl`, `storage`.
-     */
-    private void deleteOldImageThenSavePostToFirestore(String title, String category, String description, @Nullable String newImageUrl) {
-        if (originalImageUrl != null && !originalImageUrl.isEmpty() && originalImageUrl.contains("firebasestorage.googleapis.com")) {
-            try {
-                StorageReference oldImageRef = storage.getReferenceFromUrl(originalImageUrl);
-                oldImageRef.delete().addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Old image deleted successfully after clear action.");
-                    savePostToFirestore(title, category, description, newImageUrl); // Update Firestore with null URL
-                }).addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to delete old image after clear action (continuing with Firestore update): " + (e != null ? e.getMessage() : "Unknown error"));
-                    Toast.makeText(this, "Failed to delete old image, but post data will be updated.", Toast.LENGTH_SHORT).show();
-                    savePostToFirestore(title, category, description, newImageUrl);
-                });
-            } catch (IllegalArgumentException e) {
-                // Original image URL is not a valid Firebase Storage URL, proceed with Firestore update
-                Log.w(TAG, "Original image URL is not a valid Firebase Storage URL. Proceeding with Firestore update after clear action. Error: " + e.getMessage());
-                savePostToFirestore(title, category, description, newImageUrl);
-            }
-        } else {
-            // No original image to delete, just save post to Firestore with null URL
-            savePostToFirestore(title, category, description, newImageUrl);
-        }
-    }
-
-    /**
-     * Performs the actual image upload to Firebase Storage and then calls
-     * `savePostToFirestore` with the new image's download URL.
-     * @param title The updated post title.
-     * @param category The updated post category.
-     * @param description The updated post description.
-     * Dependencies: `imageUri`, `storage`, `mAuth`, `postId`.
-     */
-    private void performImageUploadAndFirestoreUpdate(String title, String category, String description) {
-        if (imageUri == null) {
-            Log.e(TAG, "performImageUploadAndFirestoreUpdate called with null imageUri. This indicates a logic error.");
-            handleUpdateFailure(new Exception("Image URI is null during upload attempt."));
-            return;
-        }
-
-        // Generate a unique path for the new image in Firebase Storage
-        StorageReference storageRef = storage.getReference()
-                .child("post_images/" + UUID.randomUUID().toString());
-
-        storageRef.putFile(imageUri)
-                .addOnSuccessListener(taskSnapshot ->
-                        // Get the download URL after successful upload
-                        storageRef.getDownloadUrl().addOnSuccessListener(uri ->
-                                savePostToFirestore(title, category, description, uri.toString())
-                        ).addOnFailureListener(e -> {
-                            Log.e(TAG, "Failed to get download URL: " + (e != null ? e.getMessage() : "Unknown error"));
-                            handleUpdateFailure(new Exception("Failed to get image download URL."));
-                        })
-                )
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Image upload failed: " + (e != null ? e.getMessage() : "Unknown error"));
-                    handleUpdateFailure(new Exception("Image upload failed."));
-                });
-    }
-
-    /**
-     * Saves the post data (including updated fields and image URL) to Firebase Firestore.
-     * This is the final step for updating the post document.
-     * @param title The new title.
-     * @param category The new category.
-     * @param description The new description.
-     * @param newImageUrl The new image URL (can be null if image was cleared).
-     * Dependencies: `db`, `postId`, `mAuth`.
-     */
-    private void savePostToFirestore(String title, String category, String description, @Nullable String newImageUrl) {
         FirebaseUser user = mAuth.getCurrentUser();
         if (user == null) {
             handleUpdateFailure(new Exception("User not logged in."));
@@ -594,31 +472,118 @@ public class EditPost extends AppCompatActivity {
             return;
         }
 
-        DocumentReference postRef = db.collection("posts").document(postId);
-
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("title", title);
-        updates.put("category", category);
-        updates.put("description", description);
-        updates.put("imageUrl", newImageUrl); // Will be null if image was cleared
-        updates.put("edited", true); // Mark post as edited
-        updates.put("editDate", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date())); // Update edit date
+        // Handle image update scenarios
+        PostUploadJob.ImageAction imageAction;
+        if (!imageChanged) {
+            imageAction = PostUploadJob.ImageAction.KEEP; // No change to image, just update text data
+        } else if (imageUri != null) {
+            imageAction = PostUploadJob.ImageAction.REPLACE; // New image selected (or first image being added)
+        } else {
+            imageAction = PostUploadJob.ImageAction.CLEAR; // Image was explicitly cleared
+        }
+        saveEdit(user.getUid(), newTitle, newCategory, newDescription, imageAction);
+    }
 
-        postRef.update(updates)
-                .addOnSuccessListener(aVoid -> {
+    /**
+     * Hands the edit to the {@link PostUploadQueue}, which uploads any new image and updates the
+     * post in the background, also after this screen is closed. The old image is only deleted
+     * once the post no longer points at it.
+     * @param userId The signed-in author.
+     * @param title The new title.
+     * @param category The new category.
+     * @param description The new description.
+     * @param imageAction Whether the image is kept, replaced by `imageUri`, or cleared.
+     * Dependencies: `postId`, `imageUri`.
+     */
+    private void saveEdit(String userId, String title, String category, String description, PostUploadJob.ImageAction imageAction) {
+        Uri newImage = imageAction == PostUploadJob.ImageAction.REPLACE ? imageUri : null;
+        PostUploadQueue queue = PostUploadQueue.getInstance(this);
+        queue.enqueueEdit(postId, userId, title, category, description, imageAction, newImage)
+                .addOnSuccessListener(job -> {
+                    // Every feed shows the edited post from now on
+                    PostStore.getInstance(this).put(editedArticle(title, category, description, imageAction,
+                            queue.localImageUrl(job)), job.getId());
+                    if (isFinishing() || isDestroyed()) {
+                        return; // Queued all the same; the worker saves it
+                    }
                     progressBar.setVisibility(View.GONE);
                     submitButton.setEnabled(true);
                     deleteButton.setEnabled(true);
-                    Toast.makeText(this, "Post updated successfully!", Toast.LENGTH_SHORT).show();
-                    // Update local original values to reflect the saved state
+                    Toast.makeText(this, "Changes queued. They are saved in the background.", Toast.LENGTH_SHORT).show();
+                    // Update local original values to reflect the queued state
                     originalTitle = title;
                     originalCategory = category;
                     originalDescription = description;
-                    originalImageUrl = newImageUrl;
-                    imageUri = newImageUrl != null ? Uri.parse(newImageUrl) : null;
+                    if (imageAction == PostUploadJob.ImageAction.REPLACE) {
+                        // The queued copy stands in until the uploaded variants replace it, see onLocalPostsChanged
+                        originalImageUrl = queue.localImageUrl(job);
+                        originalImageMediumUrl = null;
+                        originalImageThumbUrl = null;
+                        uploadingImageUrl = originalImageUrl;
+                    } else if (imageAction == PostUploadJob.ImageAction.CLEAR) {
+                        originalImageUrl = null;
+                        originalImageMediumUrl = null;
+                        originalImageThumbUrl = null;
+                        uploadingImageUrl = null;
+                    }
+                    imageUri = originalImageUrl != null ? Uri.parse(originalImageUrl) : null;
                     toggleEditMode(false); // Switch back to view mode
                 })
-                .addOnFailureListener(this::handleUpdateFailure);
+                .addOnFailureListener(e -> {
+                    if (!isFinishing() && !isDestroyed()) {
+                        handleUpdateFailure(e);
+                    }
+                });
+    }
+
+    /**
+     * Takes the stored variants of a replaced image as the post's image once its upload is
+     * acknowledged (or the old image back if the edit was rolled back), so that deleting the
+     * post from this screen afterwards deletes what Storage actually holds.
+     */
+    private void onLocalPostsChanged() {
+        PostStore store = PostStore.getInstance(this);
+        if (uploadingImageUrl == null || store.isPending(postId)) {
+            return;
+        }
+        if (uploadingImageUrl.equals(originalImageUrl)) {
+            NewsArticle saved = store.get(postId);
+            if (saved == null) {
+                saved = loadedArticle; // No local change left: the post is as loaded
+            }
+            originalImageUrl = saved.getImageUrl();
+            originalImageMediumUrl = saved.getImageMediumUrl();
+            originalImageThumbUrl = saved.getImageThumbUrl();
+            if (imageUri != null && uploadingImageUrl.equals(imageUri.toString())) {
+                // Unchanged in the form, so a later save still counts it as kept
+                imageUri = originalImageUrl != null ? Uri.parse(originalImageUrl) : null;
+            }
+        }
+        uploadingImageUrl = null;
+    }
+
+    /**
+     * @param localImageUrl The queued copy of the new image, used if the image is replaced.
+     * @return The post as the feeds show it until the edit is saved: the post as last saved from
+     * this screen, with the new text and image.
+     */
+    private NewsArticle editedArticle(String title, String category, String description,
+                                      PostUploadJob.ImageAction imageAction, String localImageUrl) {
+        NewsArticle edited = new NewsArticle(postId, title, description, originalImageUrl,
+                loadedArticle.getPostDate(), category, loadedArticle.getAuthor(), loadedArticle.getUserId());
+        edited.setPostDateMillis(loadedArticle.getPostDateMillis());
+        edited.setImageMediumUrl(originalImageMediumUrl);
+        edited.setImageThumbUrl(originalImageThumbUrl);
+        if (imageAction == PostUploadJob.ImageAction.REPLACE) {
+            edited.setImageUrl(localImageUrl); // Until the uploaded variants are acknowledged
+            edited.setImageMediumUrl(null);
+            edited.setImageThumbUrl(null);
+        } else if (imageAction == PostUploadJob.ImageAction.CLEAR) {
+            edited.setImageUrl(null);
+            edited.setImageMediumUrl(null);
+            edited.setImageThumbUrl(null);
+        }
+        return edited;
     }
 
     /**
@@ -651,9 +616,9 @@ public class EditPost extends AppCompatActivity {
     }
 
     /**
-     * Deletes the post, including its image from Firebase Storage (if present)
-     * and its document from Firestore.
-     * Dependencies: `postId`, `originalImageUrl`, `storage`, `db`.
+     * Deletes the post, including every stored size of its image from Firebase Storage
+     * (if present) and its document from Firestore.
+     * Dependencies: `postId`, `originalImageUrl`, `originalImageMediumUrl`, `originalImageThumbUrl`, `storage`, `db`.
      */
     private void deletePost() {
         if (postId == null || postId.isEmpty()) {
@@ -664,12 +629,13 @@ public class EditPost extends AppCompatActivity {
         progressBar.setVisibility(View.VISIBLE);
         submitButton.setEnabled(false);
         deleteButton.setEnabled(false);
+        // Every feed drops the post right away; it comes back if the document cannot be deleted
+        PostStore.getInstance(this).remove(postId, deleteChangeId());
 
-        // First, delete the image from Firebase Storage if it exists and is a Firebase URL
-        if (originalImageUrl != null && !originalImageUrl.isEmpty() && originalImageUrl.contains("firebasestorage.googleapis.com")) {
-            try {
-                StorageReference imageRef = storage.getReferenceFromUrl(originalImageUrl);
-                imageRef.delete().addOnSuccessListener(aVoid -> {
+        // First, delete the image from Firebase Storage. URLs that are missing or not
+        // Firebase Storage URLs are skipped, so this also covers posts without an image.
+        PostImages.delete(storage, originalImageUrl, originalImageMediumUrl, originalImageThumbUrl)
+                .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "Image deleted from storage successfully.");
                     deletePostDocumentFromFirestore(); // Proceed to delete Firestore document
                 }).addOnFailureListener(e -> {
@@ -677,15 +643,6 @@ public class EditPost extends AppCompatActivity {
                     Toast.makeText(this, "Failed to delete image, but deleting post data...", Toast.LENGTH_SHORT).show();
                     deletePostDocumentFromFirestore();
                 });
-            } catch (IllegalArgumentException e) {
-                // If originalImageUrl is not a valid Firebase Storage URL, log and proceed
-                Log.w(TAG, "Original image URL is not a valid Firebase Storage URL. Proceeding with Firestore document deletion. Error: " + e.getMessage());
-                deletePostDocumentFromFirestore();
-            }
-        } else {
-            // No image to delete or not a Firebase Storage URL, proceed directly to Firestore document deletion
-            deletePostDocumentFromFirestore();
-        }
     }
 
     /**
@@ -695,11 +652,15 @@ public class EditPost extends AppCompatActivity {
     private void deletePostDocumentFromFirestore() {
         db.collection("posts").document(postId).delete()
                 .addOnSuccessListener(aVoid -> {
+                    PostStore.getInstance(this).acknowledge(postId, deleteChangeId(), null);
                     progressBar.setVisibility(View.GONE);
                     Toast.makeText(this, "Post deleted successfully!", Toast.LENGTH_SHORT).show();
+                    PostRepository.getInstance(this).invalidate(); // Feeds must drop the post on their next load
+                    PostSearchStore.getInstance(this).remove(postId); // Search must not find it any more
                     navigateToMyPosts(); // Go back to MyPosts after successful deletion
                 })
                 .addOnFailureListener(e -> {
+                    PostStore.getInstance(this).rollback(postId, deleteChangeId());
                     progressBar.setVisibility(View.GONE);
                     submitButton.setEnabled(true);
                     deleteButton.setEnabled(true);
@@ -711,4 +672,11 @@ public class EditPost extends AppCompatActivity {
                     Log.e(TAG, "Error deleting post document: " + errorMessage, e);
                 });
     }
-}
\ No newline at end of file
+
+    /**
+     * @return The ID of this post's deletion in the {@link PostStore}.
+     */
+    private String deleteChangeId() {
+        return "delete:" + postId;
+    }
+}
@@ -0,0 +1,22 @@
+package com.uoc.fot.ict.edunews;
+
+import android.app.ActivityManager;
+import android.app.Application;
+
+/**
+ * Starts the {@link AppStartup} work the moment the process starts, before the splash screen
+ * is even created. A process started in the background, e.g. to run the
+ * {@link PostUploadWorker}, skips it; the splash starts it if it is opened later.
+ */
+public class EduNewsApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ActivityManager.RunningAppProcessInfo state = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(state);
+        if (state.importance <= ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND) {
+            AppStartup.getInstance(this).start(); // Launched to show a screen
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.MemoryCategory;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+
+/**
+ * App-wide Glide configuration. Sizes the memory cache and bitmap pool for the feed screens,
+ * gives decoded images their own disk cache, and shrinks the memory cache while the system is
+ * short on memory. Per-view request settings live in {@link ImageRequests}.
+ */
+@GlideModule
+public final class EduNewsGlideModule extends AppGlideModule {
+
+    private static final String TAG = "EduNewsGlideModule";
+
+    // Decoded images kept in memory, in screens' worth of ARGB_8888 pixels
+    private static final float MEMORY_CACHE_SCREENS = 2f;
+    // Recycled bitmaps kept for reuse, so scrolling reuses instead of allocating
+    private static final float BITMAP_POOL_SCREENS = 3f;
+    // Downsampled thumbnails and banners are small, 150 MB holds several thousand of them
+    private static final long DISK_CACHE_BYTES = 150L * 1024 * 1024;
+    private static final String DISK_CACHE_DIR = "image_cache";
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context)
+                .setMemoryCacheScreens(MEMORY_CACHE_SCREENS)
+                .setBitmapPoolScreens(BITMAP_POOL_SCREENS)
+                .build();
+        builder.setMemorySizeCalculator(calculator);
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIR, DISK_CACHE_BYTES));
+        builder.setLogLevel(Log.ERROR);
+    }
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        // Glide already trims its caches on onTrimMemory; this additionally keeps them small
+        // for as long as the foreground app is under pressure.
+        context.getApplicationContext().registerComponentCallbacks(new MemoryPressureCallbacks(glide));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false; // No library modules are declared in manifests, skip the lookup at startup
+    }
+
+    /**
+     * Switches Glide to its low memory category while the app is running with little memory
+     * left, and back to normal once the UI is hidden (the caches are trimmed then anyway, so
+     * the next session starts with the full budget).
+     */
+    private static final class MemoryPressureCallbacks implements ComponentCallbacks2 {
+
+        private final Glide glide;
+        private boolean lowered;
+
+        MemoryPressureCallbacks(Glide glide) {
+            this.glide = glide;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation") // The RUNNING_* levels are still delivered below API 34
+        public void onTrimMemory(int level) {
+            if (level == TRIM_MEMORY_RUNNING_LOW || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                lower();
+            } else if (level == TRIM_MEMORY_UI_HIDDEN && lowered) {
+                glide.setMemoryCategory(MemoryCategory.NORMAL);
+                lowered = false;
+            }
+        }
+
+        @Override
+        public void onLowMemory() {
+            lower();
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            // Not relevant for cache sizing
+        }
+
+        private void lower() {
+            if (!lowered) {
+                Log.w(TAG, "Memory is running low, shrinking image caches.");
+                glide.setMemoryCategory(MemoryCategory.LOW); // Evicts down to half the normal size
+                lowered = true;
+            }
+        }
+    }
+}
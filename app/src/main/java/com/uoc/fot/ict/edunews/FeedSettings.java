@@ -0,0 +1,33 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Device-local feed preferences, stored next to the other app flags in "MyAppPrefs".
+ */
+public final class FeedSettings {
+
+    private static final String PREFS_NAME = "MyAppPrefs"; // Must match SplashScreen
+    private static final String KEY_LIVE_UPDATES = "live_feed_updates";
+
+    private FeedSettings() {
+        // Static helpers only
+    }
+
+    /**
+     * @return True if the home and category feeds should follow new, edited and deleted posts
+     * through snapshot listeners instead of waiting for a manual refresh. Off by default.
+     */
+    public static boolean isLiveUpdatesEnabled(Context context) {
+        return prefs(context).getBoolean(KEY_LIVE_UPDATES, false);
+    }
+
+    public static void setLiveUpdatesEnabled(Context context, boolean enabled) {
+        prefs(context).edit().putBoolean(KEY_LIVE_UPDATES, enabled).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,75 @@
+package com.uoc.fot.ict.edunews;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
+
+import com.bumptech.glide.RequestManager;
+
+/**
+ * Holds back a screen's Glide requests while one of its lists or pagers is flinging. Rows that
+ * only fly past during a fling are bound and recycled within a few frames; while requests are
+ * paused their loads are queued instead of started, and recycling a row drops its queued load.
+ * When the last settling view comes to rest, the queue is resumed, which by then only holds
+ * the images of rows that are actually on screen.
+ *
+ * One instance is shared by all scrolling views of a screen, since they share the screen's
+ * {@link RequestManager}: requests resume only once every attached view has stopped settling.
+ */
+public class FlingImagePauser {
+
+    private final RequestManager requestManager;
+    private int settlingViews;
+
+    /**
+     * @param requestManager The Glide request manager of the screen, i.e. {@code Glide.with(activity)}.
+     */
+    public FlingImagePauser(RequestManager requestManager) {
+        this.requestManager = requestManager;
+    }
+
+    /**
+     * Pauses image loading while the list settles after a fling.
+     */
+    public void attachTo(RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            private boolean settling;
+
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView view, int newState) {
+                settling = onStateChanged(settling, newState == RecyclerView.SCROLL_STATE_SETTLING);
+            }
+        });
+    }
+
+    /**
+     * Pauses image loading while the pager settles on a page.
+     */
+    public void attachTo(ViewPager2 viewPager) {
+        viewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            private boolean settling;
+
+            @Override
+            public void onPageScrollStateChanged(int state) {
+                settling = onStateChanged(settling, state == ViewPager2.SCROLL_STATE_SETTLING);
+            }
+        });
+    }
+
+    /**
+     * Tracks one view's transition into or out of the settling state.
+     * @return The view's new settling state.
+     */
+    private boolean onStateChanged(boolean wasSettling, boolean isSettling) {
+        if (isSettling && !wasSettling) {
+            if (settlingViews++ == 0) {
+                requestManager.pauseRequests();
+            }
+        } else if (!isSettling && wasSettling) {
+            if (--settlingViews == 0) {
+                requestManager.resumeRequests(); // Starts whatever the visible rows are waiting for
+            }
+        }
+        return isSettling;
+    }
+}
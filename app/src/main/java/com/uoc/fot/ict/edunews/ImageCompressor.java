@@ -0,0 +1,202 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Prepares picked images for upload: decodes them downsampled, upright and no larger than
+ * needed, and encodes them to a target file size. Camera photos of 8-12 MB are never decoded
+ * at full resolution; whatever the input, decoding holds at most {@link #DECODE_BUDGET_BYTES}
+ * plus the result ({@code maxEdge² × 4} bytes). Call off the main thread, e.g. on
+ * {@link AppExecutors#imageWork()}.
+ */
+public final class ImageCompressor {
+
+    private static final String TAG = "ImageCompressor";
+
+    // Pixel memory a sampled decode may take (ARGB_8888, 4 bytes a pixel); about 6 megapixels
+    static final long DECODE_BUDGET_BYTES = 24L * 1024 * 1024;
+    private static final int BYTES_PER_PIXEL = 4;
+    // The target size is approached by lowering the quality in these steps, never below the floor
+    private static final int QUALITY_STEP = 10;
+    private static final int MIN_QUALITY = 50;
+
+    private ImageCompressor() {
+        // Static helpers only
+    }
+
+    /**
+     * Decodes an image with its long edge at most maxEdge, rotated and mirrored as its EXIF
+     * orientation says. Only the bounds are read first, to pick a sample size that keeps the
+     * decode within the memory budget; the remaining scale and the rotation are applied together.
+     * @param resolver Used to read the image.
+     * @param source The image.
+     * @param maxEdge Longest edge of the result in pixels.
+     * @return The decoded image; the caller recycles it.
+     * @throws IOException If the image cannot be read or is not an image.
+     */
+    public static Bitmap decode(ContentResolver resolver, Uri source, int maxEdge) throws IOException {
+        // First pass: bounds only, no pixels are decoded
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(source)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Selected file is not a readable image.");
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight, maxEdge);
+        Bitmap decoded;
+        try (InputStream in = resolver.openInputStream(source)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Selected file is not a readable image.");
+        }
+
+        Matrix transform = orientationOf(resolver, source);
+        int longEdge = Math.max(decoded.getWidth(), decoded.getHeight());
+        if (longEdge > maxEdge) {
+            float scale = (float) maxEdge / longEdge;
+            transform.preScale(scale, scale);
+        }
+        if (transform.isIdentity()) {
+            return decoded;
+        }
+        Bitmap upright = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), transform, true);
+        if (upright != decoded) {
+            decoded.recycle();
+        }
+        return upright;
+    }
+
+    /**
+     * @return The bitmap itself if it fits, else a smaller copy with its long edge at maxEdge.
+     */
+    public static Bitmap scaleDown(Bitmap source, int maxEdge) {
+        int longEdge = Math.max(source.getWidth(), source.getHeight());
+        if (longEdge <= maxEdge) {
+            return source;
+        }
+        float scale = (float) maxEdge / longEdge;
+        int width = Math.max(1, Math.round(source.getWidth() * scale));
+        int height = Math.max(1, Math.round(source.getHeight() * scale));
+        return Bitmap.createScaledBitmap(source, width, height, true);
+    }
+
+    /**
+     * Encodes a bitmap at the given quality, lowering it step by step while the result is larger
+     * than targetBytes, and writes the result to out.
+     * @param quality The starting quality; also the result for images that fit at once.
+     * @param targetBytes Size to stay under; not guaranteed below the minimum quality.
+     * @return The number of bytes written.
+     */
+    public static int compress(Bitmap bitmap, Bitmap.CompressFormat format, int quality, long targetBytes,
+                               OutputStream out) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        int current = quality;
+        while (true) {
+            encoded.reset(); // Reuses the buffer of the previous try
+            if (!bitmap.compress(format, current, encoded)) {
+                throw new IOException("Image could not be encoded.");
+            }
+            if (encoded.size() <= targetBytes || current <= MIN_QUALITY) {
+                break;
+            }
+            current = Math.max(MIN_QUALITY, current - QUALITY_STEP);
+        }
+        encoded.writeTo(out);
+        return encoded.size();
+    }
+
+    /**
+     * Decodes, scales and encodes an image in one go, e.g. a profile picture.
+     * @return The encoded image.
+     */
+    public static byte[] prepare(ContentResolver resolver, Uri source, int maxEdge, Bitmap.CompressFormat format,
+                                 int quality, long targetBytes) throws IOException {
+        Bitmap bitmap = decode(resolver, source, maxEdge);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            compress(bitmap, format, quality, targetBytes, out);
+            return out.toByteArray();
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * @return The largest power of two that still leaves the long edge at maxEdge or more, made
+     * larger if needed until the sampled pixels fit the decode budget.
+     */
+    static int sampleSizeFor(int width, int height, int maxEdge) {
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        while (longEdge / (sampleSize * 2) >= maxEdge) {
+            sampleSize *= 2;
+        }
+        // Very wide or tall images can stay over budget at that size; the budget wins
+        while ((long) (width / sampleSize) * (height / sampleSize) * BYTES_PER_PIXEL > DECODE_BUDGET_BYTES) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * @return The transform that turns the stored pixels upright, from the EXIF orientation tag.
+     * Images without the tag, or that cannot be read for it, are returned as stored.
+     */
+    private static Matrix orientationOf(ContentResolver resolver, Uri source) {
+        Matrix matrix = new Matrix();
+        int orientation;
+        try (InputStream in = resolver.openInputStream(source)) {
+            if (in == null) {
+                return matrix;
+            }
+            orientation = new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException | RuntimeException e) {
+            Log.d(TAG, "No EXIF orientation for " + source + ": " + e.getMessage());
+            return matrix;
+        }
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                break; // Normal or undefined
+        }
+        return matrix;
+    }
+}
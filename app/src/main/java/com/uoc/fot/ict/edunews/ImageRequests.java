@@ -0,0 +1,83 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+
+/**
+ * Glide request profiles, one per kind of image view. Each profile decodes straight to the size
+ * the view draws at, so no full-resolution bitmap is ever held just to be scaled down on screen.
+ * Usage: {@code Glide.with(view).load(url).apply(ImageRequests.list(context)).into(view)}.
+ */
+public final class ImageRequests {
+
+    // Largest avatar in the app (the profile screen); smaller ones are sized from their view
+    private static final int MAX_AVATAR_DP = 120;
+
+    private ImageRequests() {
+        // Static helpers only
+    }
+
+    /**
+     * Profile for article list thumbnails. These are many, small and opaque, so they are decoded
+     * as RGB_565 (half the memory of ARGB_8888) and fitted inside the fixed thumbnail box.
+     * The transformation is set explicitly so the row's ImageView does not add its own, which
+     * keeps the cache key identical for rows and {@link ScrollAheadPreloader} preloads.
+     */
+    public static RequestOptions list(Context context) {
+        int maxWidth = context.getResources().getDimensionPixelSize(R.dimen.article_thumbnail_max_edge);
+        int height = context.getResources().getDimensionPixelSize(R.dimen.article_thumbnail_height);
+        return new RequestOptions()
+                .format(DecodeFormat.PREFER_RGB_565)
+                .override(maxWidth, height)
+                .optionalCenterInside(); // Matches the row's centerInside scale type
+    }
+
+    /**
+     * Profile for the latest news banner. The banner view is measured by Glide, and the image is
+     * decoded to just cover it, which is what the banner's matrix scale type then shows.
+     */
+    public static RequestOptions banner() {
+        return new RequestOptions()
+                .downsample(DownsampleStrategy.CENTER_OUTSIDE)
+                .priority(Priority.HIGH); // First thing on the home screen
+    }
+
+    /**
+     * Profile for full-width article images (article screen and post previews). The views wrap
+     * their height, so the image is decoded to the screen width and never upscaled.
+     */
+    public static RequestOptions detail(Context context) {
+        int width = context.getResources().getDisplayMetrics().widthPixels;
+        return new RequestOptions()
+                .override(width, Target.SIZE_ORIGINAL)
+                .downsample(DownsampleStrategy.CENTER_INSIDE)
+                .priority(Priority.IMMEDIATE);
+    }
+
+    /**
+     * Profile for profile pictures, decoded at the fixed size of the given avatar view.
+     * @param avatar The view the picture is loaded into.
+     */
+    public static RequestOptions avatar(ImageView avatar) {
+        int size = avatarSizeOf(avatar);
+        return new RequestOptions()
+                .override(size, size)
+                .downsample(DownsampleStrategy.CENTER_OUTSIDE); // The views crop to a circle
+    }
+
+    private static int avatarSizeOf(ImageView avatar) {
+        ViewGroup.LayoutParams params = avatar.getLayoutParams();
+        if (params != null && params.width > 0 && params.height > 0) {
+            return Math.max(params.width, params.height);
+        }
+        // Not a fixed-size view, use the largest avatar size
+        return Math.round(MAX_AVATAR_DP * avatar.getResources().getDisplayMetrics().density);
+    }
+}
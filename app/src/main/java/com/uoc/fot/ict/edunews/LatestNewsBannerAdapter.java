@@ -8,24 +8,21 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.util.Consumer;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 /**
  * Adapter for displaying the latest news articles in a banner format, typically in a ViewPager2.
  * It binds NewsArticle objects to the `item_latest_news_banner.xml` layout,
- * separating title and description display.
+ * separating title and description display. Updates are diffed in the background.
  */
-public class LatestNewsBannerAdapter extends RecyclerView.Adapter<LatestNewsBannerAdapter.BannerViewHolder> {
+public class LatestNewsBannerAdapter extends ListAdapter<NewsArticle, LatestNewsBannerAdapter.BannerViewHolder> {
 
-    private final List<NewsArticle> latestNewsList;
     private final Consumer<NewsArticle> onArticleClick;
 
     /**
@@ -34,8 +31,10 @@ public class LatestNewsBannerAdapter extends RecyclerView.Adapter<LatestNewsBann
      * @param onArticleClick A Consumer interface to handle click events on individual articles.
      */
     public LatestNewsBannerAdapter(List<NewsArticle> latestNewsList, Consumer<NewsArticle> onArticleClick) {
-        this.latestNewsList = latestNewsList;
+        super(NewsArticleDiff.CONFIG);
         this.onArticleClick = onArticleClick;
+        setHasStableIds(true);
+        updateData(latestNewsList);
     }
 
     /**
@@ -63,28 +62,27 @@ public class LatestNewsBannerAdapter extends RecyclerView.Adapter<LatestNewsBann
      */
     @Override
     public void onBindViewHolder(@NonNull BannerViewHolder holder, int position) {
-        NewsArticle article = latestNewsList.get(position);
+        NewsArticle article = getItem(position);
         holder.bind(article, onArticleClick); // Pass onArticleClick to bind method
     }
 
     /**
-     * Returns the total number of items in the data set held by the adapter.
-     * @return The total number of items in this adapter.
+     * @param position The position of the item within the adapter's data set.
+     * @return A stable ID derived from the article's document ID.
      */
     @Override
-    public int getItemCount() {
-        return latestNewsList.size();
+    public long getItemId(int position) {
+        return NewsArticleDiff.stableIdOf(getItem(position));
     }
 
     /**
-     * Updates the data set of the adapter and notifies the RecyclerView/ViewPager2 to refresh.
+     * Updates the data set of the adapter. The new list is diffed against the current one
+     * in the background and only changed pages are rebound.
      * @param newNewsList The new list of NewsArticle objects.
-     * Dependencies: `notifyDataSetChanged()`.
+     * Dependencies: `submitList()`.
      */
     public void updateData(List<NewsArticle> newNewsList) {
-        this.latestNewsList.clear(); // Clear existing data
-        this.latestNewsList.addAll(newNewsList); // Add new data
-        notifyDataSetChanged(); // Notify adapter that data has changed
+        submitList(new ArrayList<>(newNewsList));
     }
 
     /**
@@ -115,12 +113,14 @@ public class LatestNewsBannerAdapter extends RecyclerView.Adapter<LatestNewsBann
          * Binds the data from a NewsArticle object to the views in the ViewHolder.
          * @param article The NewsArticle object containing the data.
          * @param onArticleClick A Consumer interface to handle click events.
-         * Dependencies: `Glide` for image loading, `SimpleDateFormat` for date formatting.
+         * Dependencies: `Glide` for image loading, `NewsArticle#getBannerDateText()` for the date.
          */
         public void bind(NewsArticle article, Consumer<NewsArticle> onArticleClick) {
-            // Load banner image using Glide
+            // Load the banner-sized variant of the image using Glide; banners span the screen width
+            int bannerEdgePx = itemView.getResources().getDisplayMetrics().widthPixels;
             Glide.with(itemView.getContext())
-                    .load(article.getImageUrl())
+                    .load(article.getImageUrlFor(bannerEdgePx))
+                    .apply(ImageRequests.banner())
                     .placeholder(R.drawable.rounded_background_card) // Placeholder while loading
                     .error(R.drawable.rounded_background_card) // Image to show if loading fails
                     .into(bannerImage);
@@ -141,28 +141,11 @@ public class LatestNewsBannerAdapter extends RecyclerView.Adapter<LatestNewsBann
                 bannerDescription.setVisibility(View.GONE);
             }
 
-            // Format and display the post date
-            String postDateString = article.getPostDate();
-            if (postDateString != null && !postDateString.isEmpty()) {
-                SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd", Locale.getDefault());
-                SimpleDateFormat timeFormat = new SimpleDateFormat("hh.mm a", Locale.getDefault());
-
-                try {
-                    Date date = inputFormat.parse(postDateString);
-                    if (date != null) {
-                        String formattedDate = dateFormat.format(date);
-                        String formattedTime = timeFormat.format(date);
-                        // Display date and time on separate lines
-                        articleDate.setText(formattedDate + "\n" + formattedTime);
-                        articleDate.setVisibility(View.VISIBLE);
-                    } else {
-                        articleDate.setVisibility(View.GONE);
-                    }
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                    articleDate.setVisibility(View.GONE);
-                }
+            // Display the post date (date and time on separate lines), formatted once per article
+            String dateText = article.getBannerDateText();
+            if (dateText != null) {
+                articleDate.setText(dateText);
+                articleDate.setVisibility(View.VISIBLE);
             } else {
                 articleDate.setVisibility(View.GONE);
             }
@@ -0,0 +1,337 @@
+package com.uoc.fot.ict.edunews;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps a displayed feed up to date with a Firestore snapshot listener while its screen is
+ * started. The listener covers exactly the posts already on screen (the query ends at the last
+ * shown post), so only new posts above it and changes to shown posts are ever read. After the
+ * first snapshot, only {@link QuerySnapshot#getDocumentChanges()} are applied, each at the
+ * position Firestore reports, and the resulting list is handed to the screen, whose ListAdapter
+ * turns it into item-level notifications. The same changes are passed on to the
+ * {@link PostSearchStore}, so posts edited or deleted elsewhere are found (or not) accordingly.
+ */
+public class LiveFeed implements DefaultLifecycleObserver {
+
+    private static final String TAG = "LiveFeed";
+
+    // Window used while the feed is still empty, so there is no last post to end at
+    private static final int EMPTY_FEED_LIMIT = 20;
+
+    /**
+     * Receives the live list on the main thread.
+     */
+    public interface Listener {
+        /**
+         * @param articles Every article of the feed in query order, including pages appended
+         * since the listener was attached. The list is owned by the caller.
+         */
+        void onLiveFeedChanged(List<NewsArticle> articles);
+
+        /**
+         * Called when the listener fails. It is not retried until the screen is started again.
+         */
+        void onLiveFeedError(Exception e);
+    }
+
+    private final Listener listener;
+    private final PostSearchStore searchStore;
+
+    @Nullable
+    private Query baseQuery; // Ordered feed query without limit or cursor
+    private String sortField; // The field baseQuery orders by
+    private boolean descending;
+
+    // Mirror of the listener's current query result
+    private final List<NewsArticle> window = new ArrayList<>();
+    // Pages loaded while listening; they join the window the next time the listener is attached
+    private final List<NewsArticle> tail = new ArrayList<>();
+    // Posts of the window that are not published yet; kept in the window, as Firestore's change
+    // indexes count them, but never shown
+    private final Set<String> pendingIds = new HashSet<>();
+
+    @Nullable
+    private ListenerRegistration registration;
+    private boolean started;
+    private boolean awaitingFirstSnapshot;
+    // Arrival time of the snapshot being applied if it came from the server, else 0
+    private long snapshotReadAt;
+
+    /**
+     * @param owner The screen; the listener is attached in onStart and removed in onStop.
+     * @param searchStore The search index that receives the changes.
+     * @param listener Receives the updated list.
+     */
+    public LiveFeed(LifecycleOwner owner, PostSearchStore searchStore, Listener listener) {
+        this.listener = listener;
+        this.searchStore = searchStore;
+        owner.getLifecycle().addObserver(this);
+    }
+
+    /**
+     * Starts following the given articles, which must be a fresh server result of the query.
+     * Replaces whatever was followed before.
+     * @param baseQuery The ordered query the articles were loaded with, without limit or cursor.
+     * @param sortField The field the query orders by, {@link PostRepository#sortField()}.
+     * @param descending True if the query is ordered newest first.
+     * @param articles The articles on screen, in query order.
+     */
+    public void seed(Query baseQuery, String sortField, boolean descending, List<NewsArticle> articles) {
+        detach();
+        this.baseQuery = baseQuery;
+        this.sortField = sortField;
+        this.descending = descending;
+        window.clear();
+        window.addAll(articles);
+        tail.clear();
+        pendingIds.clear();
+        attach();
+    }
+
+    /**
+     * Adds a page that was loaded after the followed articles.
+     * @param page The articles of the page, in query order.
+     * @return False if no feed is followed, so the caller must show the page itself.
+     */
+    public boolean appendPage(List<NewsArticle> page) {
+        if (baseQuery == null) {
+            return false;
+        }
+        tail.addAll(page);
+        publish();
+        return true;
+    }
+
+    /**
+     * Stops following the feed until it is seeded again, e.g. when the screen switches to a
+     * different query and the current list no longer matches it.
+     */
+    public void reset() {
+        detach();
+        baseQuery = null;
+        window.clear();
+        tail.clear();
+        pendingIds.clear();
+    }
+
+    /**
+     * @return True while a listener is attached, i.e. the list on screen is being kept current.
+     */
+    public boolean isListening() {
+        return registration != null;
+    }
+
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        started = true;
+        attach();
+    }
+
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        started = false;
+        detach();
+    }
+
+    private void attach() {
+        if (!started || baseQuery == null || registration != null) {
+            return;
+        }
+        // Everything scrolled through so far becomes part of the followed window
+        List<NewsArticle> shown = merged();
+        window.clear();
+        window.addAll(shown);
+        tail.clear();
+
+        Query query;
+        NewsArticle last = window.isEmpty() ? null : window.get(window.size() - 1);
+        Object boundary = last != null ? boundaryOf(sortField, last, descending) : null;
+        if (boundary == null) {
+            query = baseQuery.limit(EMPTY_FEED_LIMIT);
+        } else {
+            query = baseQuery.endAt(boundary);
+        }
+        awaitingFirstSnapshot = true;
+        registration = query.addSnapshotListener(this::onSnapshot);
+    }
+
+    private void detach() {
+        if (registration != null) {
+            registration.remove();
+            registration = null;
+        }
+    }
+
+    private void onSnapshot(@Nullable QuerySnapshot snapshot, @Nullable FirebaseFirestoreException e) {
+        if (registration == null) {
+            return; // Detached while this event was queued
+        }
+        if (e != null || snapshot == null) {
+            Log.e(TAG, "Live feed listener failed: " + (e != null ? e.getMessage() : "no snapshot"));
+            registration = null; // Firestore removes a listener after an error
+            listener.onLiveFeedError(e != null ? e : new Exception("Unknown error"));
+            return;
+        }
+
+        // Snapshots from the server reflect everything this device saved before they arrived
+        snapshotReadAt = snapshot.getMetadata().isFromCache() ? 0 : SystemClock.elapsedRealtime();
+        indexChanges(snapshot.getDocumentChanges());
+        if (awaitingFirstSnapshot || !applyChanges(snapshot.getDocumentChanges())) {
+            // The first snapshot reconciles with what was shown; later ones are incremental
+            awaitingFirstSnapshot = false;
+            window.clear();
+            for (DocumentSnapshot document : snapshot.getDocuments()) {
+                window.add(toArticle(document));
+            }
+        }
+        pendingIds.clear();
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            if (PostStatus.isPending(document)) {
+                pendingIds.add(document.getId());
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Applies the changes of one snapshot to the window, at the indexes Firestore reports.
+     * @return False if the changes do not fit the window, in which case it must be rebuilt.
+     */
+    private boolean applyChanges(List<DocumentChange> changes) {
+        for (DocumentChange change : changes) {
+            int oldIndex = change.getOldIndex();
+            int newIndex = change.getNewIndex();
+            switch (change.getType()) {
+                case ADDED:
+                    if (newIndex < 0 || newIndex > window.size()) {
+                        return false;
+                    }
+                    window.add(newIndex, toArticle(change.getDocument()));
+                    break;
+                case MODIFIED:
+                    if (oldIndex < 0 || oldIndex >= window.size()) {
+                        return false;
+                    }
+                    window.remove(oldIndex);
+                    if (newIndex < 0 || newIndex > window.size()) {
+                        return false;
+                    }
+                    window.add(newIndex, toArticle(change.getDocument()));
+                    break;
+                case REMOVED:
+                    if (oldIndex < 0 || oldIndex >= window.size()) {
+                        return false;
+                    }
+                    window.remove(oldIndex);
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps a document of the current snapshot, stamped for the {@link PostStore}.
+     */
+    private NewsArticle toArticle(DocumentSnapshot document) {
+        NewsArticle article = NewsArticle.fromSnapshot(document);
+        article.setServerReadAtMillis(snapshotReadAt);
+        return article;
+    }
+
+    /**
+     * Updates the search index with one snapshot's changes. The first snapshot of a listener
+     * reports every document as added, so it indexes the whole window.
+     */
+    private void indexChanges(List<DocumentChange> changes) {
+        List<NewsArticle> changed = new ArrayList<>();
+        for (DocumentChange change : changes) {
+            if (change.getType() == DocumentChange.Type.REMOVED) {
+                removeIfDeleted(change.getDocument());
+            } else if (!PostStatus.isPending(change.getDocument())) {
+                changed.add(NewsArticle.fromSnapshot(change.getDocument()));
+            }
+        }
+        searchStore.index(changed);
+    }
+
+    /**
+     * A post also leaves the listener when it moves to another category or is pushed out of the
+     * window by newer posts, and the search must keep finding it then. Only a post the server no
+     * longer has is removed from the index.
+     */
+    private void removeIfDeleted(DocumentSnapshot document) {
+        String postId = document.getId();
+        document.getReference().get(Source.SERVER).addOnCompleteListener(task -> {
+            if (task.isSuccessful() && task.getResult() != null && !task.getResult().exists()) {
+                searchStore.remove(postId);
+            }
+        });
+    }
+
+    private void publish() {
+        listener.onLiveFeedChanged(merged());
+    }
+
+    private List<NewsArticle> merged() {
+        List<NewsArticle> articles = new ArrayList<>(window.size() + tail.size());
+        for (NewsArticle article : window) {
+            if (!pendingIds.contains(article.getId())) {
+                articles.add(article);
+            }
+        }
+        if (!tail.isEmpty()) {
+            Set<String> ids = new HashSet<>();
+            for (NewsArticle article : window) {
+                ids.add(article.getId());
+            }
+            for (NewsArticle article : tail) {
+                if (ids.add(article.getId())) {
+                    articles.add(article); // Skip posts that moved up into the window
+                }
+            }
+        }
+        return articles;
+    }
+
+    /**
+     * Builds the endAt bound that ends the window at the last shown post, as a value of the
+     * field the query orders by: Firestore orders timestamps and strings apart, so a bound of
+     * the other type would match every post or none.
+     * @param sortField The field the query orders by, see {@link PostSortKey}.
+     * @return The bound, or null if the post has no value to end at.
+     */
+    static Object boundaryOf(String sortField, NewsArticle last, boolean descending) {
+        if (!PostDates.POST_TIMESTAMP_FIELD.equals(sortField)) {
+            // The legacy string itself; endAt includes the post and any post of the same second
+            String postDate = last.getPostDate();
+            return postDate != null && !postDate.isEmpty() ? postDate : null;
+        }
+        if (!last.hasPostDate()) {
+            return null;
+        }
+        // The stored timestamp has sub-millisecond precision; round towards the far side of the post
+        long millis = last.getPostDateMillis();
+        long bound = descending ? millis : millis + 1;
+        return new Timestamp(Math.floorDiv(bound, 1000L), (int) Math.floorMod(bound, 1000L) * 1_000_000);
+    }
+}
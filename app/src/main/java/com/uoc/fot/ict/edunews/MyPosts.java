@@ -2,6 +2,8 @@ package com.uoc.fot.ict.edunews;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
@@ -17,20 +19,12 @@ import androidx.appcompat.widget.SearchView; // Correct import for SearchView
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 public class MyPosts extends AppCompatActivity {
 
@@ -41,13 +35,29 @@ public class MyPosts extends AppCompatActivity {
     private ProgressBar progressBar;
 
     // Data and Firebase
-    private FirebaseFirestore db;
     private FirebaseAuth mAuth;
+    // The posts as the repository loaded them, before local changes from the PostStore
+    private final List<NewsArticle> loadedArticles = new ArrayList<>();
+    private boolean postsLoaded; // False until the repository delivered the list once
     private final List<NewsArticle> articlesList = new ArrayList<>();
     private final List<NewsArticle> filteredArticlesList = new ArrayList<>();
 
     // Enum to keep track of the current sort order for articles
     private SortOrder currentSortOrder = SortOrder.LATEST_TO_OLDEST;
+    // Incremented for every display refresh, so stale background results are dropped
+    private int displayGeneration;
+    // Incremented whenever articlesList is replaced, so the search index is rebuilt once per load
+    private int articlesVersion;
+
+    // Search index over articlesList; only built and queried on AppExecutors.compute()
+    private PostSearchIndex searchIndex;
+    // Version the index was built from; read on the main thread to skip copying the list
+    private volatile int searchIndexVersion = -1;
+
+    // Wait this long after the last keystroke before searching
+    private static final long SEARCH_DEBOUNCE_MILLIS = 150;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable debouncedSearch = this::refreshDisplayedArticles;
 
     // Enum defining the possible sorting orders
     private enum SortOrder {
@@ -70,13 +80,18 @@ public class MyPosts extends AppCompatActivity {
         progressBar = findViewById(R.id.progressBar);
 
         // Initialize Firebase instances
-        db = FirebaseFirestore.getInstance();
         mAuth = FirebaseAuth.getInstance();
 
         // Set up the RecyclerView with its adapter and layout manager
         newsArticleAdapter = new NewsArticleAdapter(new ArrayList<>(), article -> navigateToEditPost(article.getId()));
-        myPostsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        myPostsRecyclerView.setLayoutManager(layoutManager);
         myPostsRecyclerView.setAdapter(newsArticleAdapter);
+        // Warm the thumbnails of the rows about to scroll in
+        myPostsRecyclerView.addOnScrollListener(new ScrollAheadPreloader(
+                this, Glide.with(this), layoutManager, newsArticleAdapter, 0));
+        // Hold back image loads for rows that only fly past during a fling
+        new FlingImagePauser(Glide.with(this)).attachTo(myPostsRecyclerView);
 
         // Register OnBackPressedCallback for modern back press handling
         getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true /* enabled by default */) {
@@ -98,31 +113,31 @@ public class MyPosts extends AppCompatActivity {
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) { // FIXED: Removed extra "On"
-                filterArticles(query);
+                searchHandler.removeCallbacks(debouncedSearch);
+                refreshDisplayedArticles(); // Search right away on submit
                 return true;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                filterArticles(newText);
+                // Debounced: a fast typist triggers one search per pause, not one per character
+                searchHandler.removeCallbacks(debouncedSearch);
+                searchHandler.postDelayed(debouncedSearch, SEARCH_DEBOUNCE_MILLIS);
                 return true;
             }
         });
 
         // Fetch news articles from Firestore for the current user
         fetchMyPosts();
-    }
-
-    @Override
-    protected void onResume() {
-        super.onResume();
-        // Refresh posts when returning to this activity, in case an edit/delete occurred
-        fetchMyPosts();
+        // Posts created, edited or deleted on this device show up without refetching the list
+        PostStore.getInstance(this).observe(this, this::showArticles);
     }
 
     /**
      * Fetches news articles from Firestore created by the currently logged-in user.
      * Articles are initially ordered by postDate in descending order (latest to oldest).
+     * Opening this screen only hits the server once the list is older than
+     * ReadPolicy.MY_POSTS_MAX_AGE_MILLIS; local changes come from the PostStore instead.
      */
     private void fetchMyPosts() {
         FirebaseUser currentUser = mAuth.getCurrentUser();
@@ -134,44 +149,73 @@ public class MyPosts extends AppCompatActivity {
             return;
         }
 
-        progressBar.setVisibility(View.VISIBLE);
-        emptyStateText.setVisibility(View.GONE);
-        myPostsRecyclerView.setVisibility(View.GONE); // Hide RecyclerView during loading
-
-        db.collection("posts")
-                .whereEqualTo("userId", currentUser.getUid())
-                .orderBy("postDate", Query.Direction.DESCENDING)
-                .get()
-                .addOnCompleteListener(task -> {
-                    progressBar.setVisibility(View.GONE);
-                    if (task.isSuccessful()) {
-                        articlesList.clear(); // Clear any previously loaded articles
-                        for (QueryDocumentSnapshot document : task.getResult()) {
-                            NewsArticle article = document.toObject(NewsArticle.class);
-                            article.setId(document.getId()); // Set the document ID
-                            articlesList.add(article);
-                        }
-
-                        if (articlesList.isEmpty()) {
-                            emptyStateText.setText("No posts found.");
-                            emptyStateText.setVisibility(View.VISIBLE);
-                            myPostsRecyclerView.setVisibility(View.GONE);
-                        } else {
-                            emptyStateText.setVisibility(View.GONE);
-                            myPostsRecyclerView.setVisibility(View.VISIBLE);
-                            // Apply initial sorting
-                            sortArticles(currentSortOrder);
-                            // Apply search filter (if any text already in searchView)
-                            filterArticles(searchView.getQuery().toString());
-                        }
-                    } else {
-                        Log.e("MyPostsActivity", "Error getting documents: " + (task.getException() != null ? task.getException().getMessage() : "Unknown error"));
-                        Toast.makeText(this, "Failed to load your posts: " + (task.getException() != null ? task.getException().getMessage() : "Unknown error"), Toast.LENGTH_SHORT).show();
-                        emptyStateText.setText("Failed to load your posts.");
-                        emptyStateText.setVisibility(View.VISIBLE);
-                        myPostsRecyclerView.setVisibility(View.GONE);
-                    }
-                });
+        if (articlesList.isEmpty()) {
+            // Only show the spinner when there is nothing to show yet; a list already on screen
+            // stays visible while it is revalidated
+            progressBar.setVisibility(View.VISIBLE);
+            emptyStateText.setVisibility(View.GONE);
+            myPostsRecyclerView.setVisibility(View.GONE); // Hide RecyclerView during loading
+        }
+
+        PostRepository.getInstance(this).loadUserPosts(currentUser.getUid(), ReadPolicy.MY_POSTS_MAX_AGE_MILLIS, new PostRepository.FeedCallback() {
+            @Override
+            public void onArticlesLoaded(List<NewsArticle> articles, boolean fromCache) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                if (fromCache && articles.isEmpty()) {
+                    return; // Nothing useful cached, keep the progress bar until the server answers
+                }
+                progressBar.setVisibility(View.GONE);
+                loadedArticles.clear(); // Clear any previously loaded articles
+                loadedArticles.addAll(articles);
+                postsLoaded = true;
+                showArticles();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                progressBar.setVisibility(View.GONE);
+                Log.e("MyPostsActivity", "Error getting documents: " + e.getMessage());
+                Toast.makeText(MyPosts.this, "Failed to load your posts: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                if (articlesList.isEmpty()) {
+                    emptyStateText.setText("Failed to load your posts.");
+                    emptyStateText.setVisibility(View.VISIBLE);
+                    myPostsRecyclerView.setVisibility(View.GONE);
+                }
+            }
+        });
+    }
+
+    /**
+     * Lays the local changes of the PostStore over the loaded posts and shows the result.
+     * Called after every load and every local change.
+     */
+    private void showArticles() {
+        FirebaseUser currentUser = mAuth.getCurrentUser();
+        if (currentUser == null || !postsLoaded) {
+            return; // Not loaded yet; the load shows the changes too
+        }
+        String uid = currentUser.getUid();
+        articlesList.clear();
+        // The whole author query is loaded, so new posts always have their place in it
+        articlesList.addAll(PostStore.getInstance(this).applyTo(loadedArticles,
+                article -> uid.equals(article.getUserId()), true, true));
+        articlesVersion++; // The search index must be rebuilt for the new list
+
+        if (articlesList.isEmpty()) {
+            emptyStateText.setText("No posts found.");
+            emptyStateText.setVisibility(View.VISIBLE);
+            myPostsRecyclerView.setVisibility(View.GONE);
+        } else {
+            emptyStateText.setVisibility(View.GONE);
+            myPostsRecyclerView.setVisibility(View.VISIBLE);
+            // Apply sorting and the search filter (if any text already in searchView)
+            refreshDisplayedArticles();
+        }
     }
 
     /**
@@ -188,13 +232,11 @@ public class MyPosts extends AppCompatActivity {
                 int id = item.getItemId();
                 if (id == R.id.action_sort_latest_to_oldest) {
                     currentSortOrder = SortOrder.LATEST_TO_OLDEST;
-                    sortArticles(currentSortOrder);
-                    filterArticles(searchView.getQuery().toString());
+                    refreshDisplayedArticles();
                     return true;
                 } else if (id == R.id.action_sort_oldest_to_latest) {
                     currentSortOrder = SortOrder.OLDEST_TO_LATEST;
-                    sortArticles(currentSortOrder);
-                    filterArticles(searchView.getQuery().toString());
+                    refreshDisplayedArticles();
                     return true;
                 }
                 return false;
@@ -203,56 +245,51 @@ public class MyPosts extends AppCompatActivity {
         popup.show();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchHandler.removeCallbacks(debouncedSearch);
+    }
+
     /**
-     * Sorts the articlesList based on the specified SortOrder.
-     * Uses a custom Comparator to parse and compare dates.
-     * This sorts the *master* list (`articlesList`). Filtering will then happen on this sorted list.
-     *
-     * @param order The desired sorting order (LATEST_TO_OLDEST or OLDEST_TO_LATEST).
+     * Recomputes the displayed list from `articlesList` for the current sort order and search
+     * text. Ordering and searching run on a background thread: the master list is kept newest
+     * first (the order the server returns it in) and indexed once per load, so a search is an
+     * index lookup and "oldest first" is just a reverse. The result reaches the adapter as a diff.
      */
-    private void sortArticles(SortOrder order) {
-        SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-
-        Collections.sort(articlesList, new Comparator<NewsArticle>() {
-            @Override
-            public int compare(NewsArticle a1, NewsArticle a2) {
-                try {
-                    Date date1 = inputFormat.parse(a1.getPostDate());
-                    Date date2 = inputFormat.parse(a2.getPostDate());
-
-                    // Handle null dates gracefully (e.g., place them at the end or beginning)
-                    if (date1 == null && date2 == null) return 0;
-                    if (date1 == null) return (order == SortOrder.LATEST_TO_OLDEST) ? 1 : -1; // Nulls last for latest, first for oldest
-                    if (date2 == null) return (order == SortOrder.LATEST_TO_OLDEST) ? -1 : 1; // Nulls last for latest, first for oldest
-
-                    return (order == SortOrder.LATEST_TO_OLDEST) ? date2.compareTo(date1) : date1.compareTo(date2);
+    private void refreshDisplayedArticles() {
+        final int version = articlesVersion;
+        // The list is only copied when the index has to be rebuilt from it
+        final List<NewsArticle> snapshot = version != searchIndexVersion ? new ArrayList<>(articlesList) : null;
+        final boolean oldestFirst = currentSortOrder == SortOrder.OLDEST_TO_LATEST;
+        final String query = searchView.getQuery().toString();
+        final int generation = ++displayGeneration;
+
+        AppExecutors.compute().execute(() -> {
+            if (snapshot != null && version != searchIndexVersion) {
+                ArticleOrdering.ensureNewestFirst(snapshot);
+                searchIndex = new PostSearchIndex(snapshot);
+                searchIndexVersion = version;
+            }
+            List<NewsArticle> result = searchIndex.search(query); // Newest first, like the index
+            ArticleOrdering.applyOrder(result, oldestFirst);
 
-                } catch (ParseException e) {
-                    Log.e("MyPostsActivity", "Date parsing error for article: " + a1.getTitle() + " or " + a2.getTitle() + " - " + e.getMessage());
-                    return 0; // Fallback: treat as equal if date cannot be parsed
+            AppExecutors.runOnMain(() -> {
+                if (generation != displayGeneration || isFinishing() || isDestroyed()) {
+                    return; // A newer sort or keystroke superseded this result
                 }
-            }
+                showFilteredArticles(result);
+            });
         });
     }
 
     /**
-     * Filters the articles based on the search query.
-     * This operates on the already sorted `articlesList`.
-     * @param query The search text entered by the user.
+     * Hands the filtered articles to the adapter and updates the empty state.
+     * @param filteredArticles The articles to display.
      */
-    private void filterArticles(String query) {
+    private void showFilteredArticles(List<NewsArticle> filteredArticles) {
         filteredArticlesList.clear();
-        if (query == null || query.isEmpty()) {
-            filteredArticlesList.addAll(articlesList);
-        } else {
-            String lowerCaseQuery = query.toLowerCase(Locale.getDefault());
-            for (NewsArticle article : articlesList) {
-                if (article.getTitle() != null && article.getTitle().toLowerCase(Locale.getDefault()).contains(lowerCaseQuery)) {
-                    filteredArticlesList.add(article);
-                }
-            }
-        }
-
+        filteredArticlesList.addAll(filteredArticles);
         newsArticleAdapter.updateData(filteredArticlesList);
 
         if (filteredArticlesList.isEmpty() && !articlesList.isEmpty()) {
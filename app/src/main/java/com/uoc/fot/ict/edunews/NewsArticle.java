@@ -3,17 +3,33 @@ package com.uoc.fot.ict.edunews;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Objects;
+
 // Implementing Parcelable for efficient data passing between activities
 public class NewsArticle implements Parcelable {
     private String id;
     private String title;
     private String description;
-    private String imageUrl;
+    private String imageUrl; // Full size variant, or the original upload of older posts
+    private String imageMediumUrl; // Null for posts uploaded before variants existed
+    private String imageThumbUrl;
     private String postDate; // Storing as String, as determined by CreatePost.java
     private String category;
     private String author;
     private String userId;
 
+    // Derived once from postDate, so lists never reparse dates while binding or sorting
+    private long postDateMillis = PostDates.UNKNOWN;
+    // Display strings, formatted on first use and reused for every later bind
+    private String listDateText;
+    private String bannerDateText;
+    // When the server read this copy came from was started (SystemClock.elapsedRealtime), or 0
+    // for a cached copy. Lets the PostStore tell server data from before and after a local
+    // change apart. Not parceled, cached or compared.
+    private long serverReadAtMillis;
+
     public NewsArticle() {
         // Default constructor required for Firestore object mapping
     }
@@ -24,31 +40,135 @@ public class NewsArticle implements Parcelable {
         this.title = title;
         this.description = description;
         this.imageUrl = imageUrl;
-        this.postDate = postDate;
+        setPostDate(postDate);
         this.category = category;
         this.author = author;
         this.userId = userId;
     }
 
+    /**
+     * Maps a Firestore "posts" document to a NewsArticle.
+     * Reads each field individually so missing or malformed fields never break the whole list.
+     * @param document The post document.
+     * @return The mapped article, with the document ID as its ID.
+     */
+    public static NewsArticle fromSnapshot(DocumentSnapshot document) {
+        String postDate = document.get("postDate") instanceof String ? document.getString("postDate") : null;
+        NewsArticle article = new NewsArticle(
+                document.getId(),
+                document.getString("title"),
+                document.getString("description"),
+                document.getString("imageUrl"),
+                postDate != null ? postDate : "",
+                document.getString("category"),
+                document.getString("author"),
+                document.getString("userId"));
+        // The Timestamp sort key wins over the parsed legacy string when the document has one
+        article.setPostDateMillis(PostDates.readMillis(document, PostDates.POST_TIMESTAMP_FIELD, "postDate"));
+        article.setImageMediumUrl(document.getString(PostImages.MEDIUM_URL_FIELD));
+        article.setImageThumbUrl(document.getString(PostImages.THUMB_URL_FIELD));
+        return article;
+    }
+
     // --- Getters for all properties ---
     public String getId() { return id; }
     public String getTitle() { return title; }
     public String getDescription() { return description; }
     public String getImageUrl() { return imageUrl; }
+    public String getImageMediumUrl() { return imageMediumUrl; }
+    public String getImageThumbUrl() { return imageThumbUrl; }
     public String getPostDate() { return postDate; }
     public String getCategory() { return category; }
     public String getAuthor() { return author; }
     public String getUserId() { return userId; }
 
+    /**
+     * Picks the smallest stored image variant that still covers the given size, so lists never
+     * download the full image. Falls back to the full image for posts without variants.
+     * @param requiredEdgePx The longest edge, in pixels, the image is drawn at.
+     * @return The image URL to load, or null if the post has no image.
+     */
+    public String getImageUrlFor(int requiredEdgePx) {
+        if (requiredEdgePx <= PostImages.THUMB_EDGE && imageThumbUrl != null) {
+            return imageThumbUrl;
+        }
+        if (requiredEdgePx <= PostImages.MEDIUM_EDGE && imageMediumUrl != null) {
+            return imageMediumUrl;
+        }
+        return imageUrl;
+    }
+
+    /** @return The post date in epoch milliseconds, or {@link PostDates#UNKNOWN} if it has none. */
+    public long getPostDateMillis() { return postDateMillis; }
+    public boolean hasPostDate() { return postDateMillis != PostDates.UNKNOWN; }
+
+    /** @return When the server read of this copy started, or 0 if it came from a cache. */
+    public long getServerReadAtMillis() { return serverReadAtMillis; }
+
+    /** @return The post date formatted for list cards, or null if the post has no date. Cached after the first call. */
+    public String getListDateText() {
+        if (listDateText == null && hasPostDate()) {
+            listDateText = PostDates.formatForList(postDateMillis);
+        }
+        return listDateText;
+    }
+
+    /** @return The post date formatted for the home banners, or null if the post has no date. Cached after the first call. */
+    public String getBannerDateText() {
+        if (bannerDateText == null && hasPostDate()) {
+            bannerDateText = PostDates.formatForBanner(postDateMillis);
+        }
+        return bannerDateText;
+    }
+
     // --- Setters (optional, but good practice if you modify properties) ---
     public void setId(String id) { this.id = id; }
     public void setTitle(String title) { this.title = title; }
     public void setDescription(String description) { this.description = description; }
     public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
-    public void setPostDate(String postDate) { this.postDate = postDate; }
+    public void setImageMediumUrl(String imageMediumUrl) { this.imageMediumUrl = imageMediumUrl; }
+    public void setImageThumbUrl(String imageThumbUrl) { this.imageThumbUrl = imageThumbUrl; }
+    public void setPostDate(String postDate) {
+        this.postDate = postDate;
+        this.postDateMillis = PostDates.parseStored(postDate); // Parse once here instead of on every bind
+        this.listDateText = null;
+        this.bannerDateText = null;
+    }
     public void setCategory(String category) { this.category = category; }
     public void setAuthor(String author) { this.author = author; }
     public void setUserId(String userId) { this.userId = userId; }
+    public void setServerReadAtMillis(long serverReadAtMillis) { this.serverReadAtMillis = serverReadAtMillis; }
+    public void setPostDateMillis(long postDateMillis) {
+        this.postDateMillis = postDateMillis;
+        this.listDateText = null;
+        this.bannerDateText = null;
+    }
+
+
+    // --- Equality, used by the adapters' DiffUtil callback to detect changed rows ---
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NewsArticle)) return false;
+        NewsArticle that = (NewsArticle) o;
+        return Objects.equals(id, that.id)
+                && Objects.equals(title, that.title)
+                && Objects.equals(description, that.description)
+                && Objects.equals(imageUrl, that.imageUrl)
+                && Objects.equals(imageMediumUrl, that.imageMediumUrl)
+                && Objects.equals(imageThumbUrl, that.imageThumbUrl)
+                && Objects.equals(postDate, that.postDate)
+                && postDateMillis == that.postDateMillis
+                && Objects.equals(category, that.category)
+                && Objects.equals(author, that.author)
+                && Objects.equals(userId, that.userId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, description, imageUrl, imageMediumUrl, imageThumbUrl, postDate, postDateMillis, category, author, userId);
+    }
 
 
     // --- Parcelable implementation methods ---
@@ -63,6 +183,9 @@ public class NewsArticle implements Parcelable {
         category = in.readString();
         author = in.readString();
         userId = in.readString();
+        postDateMillis = in.readLong(); // Already parsed by the sender
+        imageMediumUrl = in.readString();
+        imageThumbUrl = in.readString();
     }
 
     // Required CREATOR static field for Parcelable
@@ -94,5 +217,8 @@ public class NewsArticle implements Parcelable {
         dest.writeString(category);
         dest.writeString(author);
         dest.writeString(userId);
+        dest.writeLong(postDateMillis);
+        dest.writeString(imageMediumUrl);
+        dest.writeString(imageThumbUrl);
     }
 }
\ No newline at end of file
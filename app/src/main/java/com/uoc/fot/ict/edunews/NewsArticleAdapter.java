@@ -7,20 +7,24 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.util.Consumer;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.RequestOptions;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
-public class NewsArticleAdapter extends RecyclerView.Adapter<NewsArticleAdapter.ArticleViewHolder> {
+/**
+ * Adapter for the vertical news lists (home older news, categories, my posts).
+ * It is a ListAdapter: new lists are diffed against the current one on a background thread
+ * and only the inserted, moved, removed or changed rows are rebound.
+ */
+public class NewsArticleAdapter extends ListAdapter<NewsArticle, NewsArticleAdapter.ArticleViewHolder> {
 
-    private List<NewsArticle> newsArticleList;
     private final Consumer<NewsArticle> onArticleClick;
 
     /**
@@ -29,8 +33,10 @@ public class NewsArticleAdapter extends RecyclerView.Adapter<NewsArticleAdapter.
      * @param onArticleClick A Consumer interface to handle click events on individual articles.
      */
     public NewsArticleAdapter(List<NewsArticle> newsArticleList, Consumer<NewsArticle> onArticleClick) {
-        this.newsArticleList = newsArticleList;
+        super(NewsArticleDiff.CONFIG);
         this.onArticleClick = onArticleClick;
+        setHasStableIds(true); // Rows keep their identity across diffs, so moves animate instead of rebinding
+        updateData(newsArticleList);
     }
 
     @NonNull
@@ -44,24 +50,33 @@ public class NewsArticleAdapter extends RecyclerView.Adapter<NewsArticleAdapter.
     @Override
     public void onBindViewHolder(@NonNull ArticleViewHolder holder, int position) {
         // Get the NewsArticle object for the current position
-        NewsArticle article = newsArticleList.get(position);
+        NewsArticle article = getItem(position);
         // Bind the data from the NewsArticle object to the ViewHolder's views
         holder.bind(article);
     }
 
     @Override
-    public int getItemCount() {
-        // Return the total number of items in the list
-        return newsArticleList.size();
+    public long getItemId(int position) {
+        return NewsArticleDiff.stableIdOf(getItem(position));
     }
 
     /**
-     * Updates the data set of the adapter and notifies the RecyclerView to refresh.
+     * @param position An adapter position.
+     * @return The article shown at the position, or null if the position is out of range.
+     */
+    @Nullable
+    public NewsArticle getArticleAt(int position) {
+        List<NewsArticle> current = getCurrentList();
+        return position >= 0 && position < current.size() ? current.get(position) : null;
+    }
+
+    /**
+     * Replaces the data set of the adapter. The new list is diffed against the current one in
+     * the background and only the minimal set of row changes is dispatched.
      * @param newNewsArticleList The new list of NewsArticle objects.
      */
     public void updateData(List<NewsArticle> newNewsArticleList) {
-        this.newsArticleList = newNewsArticleList;
-        notifyDataSetChanged(); // Notify the adapter that the data has changed
+        submitList(new ArrayList<>(newNewsArticleList)); // Own copy, the caller may keep mutating theirs
     }
 
     /**
@@ -73,6 +88,8 @@ public class NewsArticleAdapter extends RecyclerView.Adapter<NewsArticleAdapter.
         TextView articleDate;
         TextView articleDescription;
         TextView readMoreButton;
+        final int thumbnailEdgePx; // Size the thumbnail is drawn at, to pick the image variant
+        final RequestOptions thumbnailOptions; // Glide list profile, built once per holder
 
         public ArticleViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -82,6 +99,8 @@ public class NewsArticleAdapter extends RecyclerView.Adapter<NewsArticleAdapter.
             articleDate = itemView.findViewById(R.id.articleDate);
             articleDescription = itemView.findViewById(R.id.articleDescription);
             readMoreButton = itemView.findViewById(R.id.readMoreButton);
+            thumbnailEdgePx = itemView.getResources().getDimensionPixelSize(R.dimen.article_thumbnail_max_edge);
+            thumbnailOptions = ImageRequests.list(itemView.getContext());
         }
 
         /**
@@ -89,9 +108,10 @@ public class NewsArticleAdapter extends RecyclerView.Adapter<NewsArticleAdapter.
          * @param article The NewsArticle object containing the data.
          */
         public void bind(NewsArticle article) {
-            // Load article image using Glide
+            // Load the thumbnail variant of the article image using Glide
             Glide.with(itemView.getContext())
-                    .load(article.getImageUrl())
+                    .load(article.getImageUrlFor(thumbnailEdgePx))
+                    .apply(thumbnailOptions) // RGB_565, decoded to the thumbnail box
                     .placeholder(R.drawable.image_placeholder_background) // Placeholder while loading
                     .error(R.drawable.image_placeholder_background) // Image to show if loading fails
                     .into(articleImage);
@@ -99,29 +119,13 @@ public class NewsArticleAdapter extends RecyclerView.Adapter<NewsArticleAdapter.
             // Set article title
             articleTitle.setText(article.getTitle());
 
-            // Format and display the post date
-            String postDateString = article.getPostDate();
-            if (postDateString != null && !postDateString.isEmpty()) {
-                SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd", Locale.getDefault());
-                SimpleDateFormat timeFormat = new SimpleDateFormat("hh.mm a", Locale.getDefault()); // For AM/PM
-
-                try {
-                    Date date = inputFormat.parse(postDateString);
-                    if (date != null) {
-                        String formattedDate = dateFormat.format(date);
-                        String formattedTime = timeFormat.format(date);
-                        articleDate.setText(formattedTime + " (" + formattedDate + ")"); // Example: "10:30 AM (2025.06.15)"
-                        articleDate.setVisibility(View.VISIBLE); // Make sure the date TextView is visible
-                    } else {
-                        articleDate.setVisibility(View.GONE); // Hide if date parsing returns null
-                    }
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                    articleDate.setVisibility(View.GONE); // Hide on parsing error
-                }
+            // Display the post date, pre-parsed and formatted once per article
+            String dateText = article.getListDateText();
+            if (dateText != null) {
+                articleDate.setText(dateText); // Example: "10.30 AM (2025.06.15)"
+                articleDate.setVisibility(View.VISIBLE); // Make sure the date TextView is visible
             } else {
-                articleDate.setVisibility(View.GONE); // Hide if date string is null or empty
+                articleDate.setVisibility(View.GONE); // Hide if the post has no readable date
             }
 
             // Set article description
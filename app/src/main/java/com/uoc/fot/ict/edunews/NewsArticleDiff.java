@@ -0,0 +1,63 @@
+package com.uoc.fot.ict.edunews;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DiffUtil callback shared by the article adapters. Articles are the same item when their
+ * Firestore IDs match, and unchanged when all their fields are equal.
+ * Diffs run on AsyncDifferConfig's background executor, never on the main thread.
+ */
+final class NewsArticleDiff extends DiffUtil.ItemCallback<NewsArticle> {
+
+    static final NewsArticleDiff INSTANCE = new NewsArticleDiff();
+    static final AsyncDifferConfig<NewsArticle> CONFIG = new AsyncDifferConfig.Builder<>(INSTANCE).build();
+
+    // Stable IDs kept at most; far more rows than any screen holds, so a shown row never loses its ID
+    private static final int MAX_STABLE_IDS = 2000;
+
+    // Firestore IDs are strings, RecyclerView stable IDs are longs; each ID gets a number from a
+    // counter that never repeats. Least recently used IDs are forgotten and numbered anew if they return.
+    private static final Map<String, Long> STABLE_IDS = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_STABLE_IDS;
+        }
+    };
+    private static long nextStableId;
+
+    private NewsArticleDiff() {
+    }
+
+    @Override
+    public boolean areItemsTheSame(@NonNull NewsArticle oldItem, @NonNull NewsArticle newItem) {
+        return oldItem.getId() != null && oldItem.getId().equals(newItem.getId());
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull NewsArticle oldItem, @NonNull NewsArticle newItem) {
+        return oldItem.equals(newItem);
+    }
+
+    /**
+     * @param article The article shown in a row.
+     * @return A stable RecyclerView item ID for the article's document ID.
+     */
+    static synchronized long stableIdOf(NewsArticle article) {
+        String id = article.getId();
+        if (id == null) {
+            return RecyclerView.NO_ID;
+        }
+        Long stableId = STABLE_IDS.get(id);
+        if (stableId == null) {
+            stableId = nextStableId++;
+            STABLE_IDS.put(id, stableId);
+        }
+        return stableId;
+    }
+}
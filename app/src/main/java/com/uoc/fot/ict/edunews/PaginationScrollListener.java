@@ -0,0 +1,47 @@
+package com.uoc.fot.ict.edunews;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Requests the next page of a feed when the user scrolls within a few items of the end of a list.
+ * The listener may fire repeatedly while the user keeps scrolling; the page loader is expected
+ * to ignore requests while a page is already in flight.
+ */
+public class PaginationScrollListener extends RecyclerView.OnScrollListener {
+
+    /**
+     * Called when more items should be loaded.
+     */
+    public interface OnLoadMoreListener {
+        void onLoadMore();
+    }
+
+    private final LinearLayoutManager layoutManager;
+    private final int prefetchDistance;
+    private final OnLoadMoreListener onLoadMoreListener;
+
+    /**
+     * @param layoutManager The layout manager of the observed RecyclerView.
+     * @param prefetchDistance How many items before the end the next page is requested.
+     * @param onLoadMoreListener Invoked when the threshold is reached.
+     */
+    public PaginationScrollListener(LinearLayoutManager layoutManager, int prefetchDistance, OnLoadMoreListener onLoadMoreListener) {
+        this.layoutManager = layoutManager;
+        this.prefetchDistance = prefetchDistance;
+        this.onLoadMoreListener = onLoadMoreListener;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy <= 0) {
+            return; // Only scrolling towards the end can require a new page
+        }
+        int totalItems = layoutManager.getItemCount();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (totalItems > 0 && lastVisible >= totalItems - 1 - prefetchDistance) {
+            onLoadMoreListener.onLoadMore();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.uoc.fot.ict.edunews;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Walks the whole "posts" collection in document ID order, one page at a time, and commits the
+ * field updates produced by a {@link Migration} in one WriteBatch per page.
+ * Migrations must be idempotent, so an interrupted run can simply be started again.
+ * Run it against the Firestore emulator first (see the androidTest PostBackfillRunner).
+ */
+public class PostBackfill {
+
+    private static final String TAG = "PostBackfill";
+
+    // Firestore allows at most 500 writes per batch
+    private static final int PAGE_SIZE = 400;
+
+    /**
+     * Computes the updates for a single post.
+     */
+    public interface Migration {
+        /**
+         * @param post The post document.
+         * @return The fields to update, or null if the post is already migrated.
+         */
+        @Nullable
+        Map<String, Object> updatesFor(DocumentSnapshot post);
+    }
+
+    private final FirebaseFirestore db;
+    private final Migration migration;
+
+    public PostBackfill(FirebaseFirestore db, Migration migration) {
+        this.db = db;
+        this.migration = migration;
+    }
+
+    /**
+     * Starts the backfill.
+     * @return A task resolving to the number of updated posts.
+     */
+    public Task<Integer> run() {
+        return runPage(null, 0);
+    }
+
+    private Task<Integer> runPage(@Nullable DocumentSnapshot after, int updatedSoFar) {
+        Query query = db.collection("posts").orderBy(FieldPath.documentId()).limit(PAGE_SIZE);
+        if (after != null) {
+            query = query.startAfter(after);
+        }
+        return query.get().continueWithTask(pageTask -> {
+            if (!pageTask.isSuccessful()) {
+                return Tasks.forException(pageTask.getException());
+            }
+            List<DocumentSnapshot> documents = pageTask.getResult().getDocuments();
+            WriteBatch batch = db.batch();
+            int updatesInPage = 0;
+            for (DocumentSnapshot document : documents) {
+                Map<String, Object> updates = migration.updatesFor(document);
+                if (updates != null && !updates.isEmpty()) {
+                    batch.update(document.getReference(), updates);
+                    updatesInPage++;
+                }
+            }
+
+            final int updated = updatedSoFar + updatesInPage;
+            Task<Void> commit = updatesInPage > 0 ? batch.commit() : Tasks.forResult(null);
+            return commit.continueWithTask(commitTask -> {
+                if (!commitTask.isSuccessful()) {
+                    return Tasks.forException(commitTask.getException());
+                }
+                Log.d(TAG, "Backfilled " + updated + " posts so far.");
+                if (documents.size() < PAGE_SIZE) {
+                    return Tasks.forResult(updated); // Last page
+                }
+                return runPage(documents.get(documents.size() - 1), updated);
+            });
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package com.uoc.fot.ict.edunews;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Backfills the {@link PostDates#POST_TIMESTAMP_FIELD} and {@link PostDates#EDIT_TIMESTAMP_FIELD}
+ * sort keys on posts that only have the legacy "postDate" / "editDate" strings.
+ * The legacy strings carry no time zone, so the zone the posts were written in must be given.
+ * The strings themselves are left in place for app versions that still read them.
+ */
+public class PostDateMigration implements PostBackfill.Migration {
+
+    private static final String TAG = "PostDateMigration";
+
+    private final ZoneId writerZone;
+
+    /**
+     * @param writerZone The time zone of the devices that wrote the legacy date strings.
+     */
+    public PostDateMigration(ZoneId writerZone) {
+        this.writerZone = writerZone;
+    }
+
+    @Nullable
+    @Override
+    public Map<String, Object> updatesFor(DocumentSnapshot post) {
+        Map<String, Object> updates = new HashMap<>();
+
+        if (!(post.get(PostDates.POST_TIMESTAMP_FIELD) instanceof Timestamp)) {
+            long postMillis = PostDates.parseStored(stringOrNull(post, "postDate"), writerZone);
+            if (postMillis != PostDates.UNKNOWN) {
+                updates.put(PostDates.POST_TIMESTAMP_FIELD, new Timestamp(new Date(postMillis)));
+            } else {
+                Log.w(TAG, "Post " + post.getId() + " has no readable postDate, left without a sort key.");
+            }
+        }
+
+        if (!(post.get(PostDates.EDIT_TIMESTAMP_FIELD) instanceof Timestamp)) {
+            long editMillis = PostDates.parseStored(stringOrNull(post, "editDate"), writerZone);
+            if (editMillis != PostDates.UNKNOWN) {
+                updates.put(PostDates.EDIT_TIMESTAMP_FIELD, new Timestamp(new Date(editMillis)));
+            }
+        }
+
+        return updates.isEmpty() ? null : updates;
+    }
+
+    @Nullable
+    private static String stringOrNull(DocumentSnapshot post, String field) {
+        Object value = post.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+}
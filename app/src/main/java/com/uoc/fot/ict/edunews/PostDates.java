@@ -0,0 +1,118 @@
+package com.uoc.fot.ict.edunews;
+
+import android.util.Log;
+
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Parsing and display formatting for post dates.
+ * All formatters are immutable java.time formatters shared by every screen, so no formatter is
+ * ever created while binding list rows.
+ */
+public final class PostDates {
+
+    private static final String TAG = "PostDates";
+
+    /** Value of a parsed date when the post has no (readable) date. */
+    public static final long UNKNOWN = 0L;
+
+    /**
+     * Numeric sort key of a post, a server-set Firestore Timestamp. Feeds order by this field;
+     * the legacy "postDate" string is still written for older app versions and read as a fallback.
+     */
+    public static final String POST_TIMESTAMP_FIELD = "postTimestamp";
+    /** Server-set Firestore Timestamp of the last edit, replacing the "editDate" string. */
+    public static final String EDIT_TIMESTAMP_FIELD = "editTimestamp";
+
+    // Format of the "postDate" and "editDate" strings written by CreatePost and EditPost
+    private static final DateTimeFormatter STORED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+
+    private static final DateTimeFormatter LIST_FORMAT = DateTimeFormatter.ofPattern("hh.mm a (yyyy.MM.dd)", Locale.getDefault()); // e.g. "10.30 AM (2025.06.15)"
+    private static final DateTimeFormatter BANNER_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd\nhh.mm a", Locale.getDefault());
+    private static final DateTimeFormatter DETAIL_FORMAT = DateTimeFormatter.ofPattern("hh:mm a | yyyy.MM.dd", Locale.getDefault());
+    private static final DateTimeFormatter EDITED_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd | hh:mm a", Locale.getDefault());
+
+    private PostDates() {
+        // Static helpers only
+    }
+
+    /**
+     * Parses a stored "yyyy-MM-dd HH:mm:ss" date string in the device time zone.
+     * @param stored The stored date string, may be null or empty.
+     * @return Epoch milliseconds, or {@link #UNKNOWN} if the string is missing or malformed.
+     */
+    public static long parseStored(String stored) {
+        return parseStored(stored, ZoneId.systemDefault());
+    }
+
+    /**
+     * Parses a stored "yyyy-MM-dd HH:mm:ss" date string in the given time zone.
+     * @param stored The stored date string, may be null or empty.
+     * @param zone The time zone the string was written in.
+     * @return Epoch milliseconds, or {@link #UNKNOWN} if the string is missing or malformed.
+     */
+    public static long parseStored(String stored, ZoneId zone) {
+        if (stored == null || stored.isEmpty()) {
+            return UNKNOWN;
+        }
+        try {
+            return LocalDateTime.parse(stored, STORED_FORMAT)
+                    .atZone(zone)
+                    .toInstant()
+                    .toEpochMilli();
+        } catch (DateTimeParseException e) {
+            Log.w(TAG, "Unparseable post date: " + stored);
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Reads a date from a post document, preferring the Timestamp field and falling back to the
+     * legacy string field for documents that have not been migrated yet.
+     * @param document The post document.
+     * @param timestampField The Timestamp field, e.g. {@link #POST_TIMESTAMP_FIELD}.
+     * @param legacyField The legacy string field, e.g. "postDate".
+     * @return Epoch milliseconds, or {@link #UNKNOWN}.
+     */
+    public static long readMillis(DocumentSnapshot document, String timestampField, String legacyField) {
+        Object value = document.get(timestampField, DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toDate().getTime();
+        }
+        Object legacy = document.get(legacyField);
+        return legacy instanceof String ? parseStored((String) legacy) : UNKNOWN;
+    }
+
+    /** @return The date as shown on list cards, e.g. "10.30 AM (2025.06.15)". */
+    public static String formatForList(long millis) {
+        return format(LIST_FORMAT, millis);
+    }
+
+    /** @return The date as shown on the home banners, date and time on separate lines. */
+    public static String formatForBanner(long millis) {
+        return format(BANNER_FORMAT, millis);
+    }
+
+    /** @return The date as shown on the article detail screen, e.g. "10:30 AM | 2025.06.15". */
+    public static String formatForDetail(long millis) {
+        return format(DETAIL_FORMAT, millis);
+    }
+
+    /** @return The edit date as shown on the article detail screen. */
+    public static String formatForEdited(long millis) {
+        return format(EDITED_FORMAT, millis);
+    }
+
+    private static String format(DateTimeFormatter formatter, long millis) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).format(formatter);
+    }
+}
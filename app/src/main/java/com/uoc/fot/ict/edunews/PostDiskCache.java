@@ -0,0 +1,171 @@
+package com.uoc.fot.ict.edunews;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores the last known result of each feed query as a small JSON file, so a feed can be
+ * rendered immediately after a cold start. Must only be used from {@link AppExecutors#diskIO()}.
+ */
+class PostDiskCache {
+
+    private static final String TAG = "PostDiskCache";
+    private static final int MAX_FILES = 32; // Oldest snapshots are evicted beyond this
+
+    private final File directory;
+
+    PostDiskCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads the snapshot saved for the given key.
+     * @param key The feed key used when the snapshot was written.
+     * @return The cached articles, or null if there is no readable snapshot.
+     */
+    @Nullable
+    List<NewsArticle> read(String key) {
+        File file = fileFor(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+            JSONObject root = new JSONObject(new String(bytes, 0, offset, StandardCharsets.UTF_8));
+            if (!key.equals(root.optString("key"))) {
+                return null; // File name collision, treat as a miss
+            }
+            JSONArray items = root.getJSONArray("articles");
+            List<NewsArticle> articles = new ArrayList<>(items.length());
+            for (int i = 0; i < items.length(); i++) {
+                articles.add(fromJson(items.getJSONObject(i)));
+            }
+            return articles;
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Discarding unreadable cache file for " + key, e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the snapshot for the given key with the given articles.
+     * @param key The feed key.
+     * @param articles The articles to persist.
+     */
+    void write(String key, List<NewsArticle> articles) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Unable to create cache directory " + directory);
+            return;
+        }
+        try {
+            JSONArray items = new JSONArray();
+            for (NewsArticle article : articles) {
+                items.put(toJson(article));
+            }
+            JSONObject root = new JSONObject();
+            root.put("key", key);
+            root.put("articles", items);
+
+            // Write to a temp file first so a crash never leaves a half-written snapshot
+            File target = fileFor(key);
+            File temp = new File(directory, target.getName() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(root.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (!temp.renameTo(target)) {
+                Log.w(TAG, "Unable to move cache file into place for " + key);
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to write cache for " + key, e);
+        }
+        trim();
+    }
+
+    /**
+     * Deletes every stored snapshot.
+     */
+    void clear() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= MAX_FILES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - MAX_FILES; i++) {
+            //noinspection ResultOfMethodCallIgnored
+            files[i].delete();
+        }
+    }
+
+    private File fileFor(String key) {
+        String safeName = key.replaceAll("[^A-Za-z0-9_-]", "_");
+        return new File(directory, safeName + "_" + Integer.toHexString(key.hashCode()) + ".json");
+    }
+
+    static JSONObject toJson(NewsArticle article) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("id", article.getId());
+        json.put("title", article.getTitle());
+        json.put("description", article.getDescription());
+        json.put("imageUrl", article.getImageUrl());
+        json.put("imageMediumUrl", article.getImageMediumUrl());
+        json.put("imageThumbUrl", article.getImageThumbUrl());
+        json.put("postDate", article.getPostDate());
+        json.put("postDateMillis", article.getPostDateMillis());
+        json.put("category", article.getCategory());
+        json.put("author", article.getAuthor());
+        json.put("userId", article.getUserId());
+        return json;
+    }
+
+    static NewsArticle fromJson(JSONObject json) {
+        NewsArticle article = new NewsArticle(
+                json.optString("id", null),
+                json.optString("title", null),
+                json.optString("description", null),
+                json.optString("imageUrl", null),
+                json.optString("postDate", ""),
+                json.optString("category", null),
+                json.optString("author", null),
+                json.optString("userId", null));
+        article.setImageMediumUrl(json.optString("imageMediumUrl", null));
+        article.setImageThumbUrl(json.optString("imageThumbUrl", null));
+        if (json.has("postDateMillis")) {
+            article.setPostDateMillis(json.optLong("postDateMillis", PostDates.UNKNOWN));
+        }
+        return article;
+    }
+}
@@ -0,0 +1,186 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates and removes the resolution variants of a post image.
+ * A picked image is encoded into three local WebP files, which the {@link PostUploadWorker}
+ * uploads into the job's folder: post_images/{postId}/ for a new post, a fresh
+ * post_images/{uuid}/ for an edit that replaces the image. The files are a list thumbnail, a
+ * medium size for banners and a full size for the article screen. All three URLs are stored on
+ * the post; "imageUrl" keeps pointing at the full size so older app versions still work.
+ */
+public final class PostImages {
+
+    private static final String TAG = "PostImages";
+
+    public static final String IMAGE_URL_FIELD = "imageUrl";
+    public static final String MEDIUM_URL_FIELD = "imageMediumUrl";
+    public static final String THUMB_URL_FIELD = "imageThumbUrl";
+
+    // Longest edge of each variant in pixels, its starting WebP quality, and the size to stay under
+    public static final int THUMB_EDGE = 480;
+    public static final int MEDIUM_EDGE = 1080;
+    public static final int FULL_EDGE = 2048;
+    private static final int THUMB_QUALITY = 70;
+    private static final int MEDIUM_QUALITY = 80;
+    private static final int FULL_QUALITY = 85;
+    private static final long THUMB_TARGET_BYTES = 40 * 1024;
+    private static final long MEDIUM_TARGET_BYTES = 200 * 1024;
+    private static final long FULL_TARGET_BYTES = 600 * 1024;
+
+    // File names of the thumb, medium and full variants inside an image's folder, in that order
+    static final String[] VARIANT_FILE_NAMES = {"thumb.webp", "medium.webp", "full.webp"};
+
+    /**
+     * Download URLs of an uploaded image.
+     */
+    public static class Uploaded {
+        public final String thumbUrl;
+        public final String mediumUrl;
+        public final String fullUrl;
+
+        Uploaded(String thumbUrl, String mediumUrl, String fullUrl) {
+            this.thumbUrl = thumbUrl;
+            this.mediumUrl = mediumUrl;
+            this.fullUrl = fullUrl;
+        }
+
+        /**
+         * @return The post fields pointing at this image.
+         */
+        public Map<String, Object> toFields() {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put(IMAGE_URL_FIELD, fullUrl);
+            fields.put(MEDIUM_URL_FIELD, mediumUrl);
+            fields.put(THUMB_URL_FIELD, thumbUrl);
+            return fields;
+        }
+    }
+
+    private PostImages() {
+        // Static helpers only
+    }
+
+    /**
+     * @return The post fields for a post without an image.
+     */
+    public static Map<String, Object> clearedFields() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(IMAGE_URL_FIELD, null);
+        fields.put(MEDIUM_URL_FIELD, null);
+        fields.put(THUMB_URL_FIELD, null);
+        return fields;
+    }
+
+    /**
+     * Encodes the variants into local files, for uploads that must survive the
+     * process (see {@link PostUploadWorker}). Each file is written under a temporary name and
+     * renamed when complete, so a file that exists is never truncated. Call off the main thread.
+     * @param resolver Used to read the source.
+     * @param source The image to encode.
+     * @param targets The thumb, medium and full target files, in that order.
+     */
+    static void encodeVariantsToFiles(ContentResolver resolver, Uri source, File[] targets) throws IOException {
+        Bitmap full = ImageCompressor.decode(resolver, source, FULL_EDGE);
+        try {
+            for (int i = 0; i < targets.length; i++) {
+                File partial = new File(targets[i].getPath() + ".tmp");
+                try (OutputStream out = new FileOutputStream(partial)) {
+                    encodeVariant(full, i, out); // Straight into the file the upload streams from
+                }
+                if (!partial.renameTo(targets[i])) {
+                    throw new IOException("Could not store " + targets[i].getName());
+                }
+            }
+        } finally {
+            full.recycle();
+        }
+    }
+
+    /**
+     * @return The metadata every variant is stored with.
+     */
+    static StorageMetadata variantMetadata() {
+        return new StorageMetadata.Builder()
+                .setContentType("image/webp")
+                .setCacheControl("public, max-age=31536000") // Variants are never overwritten, only replaced
+                .build();
+    }
+
+    /**
+     * Deletes every stored variant of an image. URLs that are null, not Firebase Storage URLs
+     * or already gone are skipped, so the task only fails on real storage errors.
+     * @param storage The storage instance.
+     * @param urls The full, medium and thumbnail URLs of the image, in any order.
+     */
+    public static Task<Void> delete(FirebaseStorage storage, @Nullable String... urls) {
+        List<Task<Void>> deletions = new ArrayList<>();
+        for (String url : urls) {
+            if (url == null || url.isEmpty() || !url.contains("firebasestorage.googleapis.com")) {
+                continue;
+            }
+            try {
+                deletions.add(storage.getReferenceFromUrl(url).delete().continueWith(task -> {
+                    Exception e = task.getException();
+                    if (e instanceof StorageException
+                            && ((StorageException) e).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND) {
+                        return null; // Already deleted
+                    }
+                    if (e != null) {
+                        throw e;
+                    }
+                    return null;
+                }));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Not a Firebase Storage URL, skipping: " + url);
+            }
+        }
+        return Tasks.whenAll(deletions);
+    }
+
+    /**
+     * Scales the decoded image to one variant's size and writes it as WebP.
+     * @param variant 0 for the thumb, 1 for medium, 2 for full.
+     */
+    private static void encodeVariant(Bitmap full, int variant, OutputStream out) throws IOException {
+        int[] edges = {THUMB_EDGE, MEDIUM_EDGE, FULL_EDGE};
+        int[] qualities = {THUMB_QUALITY, MEDIUM_QUALITY, FULL_QUALITY};
+        long[] targets = {THUMB_TARGET_BYTES, MEDIUM_TARGET_BYTES, FULL_TARGET_BYTES};
+        Bitmap scaled = ImageCompressor.scaleDown(full, edges[variant]);
+        try {
+            ImageCompressor.compress(scaled, webpFormat(), qualities[variant], targets[variant], out);
+        } finally {
+            if (scaled != full) {
+                scaled.recycle();
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat() {
+        // WEBP_LOSSY only exists from API 30; on API 29 WEBP with quality < 100 is lossy too
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+}
@@ -0,0 +1,523 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.Source;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Single access point for reading the "posts" collection.
+ * Every feed is served from a bounded in-memory LRU first, then from an on-disk snapshot (or
+ * the Firestore cache if there is none), and is then revalidated against the server. Feeds
+ * that were read from the server more recently than the caller's maximum age are served from
+ * the Firestore cache alone, see {@link ReadPolicy}. Callbacks are always delivered on the main
+ * thread, possibly twice: once from cache and once from the server. Callers that ask for a feed
+ * while its server read is running share that read, e.g. the home screen and the startup
+ * prefetch of {@link AppStartup}.
+ * Feeds are ordered by the field {@link PostSortKey} picks: the legacy "postDate" string until the
+ * {@link PostDates#POST_TIMESTAMP_FIELD} backfill is marked done, so no post drops out of a feed
+ * during the rollout.
+ * Every page read from Firestore is also added to the {@link PostSearchStore}.
+ */
+public class PostRepository {
+
+    private static final String TAG = "PostRepository";
+
+    // Number of feed pages kept in memory across activities
+    private static final int MAX_MEMORY_PAGES = 16;
+
+    // Home shows 5 banner articles followed by 30 older articles, fetched in one query
+    public static final int HOME_BANNER_COUNT = 5;
+    public static final int HOME_FEED_SIZE = 35;
+    // Size of each further page of older news loaded while scrolling
+    public static final int HOME_PAGE_SIZE = 20;
+    // Categories are paged in both sort directions
+    public static final int CATEGORY_PAGE_SIZE = 20;
+    // Server-side keyword search results per page
+    public static final int SEARCH_PAGE_SIZE = 20;
+
+    private static final String HOME_KEY = "home";
+
+    /**
+     * Receives the result of a feed load.
+     */
+    public interface FeedCallback {
+        /**
+         * @param articles The loaded articles, in query order. The list is owned by the caller.
+         * @param fromCache True if the result came from a local cache and is being revalidated,
+         * so a server result (or an error) follows. False for server results and for cached
+         * results that are within the caller's maximum age.
+         */
+        void onArticlesLoaded(List<NewsArticle> articles, boolean fromCache);
+
+        /**
+         * Called when the server request fails. Cached results may already have been delivered.
+         * @param e The failure.
+         */
+        void onError(Exception e);
+    }
+
+    /**
+     * Receives one additional page of a paged feed.
+     */
+    public interface PageCallback {
+        /**
+         * @param page The newly loaded articles, to be appended after the ones already shown.
+         * @param endReached True if there are no further pages.
+         */
+        void onPageLoaded(List<NewsArticle> page, boolean endReached);
+
+        void onError(Exception e);
+    }
+
+    /**
+     * Cursor state of a paged feed. It lives as long as the process, so pages that were already
+     * scrolled through survive a refresh or a return to the screen.
+     */
+    private static class PageCursor {
+        String firstPageLastId; // ID of the last document of the first page
+        DocumentSnapshot lastDocument; // Where the next page starts
+        final List<NewsArticle> extraPages = new ArrayList<>(); // Everything after the first page
+        boolean endReached;
+        boolean loading;
+        int generation; // Incremented on reset so in-flight pages of an old chain are dropped
+    }
+
+    private static PostRepository instance;
+
+    private final FirebaseFirestore db;
+    private final LruCache<String, List<NewsArticle>> memoryCache = new LruCache<>(MAX_MEMORY_PAGES);
+    private final PostDiskCache diskCache;
+    private final ReadPolicy readPolicy;
+    private final PostSearchStore searchStore;
+    private final PostSortKey sortKey;
+    private final Map<String, PageCursor> cursors = new HashMap<>();
+    // Callers waiting for a running server read of a feed, by feed key
+    private final Map<String, List<ServerWaiter>> serverReads = new HashMap<>();
+
+    private PostRepository(Context context) {
+        db = FirebaseFirestore.getInstance();
+        diskCache = new PostDiskCache(new File(context.getCacheDir(), "post_cache"));
+        readPolicy = ReadPolicy.getInstance(context);
+        searchStore = PostSearchStore.getInstance(context);
+        sortKey = PostSortKey.getInstance(context);
+        sortKey.refresh(db); // Picked up on the next start
+    }
+
+    /**
+     * @param context Any context; only the application context is retained.
+     * @return The process-wide repository.
+     */
+    public static synchronized PostRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new PostRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the newest posts for the home screen (banners and older news together).
+     * @param maxAgeMillis How old the last server read may be before it is revalidated;
+     * {@link ReadPolicy#ALWAYS_REVALIDATE} for an explicit refresh.
+     * @param callback Receives cached and fresh results.
+     */
+    public void loadHomeFeed(long maxAgeMillis, FeedCallback callback) {
+        load(HOME_KEY, homeQuery().limit(HOME_FEED_SIZE), HOME_FEED_SIZE, maxAgeMillis, callback);
+    }
+
+    /**
+     * @return Older news pages that were already loaded after the first home page, in order.
+     */
+    public List<NewsArticle> getLoadedHomePages() {
+        return new ArrayList<>(cursorFor(HOME_KEY).extraPages);
+    }
+
+    /**
+     * Loads the next page of older news after everything already loaded for the home feed.
+     * @param callback Receives the page.
+     * @return False if nothing was started because a page is in flight, the end was reached,
+     * or the first page has not come from the server yet.
+     */
+    public boolean loadNextHomePage(PageCallback callback) {
+        return loadNextPage(HOME_KEY, homeQuery(), HOME_PAGE_SIZE, callback);
+    }
+
+    /**
+     * @return The field the feed queries order by in this process, see {@link PostSortKey}.
+     */
+    String sortField() {
+        return sortKey.field();
+    }
+
+    /**
+     * @return The ordered home feed query without limit or cursor, e.g. for a {@link LiveFeed}.
+     */
+    Query homeQuery() {
+        return db.collection("posts").orderBy(sortKey.field(), Query.Direction.DESCENDING);
+    }
+
+    /**
+     * Loads the first page of a category.
+     * @param category The category name as stored on the post.
+     * @param oldestFirst True to page from the oldest post forward, false for newest first.
+     * Each direction is a separate server query with its own cursor.
+     * @param maxAgeMillis How old the last server read may be before it is revalidated.
+     * @param callback Receives cached and fresh results.
+     */
+    public void loadCategory(String category, boolean oldestFirst, long maxAgeMillis, FeedCallback callback) {
+        load(categoryKey(category, oldestFirst), categoryQuery(category, oldestFirst).limit(CATEGORY_PAGE_SIZE),
+                CATEGORY_PAGE_SIZE, maxAgeMillis, callback);
+    }
+
+    /**
+     * @return Pages of the category that were already loaded after its first page, in order.
+     */
+    public List<NewsArticle> getLoadedCategoryPages(String category, boolean oldestFirst) {
+        return new ArrayList<>(cursorFor(categoryKey(category, oldestFirst)).extraPages);
+    }
+
+    /**
+     * Loads the next page of a category after everything already loaded in that direction.
+     * @return False if nothing was started (page in flight, end reached or no cursor yet).
+     */
+    public boolean loadNextCategoryPage(String category, boolean oldestFirst, PageCallback callback) {
+        return loadNextPage(categoryKey(category, oldestFirst), categoryQuery(category, oldestFirst),
+                CATEGORY_PAGE_SIZE, callback);
+    }
+
+    /**
+     * @return True if the server has confirmed that every post of the category in this direction
+     * is already loaded, so the other direction is simply the reverse of the loaded list.
+     */
+    public boolean isCategoryFullyLoaded(String category, boolean oldestFirst) {
+        PageCursor cursor = cursors.get(categoryKey(category, oldestFirst));
+        return cursor != null && cursor.endReached && cursor.firstPageLastId != null;
+    }
+
+    /**
+     * @return The ordered category query without limit or cursor, e.g. for a {@link LiveFeed}.
+     */
+    Query categoryQuery(String category, boolean oldestFirst) {
+        return db.collection("posts")
+                .whereEqualTo("category", category)
+                .orderBy(sortKey.field(), oldestFirst ? Query.Direction.ASCENDING : Query.Direction.DESCENDING);
+    }
+
+    private static String categoryKey(String category, boolean oldestFirst) {
+        return "category:" + category + (oldestFirst ? ":oldest" : ":latest");
+    }
+
+    /**
+     * Loads the posts written by a user, newest first.
+     * @param userId The author's Firebase UID.
+     * @param maxAgeMillis How old the last server read may be before it is revalidated.
+     * @param callback Receives cached and fresh results.
+     */
+    public void loadUserPosts(String userId, long maxAgeMillis, FeedCallback callback) {
+        Query query = db.collection("posts")
+                .whereEqualTo("userId", userId)
+                .orderBy(sortKey.field(), Query.Direction.DESCENDING);
+        load("user:" + userId, query, 0, maxAgeMillis, callback);
+    }
+
+    /**
+     * Loads a page of a server-side keyword search over {@link PostSearchFields#SEARCH_TOKENS_FIELD},
+     * newest first. Only the query's most selective word is sent (see
+     * {@link PostSearchFields#serverToken}); the returned posts are added to the
+     * {@link PostSearchStore}, which applies the full query when it is searched again.
+     * @param text The search text as typed.
+     * @param fromStart True for a new search, false to continue after the pages already loaded.
+     * @param callback Receives the page.
+     * @return False if nothing was started: no searchable word, a page in flight, or the end was
+     * reached.
+     */
+    public boolean loadSearchPage(String text, boolean fromStart, PageCallback callback) {
+        String token = PostSearchFields.serverToken(text);
+        if (token == null) {
+            return false;
+        }
+        String key = "search:" + token;
+        PageCursor cursor = cursorFor(key);
+        if (fromStart) {
+            cursor.extraPages.clear();
+            cursor.lastDocument = null;
+            cursor.endReached = false;
+            cursor.loading = false;
+            cursor.generation++;
+        }
+        if (cursor.loading || cursor.endReached) {
+            return false;
+        }
+        // Needs a composite index on searchTokens (array-contains) with the sort field (descending):
+        // postDate until the timestamp rollout, postTimestamp after it (see PostSortKey)
+        Query query = db.collection("posts")
+                .whereArrayContains(PostSearchFields.SEARCH_TOKENS_FIELD, token)
+                .orderBy(sortKey.field(), Query.Direction.DESCENDING);
+        if (cursor.lastDocument != null) {
+            query = query.startAfter(cursor.lastDocument);
+        }
+        fetchPage(key, query, SEARCH_PAGE_SIZE, cursor, callback);
+        return true;
+    }
+
+    /**
+     * Marks every feed as stale, so the next load of each goes to the server. Used after the
+     * signed-in user created, edited or deleted a post.
+     */
+    public void invalidate() {
+        readPolicy.invalidateAll();
+    }
+
+    /**
+     * Drops every cached feed, in memory and on disk. Used when the signed-in user changes.
+     */
+    public void clear() {
+        memoryCache.evictAll();
+        cursors.clear();
+        readPolicy.invalidateAll();
+        AppExecutors.diskIO().execute(diskCache::clear);
+    }
+
+    /**
+     * @param pageSize The limit of the query if the feed is paged, or 0 if it is loaded in one go.
+     * @param maxAgeMillis If the last server read of the feed is younger than this, it is served
+     * from local data only.
+     */
+    private void load(String key, Query query, int pageSize, long maxAgeMillis, FeedCallback callback) {
+        if (!readPolicy.isFresh(key, maxAgeMillis)) {
+            loadAndRevalidate(key, query, pageSize, callback);
+            return;
+        }
+        List<NewsArticle> cached = memoryCache.get(key);
+        if (cached != null && (pageSize == 0 || cursorFor(key).lastDocument != null)) {
+            callback.onArticlesLoaded(new ArrayList<>(cached), false);
+            return;
+        }
+        // The Firestore cache still holds the documents of the recent server read, and unlike
+        // the disk snapshot it yields document snapshots to continue paging from
+        query.get(Source.CACHE).addOnCompleteListener(task -> {
+            if (task.isSuccessful() && task.getResult() != null && !task.getResult().isEmpty()) {
+                callback.onArticlesLoaded(storeFirstPage(key, task.getResult().getDocuments(), pageSize), false);
+            } else {
+                loadAndRevalidate(key, query, pageSize, callback);
+            }
+        });
+    }
+
+    /**
+     * Shows the best local copy of the feed right away and replaces it with a server read.
+     */
+    private void loadAndRevalidate(String key, Query query, int pageSize, FeedCallback callback) {
+        // Tracks whether the server already answered, so a slow local read never overwrites it
+        final boolean[] serverDelivered = {false};
+
+        List<NewsArticle> cached = memoryCache.get(key);
+        if (cached != null) {
+            callback.onArticlesLoaded(new ArrayList<>(cached), true);
+        } else {
+            AppExecutors.diskIO().execute(() -> {
+                List<NewsArticle> fromDisk = diskCache.read(key);
+                AppExecutors.runOnMain(() -> {
+                    if (serverDelivered[0]) {
+                        return;
+                    }
+                    if (fromDisk != null) {
+                        memoryCache.put(key, Collections.unmodifiableList(fromDisk));
+                        callback.onArticlesLoaded(new ArrayList<>(fromDisk), true);
+                    } else {
+                        loadFromFirestoreCache(query, serverDelivered, callback);
+                    }
+                });
+            });
+        }
+
+        List<ServerWaiter> waiters = serverReads.get(key);
+        if (waiters != null) {
+            waiters.add(new ServerWaiter(callback, serverDelivered)); // Single flight: join the running read
+            return;
+        }
+        waiters = new ArrayList<>();
+        waiters.add(new ServerWaiter(callback, serverDelivered));
+        serverReads.put(key, waiters);
+
+        long readStartedAt = SystemClock.elapsedRealtime();
+        query.get(Source.SERVER).addOnCompleteListener(task -> {
+            List<ServerWaiter> done = serverReads.remove(key);
+            for (ServerWaiter waiter : done) {
+                waiter.serverDelivered[0] = true;
+            }
+            if (task.isSuccessful() && task.getResult() != null) {
+                readPolicy.markFetched(key);
+                List<NewsArticle> articles = storeFirstPage(key, task.getResult().getDocuments(), pageSize);
+                markServerRead(articles, readStartedAt);
+                for (ServerWaiter waiter : done) {
+                    waiter.callback.onArticlesLoaded(new ArrayList<>(articles), false);
+                }
+            } else {
+                Exception e = task.getException() != null ? task.getException() : new Exception("Unknown error");
+                Log.e(TAG, "Error loading " + key + ": " + e.getMessage());
+                for (ServerWaiter waiter : done) {
+                    waiter.callback.onError(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * One caller of a shared server read, with the flag that stops its local read from
+     * overwriting the server result.
+     */
+    private static class ServerWaiter {
+        final FeedCallback callback;
+        final boolean[] serverDelivered;
+
+        ServerWaiter(FeedCallback callback, boolean[] serverDelivered) {
+            this.callback = callback;
+            this.serverDelivered = serverDelivered;
+        }
+    }
+
+    /**
+     * Fallback when there is no disk snapshot of a feed yet (e.g. first launch after an update):
+     * whatever the Firestore cache holds for the query is shown until the server answers.
+     */
+    private void loadFromFirestoreCache(Query query, boolean[] serverDelivered, FeedCallback callback) {
+        query.get(Source.CACHE).addOnCompleteListener(task -> {
+            if (serverDelivered[0] || !task.isSuccessful() || task.getResult() == null || task.getResult().isEmpty()) {
+                return;
+            }
+            List<NewsArticle> articles = publishedArticles(task.getResult().getDocuments());
+            searchStore.index(articles);
+            callback.onArticlesLoaded(articles, true);
+        });
+    }
+
+    /**
+     * Remembers a first page read from Firestore in memory and on disk, and points the paging
+     * cursor after it.
+     * @return The articles of the page, owned by the caller.
+     */
+    private List<NewsArticle> storeFirstPage(String key, List<DocumentSnapshot> documents, int pageSize) {
+        List<NewsArticle> articles = publishedArticles(documents);
+        if (pageSize > 0) {
+            onFirstPageLoaded(key, documents, pageSize);
+        }
+        List<NewsArticle> snapshot = Collections.unmodifiableList(new ArrayList<>(articles));
+        memoryCache.put(key, snapshot);
+        AppExecutors.diskIO().execute(() -> diskCache.write(key, snapshot));
+        searchStore.index(snapshot); // Keeps the global search current with every feed read
+        return articles;
+    }
+
+    /**
+     * Points the cursor of a paged feed after a freshly loaded first page. Already loaded later
+     * pages are kept as long as the first page still ends on the same document; otherwise new
+     * posts have shifted the boundaries and the chain restarts after the first page.
+     */
+    private void onFirstPageLoaded(String key, List<DocumentSnapshot> documents, int pageSize) {
+        PageCursor cursor = cursorFor(key);
+        DocumentSnapshot last = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+        String lastId = last != null ? last.getId() : null;
+
+        if (cursor.extraPages.isEmpty() || !Objects.equals(lastId, cursor.firstPageLastId)) {
+            cursor.extraPages.clear();
+            cursor.lastDocument = last;
+            cursor.endReached = documents.size() < pageSize;
+            cursor.loading = false;
+            cursor.generation++;
+        }
+        cursor.firstPageLastId = lastId;
+    }
+
+    private boolean loadNextPage(String key, Query baseQuery, int pageSize, PageCallback callback) {
+        PageCursor cursor = cursorFor(key);
+        if (cursor.loading || cursor.endReached || cursor.lastDocument == null) {
+            return false;
+        }
+        fetchPage(key, baseQuery.startAfter(cursor.lastDocument), pageSize, cursor, callback);
+        return true;
+    }
+
+    /**
+     * Reads one page at the given position and advances the cursor past it.
+     * @param query The feed query, already positioned after the previous page.
+     */
+    private void fetchPage(String key, Query query, int pageSize, PageCursor cursor, PageCallback callback) {
+        cursor.loading = true;
+        final int generation = cursor.generation;
+        long readStartedAt = SystemClock.elapsedRealtime();
+
+        query.limit(pageSize)
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (generation != cursor.generation) {
+                        return; // The chain was restarted meanwhile (first page reloaded, new search), this page no longer fits
+                    }
+                    cursor.loading = false;
+                    if (task.isSuccessful() && task.getResult() != null) {
+                        List<DocumentSnapshot> documents = task.getResult().getDocuments();
+                        List<NewsArticle> page = publishedArticles(documents);
+                        if (!task.getResult().getMetadata().isFromCache()) {
+                            markServerRead(page, readStartedAt);
+                        }
+                        if (!documents.isEmpty()) {
+                            cursor.lastDocument = documents.get(documents.size() - 1);
+                        }
+                        cursor.endReached = documents.size() < pageSize;
+                        cursor.extraPages.addAll(page);
+                        searchStore.index(page);
+                        callback.onPageLoaded(page, cursor.endReached);
+                    } else {
+                        Exception e = task.getException() != null ? task.getException() : new Exception("Unknown error");
+                        Log.e(TAG, "Error loading next page of " + key + ": " + e.getMessage());
+                        callback.onError(e);
+                    }
+                });
+    }
+
+    /**
+     * Maps documents to articles, leaving out posts that are not published yet. Paging still
+     * continues after the last document, shown or not.
+     */
+    private static List<NewsArticle> publishedArticles(List<DocumentSnapshot> documents) {
+        List<NewsArticle> articles = new ArrayList<>(documents.size());
+        for (DocumentSnapshot document : documents) {
+            if (!PostStatus.isPending(document)) {
+                articles.add(NewsArticle.fromSnapshot(document));
+            }
+        }
+        return articles;
+    }
+
+    /**
+     * Stamps articles with the start of the server read they came from, see {@link PostStore#applyTo}.
+     * The memory cache holds the same objects, so the stamp stays with them there.
+     */
+    private static void markServerRead(List<NewsArticle> articles, long readStartedAt) {
+        for (NewsArticle article : articles) {
+            article.setServerReadAtMillis(readStartedAt);
+        }
+    }
+
+    private PageCursor cursorFor(String key) {
+        PageCursor cursor = cursors.get(key);
+        if (cursor == null) {
+            cursor = new PageCursor();
+            cursors.put(key, cursor);
+        }
+        return cursor;
+    }
+}
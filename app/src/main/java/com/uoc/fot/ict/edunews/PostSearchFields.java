@@ -0,0 +1,90 @@
+package com.uoc.fot.ict.edunews;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Search fields written on every post, so Firestore can answer keyword searches without the
+ * app downloading the collection: {@link #SEARCH_TOKENS_FIELD} holds the normalized words of
+ * title and description plus their prefixes, for {@code whereArrayContains} queries ("edu" finds
+ * "education"). Title prefixes are among them, so no separate title field is needed.
+ * Words go through {@link SearchTokens}, like the on-device index. Posts written before these
+ * fields existed get them from {@link PostSearchFieldsMigration}.
+ */
+public final class PostSearchFields {
+
+    public static final String SEARCH_TOKENS_FIELD = "searchTokens";
+
+    // Shorter prefixes match too much of the collection to be worth an index entry
+    static final int MIN_PREFIX_LENGTH = 3;
+    // Longer words are stored cut to this length; queries are cut the same way
+    static final int MAX_TOKEN_LENGTH = 20;
+    // Keeps each post's index entries and document size bounded; title words are added first
+    static final int MAX_TOKENS = 500;
+
+    private PostSearchFields() {
+        // Static helpers only
+    }
+
+    /**
+     * @return The search fields for a post with the given text, to be written with it.
+     */
+    public static Map<String, Object> toFields(String title, String description) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(SEARCH_TOKENS_FIELD, tokensFor(title, description));
+        return fields;
+    }
+
+    /**
+     * @return The distinct words and word prefixes of the text, title first, at most
+     * {@link #MAX_TOKENS} of them.
+     */
+    static List<String> tokensFor(String title, String description) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String word : SearchTokens.distinctTokens(title, description)) {
+            String stored = cut(word);
+            for (int length = MIN_PREFIX_LENGTH; length < stored.length(); length++) {
+                addBounded(tokens, stored.substring(0, length));
+            }
+            if (stored.length() > 1) {
+                addBounded(tokens, stored); // The whole word, even if shorter than a prefix
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /**
+     * Picks the one token a server search is made with, as Firestore allows a single
+     * array-contains per query: the longest word, being the most selective. The other words of
+     * the query are applied on the device.
+     * @param text The search text as typed.
+     * @return The token to query {@link #SEARCH_TOKENS_FIELD} with, or null if no word of the
+     * text is long enough to have been stored.
+     */
+    @Nullable
+    public static String serverToken(String text) {
+        String best = null;
+        for (String word : SearchTokens.tokenize(text)) {
+            if (word.length() > 1 && (best == null || word.length() > best.length())) {
+                best = word;
+            }
+        }
+        return best != null ? cut(best) : null;
+    }
+
+    private static String cut(String word) {
+        return word.length() > MAX_TOKEN_LENGTH ? word.substring(0, MAX_TOKEN_LENGTH) : word;
+    }
+
+    private static void addBounded(Set<String> tokens, String token) {
+        if (tokens.size() < MAX_TOKENS) {
+            tokens.add(token);
+        }
+    }
+}
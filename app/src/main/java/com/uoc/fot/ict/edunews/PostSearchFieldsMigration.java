@@ -0,0 +1,31 @@
+package com.uoc.fot.ict.edunews;
+
+import androidx.annotation.Nullable;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Backfills the {@link PostSearchFields} on posts written before they existed, and rewrites
+ * them on posts whose fields no longer match their text (e.g. after the token rules changed).
+ */
+public class PostSearchFieldsMigration implements PostBackfill.Migration {
+
+    // Written by earlier versions for title range queries that never shipped; removed when found
+    private static final String DROPPED_TITLE_LOWER_FIELD = "titleLower";
+
+    @Nullable
+    @Override
+    public Map<String, Object> updatesFor(DocumentSnapshot post) {
+        Map<String, Object> fields = PostSearchFields.toFields(post.getString("title"), post.getString("description"));
+        boolean upToDate = Objects.equals(post.get(PostSearchFields.SEARCH_TOKENS_FIELD), fields.get(PostSearchFields.SEARCH_TOKENS_FIELD));
+        if (post.contains(DROPPED_TITLE_LOWER_FIELD)) {
+            fields.put(DROPPED_TITLE_LOWER_FIELD, FieldValue.delete());
+            upToDate = false;
+        }
+        return upToDate ? null : fields;
+    }
+}
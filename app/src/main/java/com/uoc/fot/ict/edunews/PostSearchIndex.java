@@ -0,0 +1,147 @@
+package com.uoc.fot.ict.edunews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over the title and description tokens of a list of posts, used by
+ * the MyPosts search. Every query token is matched as a prefix ("edu" finds "education"), and
+ * a post matches when all query tokens do.
+ *
+ * A query that only extends the previous one (the usual case while typing) is answered by
+ * narrowing the previous matches instead of consulting the index again, so each keystroke
+ * costs at most the size of the previous result.
+ *
+ * Not thread-safe: build and query an index on one thread, e.g. {@link AppExecutors#compute()}.
+ */
+public class PostSearchIndex {
+
+    private final List<NewsArticle> articles;
+    // Token -> posting list: the indexes of the articles containing it, as bits
+    private final TreeMap<String, BitSet> postings = new TreeMap<>();
+    // Sorted distinct tokens of each article, for narrowing previous results
+    private final String[][] articleTokens;
+
+    // The previous query and its matches, for incremental narrowing
+    private List<String> lastQueryTokens = Collections.emptyList();
+    private BitSet lastMatches;
+
+    /**
+     * Indexes the articles.
+     * @param articles The articles in display order; results keep this order.
+     */
+    public PostSearchIndex(List<NewsArticle> articles) {
+        this.articles = new ArrayList<>(articles);
+        this.articleTokens = new String[this.articles.size()][];
+        for (int i = 0; i < this.articles.size(); i++) {
+            NewsArticle article = this.articles.get(i);
+            Set<String> tokens = SearchTokens.distinctTokens(article.getTitle(), article.getDescription());
+            String[] sorted = tokens.toArray(new String[0]);
+            Arrays.sort(sorted);
+            articleTokens[i] = sorted;
+            for (String token : sorted) {
+                BitSet posting = postings.get(token);
+                if (posting == null) {
+                    posting = new BitSet(this.articles.size());
+                    postings.put(token, posting);
+                }
+                posting.set(i);
+            }
+        }
+    }
+
+    /**
+     * @param query The search text as typed.
+     * @return The matching articles in index order; all articles for an empty query.
+     */
+    public List<NewsArticle> search(String query) {
+        List<String> queryTokens = SearchTokens.tokenize(query);
+        BitSet matches;
+        if (queryTokens.isEmpty()) {
+            matches = new BitSet(articles.size());
+            matches.set(0, articles.size());
+        } else if (lastMatches != null && narrows(lastQueryTokens, queryTokens)) {
+            matches = narrow(lastMatches, queryTokens);
+        } else {
+            matches = lookup(queryTokens);
+        }
+        lastQueryTokens = queryTokens;
+        lastMatches = matches;
+
+        List<NewsArticle> result = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(articles.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return True if every article matching the new query also matched the previous one, i.e.
+     * every previous token is a prefix of some new token.
+     */
+    private static boolean narrows(List<String> previous, List<String> next) {
+        for (String before : previous) {
+            boolean extended = false;
+            for (String after : next) {
+                if (after.startsWith(before)) {
+                    extended = true;
+                    break;
+                }
+            }
+            if (!extended) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private BitSet narrow(BitSet candidates, List<String> queryTokens) {
+        BitSet matches = new BitSet(articles.size());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (matchesAll(articleTokens[i], queryTokens)) {
+                matches.set(i);
+            }
+        }
+        return matches;
+    }
+
+    private BitSet lookup(List<String> queryTokens) {
+        BitSet matches = null;
+        for (String queryToken : queryTokens) {
+            BitSet forToken = new BitSet(articles.size());
+            // All indexed tokens starting with the query token form one contiguous range
+            SortedMap<String, BitSet> range = postings.subMap(queryToken, queryToken + Character.MAX_VALUE);
+            for (Map.Entry<String, BitSet> entry : range.entrySet()) {
+                forToken.or(entry.getValue());
+            }
+            if (matches == null) {
+                matches = forToken;
+            } else {
+                matches.and(forToken);
+            }
+            if (matches.isEmpty()) {
+                break; // No later token can add matches back
+            }
+        }
+        return matches;
+    }
+
+    private static boolean matchesAll(String[] sortedTokens, List<String> queryTokens) {
+        for (String queryToken : queryTokens) {
+            // The first token not smaller than the prefix is the only candidate that can start with it
+            int index = Arrays.binarySearch(sortedTokens, queryToken);
+            int candidate = index >= 0 ? index : -index - 1;
+            if (candidate >= sortedTokens.length || !sortedTokens[candidate].startsWith(queryToken)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
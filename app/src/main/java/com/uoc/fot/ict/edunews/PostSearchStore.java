@@ -0,0 +1,374 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * On-device full-text index of every post the app has loaded, backing the global search
+ * screen. It lives in a small SQLite database, so search keeps working offline and after a
+ * restart.
+ *
+ * <ul>
+ *     <li>Feeds {@link #index index} the pages they load and {@link LiveFeed} passes on snapshot
+ *     changes, so the index is maintained incrementally; unchanged posts are not rewritten.</li>
+ *     <li>Title and description are stored pre-normalized by {@link SearchTokens} in an FTS4
+ *     table, so matching agrees with the MyPosts search (accents and case are ignored).</li>
+ *     <li>Matches are ranked by term frequency, title hits weighing more, boosted by recency.</li>
+ * </ul>
+ * Public methods may be called from any thread; the database is only touched on
+ * {@link AppExecutors#diskIO()} and results are delivered on the main thread.
+ */
+public class PostSearchStore {
+
+    private static final String TAG = "PostSearchStore";
+
+    private static final String DATABASE_NAME = "post_search.db";
+    private static final int DATABASE_VERSION = 1;
+    private static final String POSTS_TABLE = "search_posts";
+    private static final String TEXT_TABLE = "search_text"; // FTS4, docid = search_posts.id
+
+    // The oldest posts by post date are dropped beyond this, so the index stays a few MB at most
+    private static final int MAX_POSTS = 5000;
+    // FTS matches ranked per query, newest first, so a very broad query still ranks recent posts
+    private static final int MAX_CANDIDATES = 500;
+    // A query word in the title counts this many times a word in the description
+    private static final double TITLE_WEIGHT = 3.0;
+    // A post this many days old gets half the recency boost of a post from today
+    private static final double RECENCY_HALF_LIFE_DAYS = 30.0;
+    private static final double MILLIS_PER_DAY = 24 * 60 * 60 * 1000.0;
+
+    // Words of the displayed text, including combining marks, for highlighting
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}\\p{M}]+");
+
+    /**
+     * Receives search results on the main thread.
+     */
+    public interface Callback {
+        /**
+         * @param results The best matches, best first. Empty if nothing matched or the index
+         * could not be read.
+         */
+        void onResults(List<Result> results);
+    }
+
+    /**
+     * One matching post with the character ranges of its title and description to highlight.
+     */
+    public static final class Result {
+        private final NewsArticle article;
+        private final double score;
+        private final int[] titleHighlights; // start, end pairs into the title
+        private final int[] descriptionHighlights; // start, end pairs into the description
+
+        Result(NewsArticle article, double score, int[] titleHighlights, int[] descriptionHighlights) {
+            this.article = article;
+            this.score = score;
+            this.titleHighlights = titleHighlights;
+            this.descriptionHighlights = descriptionHighlights;
+        }
+
+        public NewsArticle getArticle() { return article; }
+        public double getScore() { return score; }
+        public int[] getTitleHighlights() { return titleHighlights; }
+        public int[] getDescriptionHighlights() { return descriptionHighlights; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Result)) return false;
+            Result that = (Result) o;
+            return article.equals(that.article)
+                    && Arrays.equals(titleHighlights, that.titleHighlights)
+                    && Arrays.equals(descriptionHighlights, that.descriptionHighlights);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * article.hashCode() + Arrays.hashCode(titleHighlights);
+        }
+    }
+
+    private static PostSearchStore instance;
+
+    private final Database database;
+
+    private PostSearchStore(Context context) {
+        database = new Database(context);
+    }
+
+    /**
+     * @param context Any context; only the application context is retained.
+     * @return The process-wide index.
+     */
+    public static synchronized PostSearchStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new PostSearchStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Adds or updates posts in the index in the background.
+     * @param articles Posts as just loaded from Firestore or its cache.
+     */
+    public void index(List<NewsArticle> articles) {
+        if (articles.isEmpty()) {
+            return;
+        }
+        List<NewsArticle> copy = new ArrayList<>(articles); // The caller may keep mutating theirs
+        AppExecutors.diskIO().execute(() -> {
+            try {
+                upsertAll(copy);
+            } catch (SQLException | JSONException e) {
+                Log.e(TAG, "Indexing " + copy.size() + " posts failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Removes a post from the index in the background, e.g. after it was deleted.
+     */
+    public void remove(String postId) {
+        if (postId == null) {
+            return;
+        }
+        AppExecutors.diskIO().execute(() -> {
+            try {
+                SQLiteDatabase db = database.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    String[] args = {postId};
+                    db.delete(TEXT_TABLE, "docid IN (SELECT id FROM " + POSTS_TABLE + " WHERE post_id = ?)", args);
+                    db.delete(POSTS_TABLE, "post_id = ?", args);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } catch (SQLException e) {
+                Log.e(TAG, "Removing " + postId + " from the index failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Empties the index in the background, e.g. on sign-out.
+     */
+    public void clear() {
+        AppExecutors.diskIO().execute(() -> {
+            try {
+                SQLiteDatabase db = database.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    db.delete(TEXT_TABLE, null, null);
+                    db.delete(POSTS_TABLE, null, null);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } catch (SQLException e) {
+                Log.e(TAG, "Clearing the index failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Searches every indexed post.
+     * @param text The search text as typed, see {@link SearchQuery} for the syntax.
+     * @param limit The maximum number of results.
+     * @param callback Receives the ranked results on the main thread.
+     */
+    public void search(String text, int limit, Callback callback) {
+        SearchQuery query = SearchQuery.parse(text);
+        if (query.isEmpty()) {
+            AppExecutors.runOnMain(() -> callback.onResults(new ArrayList<>()));
+            return;
+        }
+        AppExecutors.diskIO().execute(() -> {
+            List<Result> results;
+            try {
+                results = rank(query, limit);
+            } catch (SQLException e) {
+                Log.e(TAG, "Search failed: " + e.getMessage());
+                results = new ArrayList<>();
+            }
+            List<Result> delivered = results;
+            AppExecutors.runOnMain(() -> callback.onResults(delivered));
+        });
+    }
+
+    private void upsertAll(List<NewsArticle> articles) throws JSONException {
+        SQLiteDatabase db = database.getWritableDatabase();
+        boolean inserted = false;
+        db.beginTransaction();
+        try {
+            for (NewsArticle article : articles) {
+                inserted |= upsert(db, article);
+            }
+            if (inserted) {
+                trim(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return True if a new row was inserted.
+     */
+    private boolean upsert(SQLiteDatabase db, NewsArticle article) throws JSONException {
+        if (article.getId() == null) {
+            return false;
+        }
+        String json = PostDiskCache.toJson(article).toString();
+        long rowId = -1;
+        String stored = null;
+        try (Cursor cursor = db.rawQuery("SELECT id, article FROM " + POSTS_TABLE + " WHERE post_id = ?",
+                new String[]{article.getId()})) {
+            if (cursor.moveToFirst()) {
+                rowId = cursor.getLong(0);
+                stored = cursor.getString(1);
+            }
+        }
+        if (json.equals(stored)) {
+            return false; // Unchanged, the usual case when a feed is loaded again
+        }
+
+        ContentValues post = new ContentValues();
+        post.put("post_id", article.getId());
+        post.put("post_date_millis", article.getPostDateMillis());
+        post.put("article", json);
+        ContentValues text = new ContentValues();
+        text.put("title", String.join(" ", SearchTokens.tokenize(article.getTitle())));
+        text.put("body", String.join(" ", SearchTokens.tokenize(article.getDescription())));
+
+        if (rowId < 0) {
+            rowId = db.insertOrThrow(POSTS_TABLE, null, post);
+            text.put("docid", rowId);
+            db.insertOrThrow(TEXT_TABLE, null, text);
+            return true;
+        }
+        String[] args = {String.valueOf(rowId)};
+        db.update(POSTS_TABLE, post, "id = ?", args);
+        db.update(TEXT_TABLE, text, "docid = ?", args);
+        return false;
+    }
+
+    private void trim(SQLiteDatabase db) {
+        String oldest = "SELECT id FROM " + POSTS_TABLE + " ORDER BY post_date_millis DESC LIMIT -1 OFFSET " + MAX_POSTS;
+        db.execSQL("DELETE FROM " + TEXT_TABLE + " WHERE docid IN (" + oldest + ")");
+        db.execSQL("DELETE FROM " + POSTS_TABLE + " WHERE id IN (" + oldest + ")");
+    }
+
+    private List<Result> rank(SearchQuery query, int limit) {
+        List<Result> ranked = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        String sql = "SELECT " + POSTS_TABLE + ".article, " + TEXT_TABLE + ".title, " + TEXT_TABLE + ".body"
+                + " FROM " + TEXT_TABLE + " JOIN " + POSTS_TABLE + " ON " + POSTS_TABLE + ".id = " + TEXT_TABLE + ".docid"
+                + " WHERE " + TEXT_TABLE + " MATCH ?"
+                + " ORDER BY " + POSTS_TABLE + ".post_date_millis DESC LIMIT " + MAX_CANDIDATES;
+        try (Cursor cursor = database.getReadableDatabase().rawQuery(sql, new String[]{query.toMatchExpression()})) {
+            while (cursor.moveToNext()) {
+                NewsArticle article;
+                try {
+                    article = PostDiskCache.fromJson(new JSONObject(cursor.getString(0)));
+                } catch (JSONException e) {
+                    continue; // Unreadable row, it is rewritten the next time the post is loaded
+                }
+                int titleFrequency = query.frequencyIn(tokensOf(cursor.getString(1)));
+                int bodyFrequency = query.frequencyIn(tokensOf(cursor.getString(2)));
+                double textScore = Math.log1p(TITLE_WEIGHT * titleFrequency + bodyFrequency);
+                ranked.add(new Result(article, textScore * (1 + recencyOf(article, now)), null, null));
+            }
+        }
+        // Best score first; ties keep the newest-first order of the query (the sort is stable)
+        Collections.sort(ranked, (a, b) -> Double.compare(b.score, a.score));
+
+        List<Result> results = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (Result candidate : ranked.subList(0, Math.min(limit, ranked.size()))) {
+            NewsArticle article = candidate.article;
+            results.add(new Result(article, candidate.score,
+                    highlightsIn(article.getTitle(), query), highlightsIn(article.getDescription(), query)));
+        }
+        return results;
+    }
+
+    /**
+     * @return 1 for a post from today, falling towards 0 with age; 0 if the post has no date.
+     */
+    private static double recencyOf(NewsArticle article, long now) {
+        if (!article.hasPostDate()) {
+            return 0;
+        }
+        double ageDays = Math.max(0, now - article.getPostDateMillis()) / MILLIS_PER_DAY;
+        return 1.0 / (1.0 + ageDays / RECENCY_HALF_LIFE_DAYS);
+    }
+
+    private static String[] tokensOf(String indexedText) {
+        return indexedText == null || indexedText.isEmpty() ? new String[0] : indexedText.split(" ");
+    }
+
+    /**
+     * @return The start, end pairs of the words of the original text that the query matched.
+     */
+    private static int[] highlightsIn(String text, SearchQuery query) {
+        if (text == null || text.isEmpty()) {
+            return new int[0];
+        }
+        List<Integer> ranges = new ArrayList<>();
+        Matcher word = WORD.matcher(text);
+        while (word.find()) {
+            if (query.highlights(SearchTokens.normalize(word.group()))) {
+                ranges.add(word.start());
+                ranges.add(word.end());
+            }
+        }
+        int[] highlights = new int[ranges.size()];
+        for (int i = 0; i < highlights.length; i++) {
+            highlights[i] = ranges.get(i);
+        }
+        return highlights;
+    }
+
+    private static class Database extends SQLiteOpenHelper {
+
+        Database(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + POSTS_TABLE + " ("
+                    + "id INTEGER PRIMARY KEY, "
+                    + "post_id TEXT NOT NULL UNIQUE, "
+                    + "post_date_millis INTEGER NOT NULL, "
+                    + "article TEXT NOT NULL)");
+            db.execSQL("CREATE INDEX " + POSTS_TABLE + "_date ON " + POSTS_TABLE + " (post_date_millis)");
+            // The text is already normalized and space separated, the simple tokenizer only splits it
+            db.execSQL("CREATE VIRTUAL TABLE " + TEXT_TABLE + " USING fts4(title, body, tokenize=simple)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // Everything in here can be rebuilt from the feeds, so start over
+            db.execSQL("DROP TABLE IF EXISTS " + TEXT_TABLE);
+            db.execSQL("DROP TABLE IF EXISTS " + POSTS_TABLE);
+            onCreate(db);
+        }
+    }
+}
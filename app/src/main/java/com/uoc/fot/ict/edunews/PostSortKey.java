@@ -0,0 +1,80 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.firebase.firestore.FirebaseFirestore;
+
+/**
+ * Chooses the field every feed query orders by. Firestore leaves documents without the order
+ * field out of a query, so feeds keep ordering by the legacy "postDate" string (which every
+ * version writes, and which sorts chronologically as "yyyy-MM-dd HH:mm:ss") until the
+ * {@link PostDates#POST_TIMESTAMP_FIELD} rollout is marked complete in the project:
+ *
+ * {@code meta/rollout} with {@code postTimestampReady: true}, set once {@link PostDateMigration}
+ * has run and no app version that writes posts without the timestamp is in use any more.
+ *
+ * The flag is read in the background and takes effect on the next start, so a running feed
+ * never switches order between two pages.
+ */
+public class PostSortKey {
+
+    private static final String TAG = "PostSortKey";
+
+    static final String ROLLOUT_DOCUMENT = "meta/rollout";
+    static final String TIMESTAMP_READY_FIELD = "postTimestampReady";
+    // Legacy sort key; see PostDates for its format
+    static final String LEGACY_FIELD = "postDate";
+
+    private static final String PREFS_NAME = "post_sort_key";
+    private static final String KEY_TIMESTAMP_READY = "timestamp_ready";
+
+    private static PostSortKey instance;
+
+    private final SharedPreferences prefs;
+    private final boolean timestampReady; // Fixed for the process, see the class comment
+
+    private PostSortKey(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        timestampReady = prefs.getBoolean(KEY_TIMESTAMP_READY, false);
+    }
+
+    /**
+     * @param context Any context; only the application context is retained.
+     * @return The process-wide sort key.
+     */
+    public static synchronized PostSortKey getInstance(Context context) {
+        if (instance == null) {
+            instance = new PostSortKey(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @return The field feed queries order by in this process.
+     */
+    public String field() {
+        return timestampReady ? PostDates.POST_TIMESTAMP_FIELD : LEGACY_FIELD;
+    }
+
+    /**
+     * Reads the rollout flag and remembers it for the next start. Once the timestamp is in use
+     * there is nothing left to check.
+     */
+    public void refresh(FirebaseFirestore db) {
+        if (timestampReady) {
+            return;
+        }
+        db.document(ROLLOUT_DOCUMENT).get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                Log.w(TAG, "Rollout flag not read: " + (task.getException() != null ? task.getException().getMessage() : "unknown error"));
+                return;
+            }
+            if (Boolean.TRUE.equals(task.getResult().getBoolean(TIMESTAMP_READY_FIELD))) {
+                Log.d(TAG, "Post timestamps are complete; feeds order by them from the next start.");
+                prefs.edit().putBoolean(KEY_TIMESTAMP_READY, true).apply();
+            }
+        });
+    }
+}
@@ -0,0 +1,27 @@
+package com.uoc.fot.ict.edunews;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+/**
+ * Publishing state of a post. A new post is written as pending as soon as it is submitted, while
+ * its image still uploads, and switched to published once the image is stored (see
+ * {@link PostUploadWorker}). Feeds never show pending posts. Posts written before the field
+ * existed have no status and count as published.
+ */
+public final class PostStatus {
+
+    public static final String STATUS_FIELD = "status";
+    public static final String PENDING = "pending";
+    public static final String PUBLISHED = "published";
+
+    private PostStatus() {
+        // Static helpers only
+    }
+
+    /**
+     * @return True if the post is written but not published yet.
+     */
+    public static boolean isPending(DocumentSnapshot post) {
+        return PENDING.equals(post.get(STATUS_FIELD));
+    }
+}
@@ -0,0 +1,358 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * App-wide store of the posts this device has created, edited or deleted, laid over whatever
+ * the feeds loaded. A change is put here the moment the user submits it, so every feed that
+ * {@link #observe observes} the store shows it at once, without refetching anything.
+ *
+ * <ul>
+ *     <li>A change is pending until the server {@link #acknowledge acknowledges} it.</li>
+ *     <li>A change that fails for good is {@link #rollback rolled back}, and the feeds show the
+ *     post as it was before that change: the previous local change if there is one, else the
+ *     loaded version.</li>
+ *     <li>Acknowledged changes are kept (with their final image URLs) so a list read before the
+ *     change was saved never shows the old version again. Server data read after it was saved
+ *     reflects the change or something newer (an edit or delete elsewhere, the server's date),
+ *     so the change is left out there and the server version wins.</li>
+ * </ul>
+ * All methods must be called on the main thread; listeners are called on it too.
+ */
+public class PostStore {
+
+    private static final String TAG = "PostStore";
+
+    // Acknowledged changes kept at most; the oldest are forgotten first. Pending ones always stay.
+    private static final int MAX_ACKNOWLEDGED = 200;
+
+    /**
+     * Receives changes of the store.
+     */
+    public interface Listener {
+        /**
+         * Called after a local change was added, acknowledged or rolled back. The observer
+         * applies the store to its loaded list again with {@link #applyTo}.
+         */
+        void onPostsChanged();
+    }
+
+    private static PostStore instance;
+
+    // Local changes by post ID, oldest first
+    private final Map<String, Change> changes = new LinkedHashMap<>();
+    private final List<Observer> observers = new ArrayList<>();
+
+    private PostStore() {
+    }
+
+    /**
+     * @param context Any context; kept for the same signature as the other stores.
+     * @return The process-wide store.
+     */
+    public static synchronized PostStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new PostStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Calls the listener after every change of the store, until the owner is destroyed.
+     */
+    public void observe(LifecycleOwner owner, Listener listener) {
+        Observer observer = new Observer(listener);
+        observers.add(observer);
+        owner.getLifecycle().addObserver(observer);
+    }
+
+    /**
+     * Shows a created or edited post everywhere right away, as pending.
+     * @param article The post as the user submitted it. Its image may be a local file until
+     * the upload is acknowledged.
+     * @param changeId Identifies this change, e.g. the upload job's ID.
+     */
+    public void put(NewsArticle article, String changeId) {
+        pendingChange(article.getId()).versions.add(new Version(changeId, article));
+        notifyObservers();
+    }
+
+    /**
+     * Hides a deleted post everywhere right away, as pending.
+     */
+    public void remove(String postId, String changeId) {
+        pendingChange(postId).versions.add(new Version(changeId, null));
+        notifyObservers();
+    }
+
+    /**
+     * Marks a change as saved on the server. Earlier saved changes of the post are superseded by
+     * it and forgotten; a post that is no longer pending is trimmed with the other acknowledged
+     * changes.
+     * @param image The stored variants of an uploaded image, which replace the local file the
+     * post was shown with; null if the change uploaded no image.
+     */
+    public void acknowledge(String postId, String changeId, @Nullable PostImages.Uploaded image) {
+        Change change = changes.get(postId);
+        Version version = change != null ? change.pendingVersion(changeId) : null;
+        if (version == null) {
+            return;
+        }
+        version.pending = false;
+        version.acknowledgedAt = SystemClock.elapsedRealtime();
+        if (image != null && version.article != null) {
+            // Later versions made on top of this one still show the same local file
+            String localImageUrl = version.article.getImageUrl();
+            for (Version other : change.versions) {
+                if (other == version || (other.article != null && localImageUrl != null
+                        && localImageUrl.equals(other.article.getImageUrl()))) {
+                    NewsArticle saved = copyOf(other.article);
+                    saved.setImageUrl(image.fullUrl);
+                    saved.setImageMediumUrl(image.mediumUrl);
+                    saved.setImageThumbUrl(image.thumbUrl);
+                    other.article = saved;
+                }
+            }
+        }
+        // Saved versions below this one can never be shown again, even after a rollback
+        int index = change.versions.indexOf(version);
+        change.versions.subList(0, index).removeIf(older -> !older.pending);
+        trimAcknowledged();
+        notifyObservers();
+    }
+
+    /**
+     * Undoes a change that could not be saved. The post goes back to its previous local change,
+     * or to its loaded version if there is none; a newer change of the same post is kept.
+     */
+    public void rollback(String postId, String changeId) {
+        Change change = changes.get(postId);
+        Version version = change != null ? change.pendingVersion(changeId) : null;
+        if (version == null) {
+            return;
+        }
+        change.versions.remove(version);
+        if (change.versions.isEmpty()) {
+            changes.remove(postId);
+        }
+        Log.d(TAG, "Rolled back change " + changeId + " of post " + postId);
+        notifyObservers();
+    }
+
+    /**
+     * @return This device's latest version of the post, or null if it has none or deleted it.
+     */
+    @Nullable
+    public NewsArticle get(String postId) {
+        Change change = changes.get(postId);
+        return change != null ? change.article() : null;
+    }
+
+    /**
+     * Forgets every local change, e.g. on sign-out. Uploads still queued keep running and
+     * acknowledge into the empty store, which ignores them.
+     */
+    public void clear() {
+        changes.clear();
+        notifyObservers();
+    }
+
+    /**
+     * @return True while a local change of the post is not saved on the server yet.
+     */
+    public boolean isPending(String postId) {
+        Change change = changes.get(postId);
+        return change != null && change.isPending();
+    }
+
+    /**
+     * Lays the local changes over a loaded feed: deleted posts are dropped, edited posts are
+     * replaced in place (or dropped if they no longer belong to the feed), and created posts, or
+     * posts edited into the feed, are inserted where their date puts them. An acknowledged change
+     * only applies to posts read from the server before it was saved, and is only inserted into
+     * a feed whose newest server read is older than that; see
+     * {@link NewsArticle#getServerReadAtMillis}.
+     * @param loaded The feed as loaded, in feed order; not modified.
+     * @param belongs Whether a post belongs to the feed, e.g. its category matches.
+     * @param newestFirst The feed's order.
+     * @param complete True if the feed is fully loaded. Otherwise posts that would go after the
+     * last loaded one are left to the page they belong to.
+     * @return A new list for display.
+     */
+    public List<NewsArticle> applyTo(List<NewsArticle> loaded, Predicate<NewsArticle> belongs,
+                                     boolean newestFirst, boolean complete) {
+        if (changes.isEmpty()) {
+            return new ArrayList<>(loaded);
+        }
+        List<NewsArticle> result = new ArrayList<>(loaded.size() + changes.size());
+        Set<String> seen = new HashSet<>();
+        long feedReadAt = 0; // The newest server read the feed contains
+        for (NewsArticle article : loaded) {
+            feedReadAt = Math.max(feedReadAt, article.getServerReadAtMillis());
+            Change change = changes.get(article.getId());
+            if (change == null || change.isOlderThan(article.getServerReadAtMillis())) {
+                result.add(article); // Server data that reflects the change, or newer
+                seen.add(article.getId());
+            } else if (change.article() != null && belongs.test(change.article()) && seen.add(article.getId())) {
+                result.add(change.article());
+            }
+        }
+        for (Map.Entry<String, Change> entry : changes.entrySet()) {
+            Change change = entry.getValue();
+            NewsArticle article = change.article();
+            if (article == null || seen.contains(entry.getKey()) || !belongs.test(article)) {
+                continue;
+            }
+            if (change.isOlderThan(feedReadAt)) {
+                continue; // Read after the save and not in the feed: deleted or moved elsewhere
+            }
+            int position = insertionPoint(result, article, newestFirst);
+            if (position < result.size() || complete) {
+                result.add(position, article);
+            }
+        }
+        return result;
+    }
+
+    // --- Internals ---
+
+    private Change pendingChange(String postId) {
+        Change change = changes.remove(postId); // Re-added last, the latest change goes to the end
+        if (change == null) {
+            change = new Change();
+        }
+        changes.put(postId, change);
+        return change;
+    }
+
+    /**
+     * @return The index before the first post the article sorts ahead of.
+     */
+    private static int insertionPoint(List<NewsArticle> feed, NewsArticle article, boolean newestFirst) {
+        long millis = article.getPostDateMillis();
+        for (int i = 0; i < feed.size(); i++) {
+            long other = feed.get(i).getPostDateMillis();
+            if (newestFirst ? millis > other : millis < other) {
+                return i;
+            }
+        }
+        return feed.size();
+    }
+
+    private void trimAcknowledged() {
+        int acknowledged = 0;
+        for (Change change : changes.values()) {
+            if (!change.isPending()) {
+                acknowledged++;
+            }
+        }
+        Iterator<Change> iterator = changes.values().iterator();
+        while (acknowledged > MAX_ACKNOWLEDGED && iterator.hasNext()) {
+            if (!iterator.next().isPending()) {
+                iterator.remove();
+                acknowledged--;
+            }
+        }
+    }
+
+    private static NewsArticle copyOf(NewsArticle article) {
+        NewsArticle copy = new NewsArticle(article.getId(), article.getTitle(), article.getDescription(),
+                article.getImageUrl(), article.getPostDate(), article.getCategory(), article.getAuthor(), article.getUserId());
+        copy.setPostDateMillis(article.getPostDateMillis());
+        copy.setImageMediumUrl(article.getImageMediumUrl());
+        copy.setImageThumbUrl(article.getImageThumbUrl());
+        return copy;
+    }
+
+    private void notifyObservers() {
+        for (Observer observer : new ArrayList<>(observers)) { // Copy, listeners may observe again
+            observer.listener.onPostsChanged();
+        }
+    }
+
+    /**
+     * The local state of one post: the versions this device made of it, oldest first. The last
+     * one is shown; the ones under it are what a rollback goes back to.
+     */
+    private static final class Change {
+        final List<Version> versions = new ArrayList<>();
+
+        /** @return The version shown, or null if the post is deleted. */
+        @Nullable
+        NewsArticle article() {
+            return versions.get(versions.size() - 1).article;
+        }
+
+        boolean isPending() {
+            for (Version version : versions) {
+                if (version.pending) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Nullable
+        Version pendingVersion(String changeId) {
+            for (Version version : versions) {
+                if (version.pending && version.changeId.equals(changeId)) {
+                    return version;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return True if the change is saved and a server read started at the given time
+         * (0 for cached data) already reflects it.
+         */
+        boolean isOlderThan(long serverReadAt) {
+            return !isPending() && serverReadAt > versions.get(versions.size() - 1).acknowledgedAt;
+        }
+    }
+
+    /**
+     * One change of a post: the post as it looks after it, or null for a deletion.
+     */
+    private static final class Version {
+        final String changeId;
+        @Nullable
+        NewsArticle article;
+        boolean pending = true;
+        long acknowledgedAt; // SystemClock.elapsedRealtime, once acknowledged
+
+        Version(String changeId, @Nullable NewsArticle article) {
+            this.changeId = changeId;
+            this.article = article;
+        }
+    }
+
+    private final class Observer implements DefaultLifecycleObserver {
+        final Listener listener;
+
+        Observer(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onDestroy(@NonNull LifecycleOwner owner) {
+            observers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.uoc.fot.ict.edunews;
+
+import androidx.annotation.Nullable;
+
+import com.google.firebase.firestore.FieldValue;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One post creation or edit waiting in the {@link PostUploadQueue}. Everything needed to finish
+ * it is kept here and persisted as JSON, so the {@link PostUploadWorker} can complete it in a
+ * later process: the post's text, where its image goes, and how far the upload got.
+ *
+ * A job is never shared between threads: the worker changes its own copy only on the worker
+ * thread (upload progress is handed over to it), the queue keeps its copies under its lock,
+ * and screens receive copies.
+ */
+public final class PostUploadJob {
+
+    public enum Type { CREATE, EDIT }
+
+    /** What an edit does to the post's image. A created post always gets its image. */
+    public enum ImageAction { KEEP, REPLACE, CLEAR }
+
+    public enum State {
+        QUEUED, // Waiting for the worker, e.g. for a connection or after a transient failure
+        UPLOADING, // Encoding or uploading the image variants
+        SAVING, // Writing the post document
+        FAILED // Stopped after a permanent failure; retried or discarded by the user
+    }
+
+    // Identity and content, fixed when the job is queued
+    final String id;
+    final Type type;
+    final String postId; // Pre-allocated for a new post, so a retried write can never create it twice
+    final String userId;
+    final String title;
+    final String category;
+    final String description;
+    @Nullable
+    final String author; // Create only
+    final boolean anonymous; // Create only
+    final ImageAction imageAction;
+    @Nullable
+    final String storageFolder; // Where the image variants go; fixed so retries reuse the same objects
+    final long createdAtMillis;
+
+    // Progress, updated by the worker
+    State state = State.QUEUED;
+    final String[] sessionUris = new String[PostImages.VARIANT_FILE_NAMES.length]; // Resumable upload sessions
+    final String[] downloadUrls = new String[PostImages.VARIANT_FILE_NAMES.length]; // Set once a variant is stored
+    boolean textSaved; // The text is written (as pending for a new post); only the image is left
+    long bytesUploaded;
+    long bytesTotal;
+    int attempts;
+    @Nullable
+    String lastError;
+
+    private PostUploadJob(String id, Type type, String postId, String userId, String title, String category,
+                          String description, @Nullable String author, boolean anonymous, ImageAction imageAction,
+                          @Nullable String storageFolder, long createdAtMillis) {
+        this.id = id;
+        this.type = type;
+        this.postId = postId;
+        this.userId = userId;
+        this.title = title;
+        this.category = category;
+        this.description = description;
+        this.author = author;
+        this.anonymous = anonymous;
+        this.imageAction = imageAction;
+        this.storageFolder = storageFolder;
+        this.createdAtMillis = createdAtMillis;
+    }
+
+    /**
+     * @return A job creating a new post with an image.
+     */
+    static PostUploadJob forCreate(String postId, String userId, String title, String category, String description,
+                                   String author, boolean anonymous) {
+        // The image of a new post is stored under the post's own ID
+        return new PostUploadJob(UUID.randomUUID().toString(), Type.CREATE, postId, userId, title, category,
+                description, author, anonymous, ImageAction.REPLACE, "post_images/" + postId, System.currentTimeMillis());
+    }
+
+    /**
+     * @return A job updating the text of an existing post and replacing, clearing or keeping its image.
+     */
+    static PostUploadJob forEdit(String postId, String userId, String title, String category, String description,
+                                 ImageAction imageAction) {
+        return new PostUploadJob(UUID.randomUUID().toString(), Type.EDIT, postId, userId, title, category,
+                description, null, false, imageAction,
+                imageAction == ImageAction.REPLACE ? newStorageFolder() : null, System.currentTimeMillis());
+    }
+
+    private static String newStorageFolder() {
+        return "post_images/" + UUID.randomUUID().toString();
+    }
+
+    public String getId() { return id; }
+    public Type getType() { return type; }
+    public String getPostId() { return postId; }
+    public String getTitle() { return title; }
+    public State getState() { return state; }
+    @Nullable
+    public String getLastError() { return lastError; }
+
+    /**
+     * @return How much of the image is uploaded, 0 to 100; 0 while it is not known yet.
+     */
+    public int getProgressPercent() {
+        return bytesTotal > 0 ? (int) Math.min(100, bytesUploaded * 100 / bytesTotal) : 0;
+    }
+
+    /** @return True if the job uploads a new image. */
+    boolean uploadsImage() {
+        return imageAction == ImageAction.REPLACE;
+    }
+
+    /** @return True once every variant of the image is stored. */
+    boolean imageUploaded() {
+        for (String url : downloadUrls) {
+            if (url == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param localImageUrl The job's private copy of the image, shown until the upload is done.
+     * @return The new post as this device shows it before it is published (see {@link PostStore}).
+     */
+    NewsArticle createdArticle(String localImageUrl) {
+        NewsArticle article = new NewsArticle(postId, title, description, localImageUrl, legacyDate(createdAtMillis),
+                category, author, userId);
+        article.setPostDateMillis(createdAtMillis);
+        return article;
+    }
+
+    /**
+     * @return The stored variants once the image is uploaded, else null.
+     */
+    @Nullable
+    PostImages.Uploaded uploadedImage() {
+        return uploadsImage() && imageUploaded()
+                ? new PostImages.Uploaded(downloadUrls[0], downloadUrls[1], downloadUrls[2])
+                : null;
+    }
+
+    /**
+     * @return The fields of the new post document, written as pending before its image is stored.
+     */
+    Map<String, Object> pendingFields() {
+        Map<String, Object> post = new HashMap<>();
+        post.put("title", title);
+        post.put("category", category);
+        post.put("description", description);
+        post.putAll(PostSearchFields.toFields(title, description)); // Keyword tokens for server-side search
+        post.putAll(PostImages.clearedFields()); // Set by publishFields once the image is stored
+        post.put("author", author);
+        post.put("isAnonymousPost", anonymous);
+        post.put(PostStatus.STATUS_FIELD, PostStatus.PENDING); // Hidden from feeds until published
+        post.put(PostDates.POST_TIMESTAMP_FIELD, FieldValue.serverTimestamp()); // Sort key used by every feed query
+        post.put("postDate", legacyDate(createdAtMillis)); // Legacy string for older app versions, as submitted
+        post.put("userId", userId);
+        post.put("edited", false);
+        post.put("editDate", "");
+        return post;
+    }
+
+    /**
+     * @return The updates that publish a pending post, given the fields of its uploaded image.
+     */
+    Map<String, Object> publishFields(Map<String, Object> imageFields) {
+        Map<String, Object> updates = new HashMap<>(imageFields); // imageUrl (full size) plus the medium and thumbnail variants
+        updates.put(PostStatus.STATUS_FIELD, PostStatus.PUBLISHED);
+        // Sorted by when it appeared, so feeds already paged past the pending write still see it on top
+        updates.put(PostDates.POST_TIMESTAMP_FIELD, FieldValue.serverTimestamp());
+        return updates;
+    }
+
+    /**
+     * @param imageFields All variants of a new image, all null if the image was cleared, or empty
+     * for the text alone (the image is unchanged, or switched separately).
+     * @return The updates of an edited post document.
+     */
+    Map<String, Object> editFields(Map<String, Object> imageFields) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("title", title);
+        updates.put("category", category);
+        updates.put("description", description);
+        updates.putAll(PostSearchFields.toFields(title, description)); // Keep the search tokens in step with the text
+        updates.putAll(imageFields);
+        updates.put("edited", true);
+        updates.put(PostDates.EDIT_TIMESTAMP_FIELD, FieldValue.serverTimestamp());
+        updates.put("editDate", legacyDate(createdAtMillis)); // Legacy string for older app versions
+        return updates;
+    }
+
+    private static String legacyDate(long millis) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date(millis));
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("type", type.name());
+        json.put("postId", postId);
+        json.put("userId", userId);
+        json.put("title", title);
+        json.put("category", category);
+        json.put("description", description);
+        json.put("author", author);
+        json.put("anonymous", anonymous);
+        json.put("imageAction", imageAction.name());
+        json.put("storageFolder", storageFolder);
+        json.put("createdAtMillis", createdAtMillis);
+        json.put("state", state.name());
+        json.put("sessionUris", toArray(sessionUris));
+        json.put("downloadUrls", toArray(downloadUrls));
+        json.put("textSaved", textSaved);
+        json.put("bytesUploaded", bytesUploaded);
+        json.put("bytesTotal", bytesTotal);
+        json.put("attempts", attempts);
+        json.put("lastError", lastError);
+        return json;
+    }
+
+    static PostUploadJob fromJson(JSONObject json) throws JSONException {
+        PostUploadJob job = new PostUploadJob(
+                json.getString("id"),
+                Type.valueOf(json.getString("type")),
+                json.getString("postId"),
+                json.getString("userId"),
+                json.getString("title"),
+                json.getString("category"),
+                json.getString("description"),
+                json.optString("author", null),
+                json.optBoolean("anonymous", false),
+                ImageAction.valueOf(json.getString("imageAction")),
+                json.optString("storageFolder", null),
+                json.getLong("createdAtMillis"));
+        job.state = State.valueOf(json.getString("state"));
+        fromArray(json.optJSONArray("sessionUris"), job.sessionUris);
+        fromArray(json.optJSONArray("downloadUrls"), job.downloadUrls);
+        job.textSaved = json.optBoolean("textSaved", false);
+        job.bytesUploaded = json.optLong("bytesUploaded", 0);
+        job.bytesTotal = json.optLong("bytesTotal", 0);
+        job.attempts = json.optInt("attempts", 0);
+        job.lastError = json.optString("lastError", null);
+        return job;
+    }
+
+    /**
+     * @return An independent copy, e.g. to hand to a screen.
+     */
+    PostUploadJob copy() {
+        try {
+            return fromJson(toJson());
+        } catch (JSONException e) {
+            throw new IllegalStateException("Job " + id + " is not serializable", e);
+        }
+    }
+
+    private static JSONArray toArray(String[] values) {
+        JSONArray array = new JSONArray();
+        for (String value : values) {
+            array.put(value != null ? value : JSONObject.NULL);
+        }
+        return array;
+    }
+
+    private static void fromArray(@Nullable JSONArray array, String[] into) {
+        if (array == null) {
+            return;
+        }
+        for (int i = 0; i < into.length && i < array.length(); i++) {
+            into[i] = array.isNull(i) ? null : array.optString(i, null);
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.storage.FirebaseStorage;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable queue of post creations and edits. A queued job is written to app storage together
+ * with a private copy of its image before the screen is told it was accepted, and a
+ * {@link PostUploadWorker} finishes it in the background: after the screen is left, after the
+ * process is killed, and over a flaky connection, with exponential backoff between attempts.
+ * Image uploads resume where they stopped.
+ *
+ * Screens {@link #observe} the queue to show progress. Jobs that failed permanently stay in
+ * the queue until they are {@link #retry retried} or {@link #discard discarded}; a discarded
+ * job's change is rolled back in the {@link PostStore}.
+ */
+public class PostUploadQueue {
+
+    private static final String TAG = "PostUploadQueue";
+
+    private static final String UNIQUE_WORK_NAME = "post_uploads";
+    // Image URLs that still have to be deleted, one per line; not ".json", so never read as a job
+    private static final String CLEANUP_FILE_NAME = "image_cleanup.list";
+    // First retry after this long, doubling up to WorkManager's five hour cap
+    private static final long BACKOFF_DELAY_SECONDS = 30;
+
+    /**
+     * Receives the queue on the main thread.
+     */
+    public interface Listener {
+        /**
+         * @param jobs Every job still in the queue, oldest first, including failed ones. The
+         * jobs are copies owned by the caller.
+         */
+        void onQueueChanged(List<PostUploadJob> jobs);
+    }
+
+    private static PostUploadQueue instance;
+
+    private final Context context;
+    private final File directory;
+    private final Object lock = new Object();
+    // Jobs by ID in queue order; loaded from disk on first use. Guarded by lock.
+    @Nullable
+    private Map<String, PostUploadJob> jobs;
+    // Storage URLs of replaced or abandoned images, deleted by the worker. Guarded by lock.
+    @Nullable
+    private Set<String> cleanup;
+    // Only touched on the main thread
+    private final List<Observer> observers = new ArrayList<>();
+
+    private PostUploadQueue(Context context) {
+        this.context = context;
+        this.directory = new File(context.getFilesDir(), "post_uploads");
+    }
+
+    /**
+     * @param context Any context; only the application context is retained.
+     * @return The process-wide queue.
+     */
+    public static synchronized PostUploadQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new PostUploadQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a new post. The image is copied first, as the picker's permission to read it ends
+     * with the screen.
+     * @param postId A new document ID from {@code collection("posts").document().getId()}.
+     * @param image The picked image.
+     * @return A task that succeeds once the job is safely stored.
+     */
+    public Task<PostUploadJob> enqueueCreate(String postId, String userId, String title, String category,
+                                             String description, String author, boolean anonymous, Uri image) {
+        return enqueue(PostUploadJob.forCreate(postId, userId, title, category, description, author, anonymous), image);
+    }
+
+    /**
+     * Queues an edit of an existing post. Edits of the same post are applied in queue order.
+     * @param image The new image if the action is {@link PostUploadJob.ImageAction#REPLACE}, else null.
+     * @return A task that succeeds once the job is safely stored.
+     */
+    public Task<PostUploadJob> enqueueEdit(String postId, String userId, String title, String category,
+                                           String description, PostUploadJob.ImageAction imageAction, @Nullable Uri image) {
+        return enqueue(PostUploadJob.forEdit(postId, userId, title, category, description, imageAction), image);
+    }
+
+    /**
+     * Delivers the queue to the listener now and after every change, until the owner is destroyed.
+     * Must be called on the main thread.
+     */
+    public void observe(LifecycleOwner owner, Listener listener) {
+        Observer observer = new Observer(listener);
+        observers.add(observer);
+        owner.getLifecycle().addObserver(observer);
+        AppExecutors.diskIO().execute(this::publish); // Loads the queue from disk if needed
+    }
+
+    /**
+     * Puts a failed job back in line and wakes the worker.
+     */
+    public void retry(String jobId) {
+        AppExecutors.diskIO().execute(() -> {
+            synchronized (lock) {
+                PostUploadJob job = loaded().get(jobId);
+                if (job == null || job.state != PostUploadJob.State.FAILED) {
+                    return;
+                }
+                job.state = PostUploadJob.State.QUEUED;
+                job.attempts = 0;
+                job.lastError = null;
+                persist(job);
+            }
+            publish();
+            schedule();
+        });
+    }
+
+    /**
+     * Drops a failed job, together with any image variants it already uploaded and, for a new
+     * post, the pending document it may have written.
+     */
+    public void discard(String jobId) {
+        AppExecutors.diskIO().execute(() -> {
+            PostUploadJob job;
+            synchronized (lock) {
+                job = loaded().get(jobId);
+                if (job == null || job.state != PostUploadJob.State.FAILED) {
+                    return;
+                }
+                job = job.copy();
+            }
+            PostUploadJob discarded = job;
+            if (discarded.type == PostUploadJob.Type.CREATE) {
+                // Never published, so nobody has seen it; a post that was never written is fine too
+                FirebaseFirestore.getInstance().collection("posts").document(discarded.postId).delete()
+                        .addOnFailureListener(e -> Log.w(TAG, "Pending post " + discarded.postId + " not deleted: " + e.getMessage()));
+            }
+            AppExecutors.runOnMain(() -> PostStore.getInstance(context).rollback(discarded.postId, discarded.id));
+            deleteUploadedImage(discarded).addOnCompleteListener(task ->
+                    AppExecutors.diskIO().execute(() -> remove(discarded)));
+        });
+    }
+
+    /**
+     * Makes sure a worker is scheduled for whatever the queue holds. A worker that is already
+     * running or waiting is kept, and another run is chained after it.
+     */
+    void schedule() {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(PostUploadWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    // --- Used by PostUploadWorker, on its background thread ---
+
+    /**
+     * @return Copies of the jobs the worker should process, in queue order.
+     */
+    List<PostUploadJob> pending() {
+        List<PostUploadJob> pending = new ArrayList<>();
+        synchronized (lock) {
+            for (PostUploadJob job : loaded().values()) {
+                if (job.state != PostUploadJob.State.FAILED) {
+                    pending.add(job.copy());
+                }
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Stores the worker's copy of a job and shows it to the observers.
+     */
+    void update(PostUploadJob job) {
+        synchronized (lock) {
+            if (!loaded().containsKey(job.id)) {
+                return; // Discarded meanwhile
+            }
+            loaded().put(job.id, job.copy());
+            persist(job);
+        }
+        publish();
+    }
+
+    /**
+     * Shows upload progress to the observers without writing it to disk; a resumed upload
+     * reports its progress again anyway.
+     */
+    void reportProgress(PostUploadJob job) {
+        synchronized (lock) {
+            if (!loaded().containsKey(job.id)) {
+                return;
+            }
+            loaded().put(job.id, job.copy());
+        }
+        publish();
+    }
+
+    /**
+     * Removes a finished or abandoned job and its local files.
+     */
+    void remove(PostUploadJob job) {
+        synchronized (lock) {
+            loaded().remove(job.id);
+            for (File file : filesOf(job.id)) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        publish();
+    }
+
+    /** @return The private copy of the job's image. */
+    File sourceFileOf(PostUploadJob job) {
+        return new File(directory, job.id + ".src");
+    }
+
+    /** @return The private copy of the job's image as a URL Glide can load, e.g. for the {@link PostStore}. */
+    String localImageUrl(PostUploadJob job) {
+        return Uri.fromFile(sourceFileOf(job)).toString();
+    }
+
+    /** @return The local files of the encoded thumb, medium and full variants, in that order. */
+    File[] variantFilesOf(PostUploadJob job) {
+        File[] files = new File[PostImages.VARIANT_FILE_NAMES.length];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(directory, job.id + "_" + PostImages.VARIANT_FILE_NAMES[i]);
+        }
+        return files;
+    }
+
+    /**
+     * Deletes the variants a job already stored. The task always succeeds; variants that could
+     * not be deleted now are left to the cleanup list.
+     */
+    Task<Void> deleteUploadedImage(PostUploadJob job) {
+        return PostImages.delete(FirebaseStorage.getInstance(), job.downloadUrls).continueWith(AppExecutors.diskIO(), task -> {
+            if (!task.isSuccessful()) {
+                Log.w(TAG, "Could not delete the image of job " + job.id + " yet: "
+                        + (task.getException() != null ? task.getException().getMessage() : "unknown error"));
+                addCleanup(Arrays.asList(job.downloadUrls));
+                schedule();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Adds images to delete once nothing points at them any more, e.g. the previous image of an
+     * edited post. They are kept on disk until deleted, so none are lost to a failure or restart.
+     * @param urls Storage URLs; nulls are skipped.
+     */
+    void addCleanup(Collection<String> urls) {
+        synchronized (lock) {
+            boolean added = false;
+            for (String url : urls) {
+                if (url != null && !url.isEmpty()) {
+                    added |= loadedCleanup().add(url);
+                }
+            }
+            if (added) {
+                persistCleanup();
+            }
+        }
+    }
+
+    /** @return The image URLs still to delete. */
+    List<String> pendingCleanup() {
+        synchronized (lock) {
+            return new ArrayList<>(loadedCleanup());
+        }
+    }
+
+    /** Takes deleted (or undeletable) images off the cleanup list. */
+    void cleanupDone(Collection<String> urls) {
+        synchronized (lock) {
+            if (loadedCleanup().removeAll(urls)) {
+                persistCleanup();
+            }
+        }
+    }
+
+    // --- Internals ---
+
+    private Task<PostUploadJob> enqueue(PostUploadJob job, @Nullable Uri image) {
+        return Tasks.call(AppExecutors.diskIO(), () -> {
+            if (job.uploadsImage()) {
+                copyImage(image, sourceFileOf(job)); // Before the job exists, so the worker never misses it
+            }
+            synchronized (lock) {
+                persist(job);
+                loaded().put(job.id, job);
+            }
+            publish();
+            schedule();
+            return job.copy();
+        });
+    }
+
+    private void copyImage(@Nullable Uri image, File target) throws IOException {
+        if (image == null) {
+            throw new IOException("No image to upload.");
+        }
+        File partial = new File(target.getPath() + ".tmp");
+        try (InputStream in = context.getContentResolver().openInputStream(image);
+             OutputStream out = new FileOutputStream(partial)) {
+            if (in == null) {
+                throw new IOException("The selected image can no longer be read.");
+            }
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        if (!partial.renameTo(target)) {
+            throw new IOException("Could not store the selected image.");
+        }
+    }
+
+    /**
+     * @return The jobs by ID, read from disk the first time. Call with the lock held.
+     */
+    private Map<String, PostUploadJob> loaded() {
+        if (jobs != null) {
+            return jobs;
+        }
+        List<PostUploadJob> found = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    found.add(PostUploadJob.fromJson(new JSONObject(readFile(file))));
+                } catch (IOException | JSONException e) {
+                    Log.e(TAG, "Dropping unreadable job " + file.getName() + ": " + e.getMessage());
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        }
+        found.sort((a, b) -> Long.compare(a.createdAtMillis, b.createdAtMillis));
+        jobs = new LinkedHashMap<>();
+        for (PostUploadJob job : found) {
+            if (job.state != PostUploadJob.State.FAILED) {
+                job.state = PostUploadJob.State.QUEUED; // Whatever it was doing was cut off
+            }
+            jobs.put(job.id, job);
+        }
+        return jobs;
+    }
+
+    /**
+     * Writes a job under a temporary name and renames it, so a job file is never half written.
+     * Call with the lock held.
+     */
+    private void persist(PostUploadJob job) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create " + directory);
+        }
+        File target = new File(directory, job.id + ".json");
+        File partial = new File(directory, job.id + ".json.tmp");
+        try (OutputStream out = new FileOutputStream(partial)) {
+            out.write(job.toJson().toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Could not store job " + job.id + ": " + e.getMessage());
+            return;
+        }
+        if (!partial.renameTo(target)) {
+            Log.e(TAG, "Could not store job " + job.id);
+        }
+    }
+
+    /**
+     * @return The cleanup list, read from disk the first time. Call with the lock held.
+     */
+    private Set<String> loadedCleanup() {
+        if (cleanup != null) {
+            return cleanup;
+        }
+        cleanup = new LinkedHashSet<>();
+        File file = new File(directory, CLEANUP_FILE_NAME);
+        if (file.exists()) {
+            try {
+                for (String line : readFile(file).split("\n")) {
+                    if (!line.trim().isEmpty()) {
+                        cleanup.add(line.trim());
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Could not read the cleanup list: " + e.getMessage());
+            }
+        }
+        return cleanup;
+    }
+
+    /**
+     * Writes the cleanup list the same way as a job. Call with the lock held.
+     */
+    private void persistCleanup() {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create " + directory);
+        }
+        File partial = new File(directory, CLEANUP_FILE_NAME + ".tmp");
+        try (OutputStream out = new FileOutputStream(partial)) {
+            out.write(TextUtils.join("\n", loadedCleanup()).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.e(TAG, "Could not store the cleanup list: " + e.getMessage());
+            return;
+        }
+        if (!partial.renameTo(new File(directory, CLEANUP_FILE_NAME))) {
+            Log.e(TAG, "Could not store the cleanup list");
+        }
+    }
+
+    private List<File> filesOf(String jobId) {
+        List<File> files = new ArrayList<>();
+        File[] all = directory.listFiles((dir, name) -> name.startsWith(jobId));
+        if (all != null) {
+            files.addAll(Arrays.asList(all));
+        }
+        return files;
+    }
+
+    private static String readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+            return new String(bytes, 0, offset, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Hands a copy of the queue to every observer on the main thread.
+     */
+    private void publish() {
+        List<PostUploadJob> snapshot = new ArrayList<>();
+        synchronized (lock) {
+            for (PostUploadJob job : loaded().values()) {
+                snapshot.add(job.copy());
+            }
+        }
+        AppExecutors.runOnMain(() -> {
+            for (Observer observer : new ArrayList<>(observers)) {
+                observer.listener.onQueueChanged(new ArrayList<>(snapshot));
+            }
+        });
+    }
+
+    private final class Observer implements DefaultLifecycleObserver {
+        final Listener listener;
+
+        Observer(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onDestroy(@NonNull LifecycleOwner owner) {
+            observers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Works through the {@link PostUploadQueue} in order. For each job it encodes the image variants
+ * to files, uploads each one through a resumable session whose URI is stored with the job, and
+ * then writes the post document. Every step records its result in the job first, so a run that
+ * is stopped or killed continues where it left off.
+ *
+ * A new post is written as pending (see {@link PostStatus}) while its image uploads, and
+ * published once the image is stored. An edit writes its text while the new image uploads, then
+ * switches the image URLs in a transaction. The replaced image goes to the queue's cleanup list
+ * and is deleted at the end of the run, so a post never points at a deleted image. A finished
+ * job acknowledges its change in the {@link PostStore}, where the feeds already show it.
+ *
+ * A transient failure (no connection, timeout, server busy) stops the run and asks WorkManager
+ * to retry with backoff, keeping later jobs behind it so edits of one post stay in order. A
+ * permanent failure (rules reject the write, the post was deleted, the image is unreadable)
+ * marks only that job as failed.
+ */
+public class PostUploadWorker extends Worker {
+
+    private static final String TAG = "PostUploadWorker";
+
+    // Firestore only completes a write once the server has it; past this, try again later
+    private static final long WRITE_TIMEOUT_SECONDS = 60;
+    // Transient failures of one job before it is reported as failed instead of retried silently
+    private static final int MAX_ATTEMPTS = 8;
+    // How often a running upload checks whether WorkManager stopped the worker, and reports its progress
+    private static final long STOP_CHECK_SECONDS = 1;
+
+    @Nullable
+    private volatile UploadTask currentUpload;
+
+    public PostUploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        PostUploadQueue queue = PostUploadQueue.getInstance(getApplicationContext());
+        for (PostUploadJob job : queue.pending()) {
+            if (isStopped()) {
+                return Result.retry();
+            }
+            try {
+                process(queue, job);
+                // Before the job's files go: feeds switch from the local image to the stored one
+                AppExecutors.runOnMain(() -> PostStore.getInstance(getApplicationContext())
+                        .acknowledge(job.postId, job.id, job.uploadedImage()));
+                queue.remove(job);
+                AppExecutors.runOnMain(() -> PostRepository.getInstance(getApplicationContext()).invalidate());
+            } catch (PermanentFailure e) {
+                Log.e(TAG, "Job " + job.id + " failed: " + e.getMessage());
+                fail(queue, job, e.getMessage(), e.discard);
+            } catch (Exception e) {
+                if (isStopped()) {
+                    return Result.retry(); // Stopped by WorkManager, not a failure of the job
+                }
+                Throwable cause = unwrap(e);
+                if (!isTransient(cause)) {
+                    Log.e(TAG, "Job " + job.id + " failed: " + cause.getMessage());
+                    fail(queue, job, cause.getMessage(), false);
+                    continue;
+                }
+                job.attempts++;
+                job.state = PostUploadJob.State.QUEUED;
+                job.lastError = cause.getMessage();
+                if (job.attempts >= MAX_ATTEMPTS) {
+                    fail(queue, job, cause.getMessage(), false);
+                    continue;
+                }
+                queue.update(job);
+                Log.w(TAG, "Job " + job.id + " will be retried: " + cause.getMessage());
+                return Result.retry(); // Later jobs wait, edits of one post must stay in order
+            }
+        }
+        // Last, so old images never hold up new posts; nothing points at them any more
+        return cleanUpImages(queue) ? Result.success() : Result.retry();
+    }
+
+    @Override
+    public void onStopped() {
+        UploadTask upload = currentUpload;
+        if (upload != null) {
+            upload.pause(); // Unlike cancel, keeps the session on the server for the next run
+        }
+    }
+
+    private void process(PostUploadQueue queue, PostUploadJob job) throws Exception {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null || !user.getUid().equals(job.userId)) {
+            throw new PermanentFailure("Signed out before the post was uploaded.", false);
+        }
+
+        FirebaseFirestore db = FirebaseFirestore.getInstance();
+        DocumentReference post = db.collection("posts").document(job.postId);
+        if (job.type == PostUploadJob.Type.CREATE) {
+            // The text goes out at once, hidden as pending, while the image uploads. set() on the
+            // pre-allocated ID: running this twice still leaves one post
+            Task<Void> pendingWrite = job.textSaved ? Tasks.forResult(null) : post.set(job.pendingFields());
+            uploadImage(queue, job);
+            job.state = PostUploadJob.State.SAVING;
+            queue.update(job);
+            awaitWrite(pendingWrite);
+            job.textSaved = true;
+            queue.update(job);
+            awaitWrite(post.update(job.publishFields(job.uploadedImage().toFields())));
+            return;
+        }
+
+        // The text does not depend on the image: write it while the image uploads
+        Task<Void> textWrite = job.textSaved ? Tasks.forResult(null) : post.update(job.editFields(new HashMap<>()));
+        if (job.imageAction == PostUploadJob.ImageAction.REPLACE) {
+            uploadImage(queue, job);
+        }
+        job.state = PostUploadJob.State.SAVING;
+        queue.update(job);
+        awaitWrite(textWrite);
+        job.textSaved = true;
+        queue.update(job);
+        if (job.imageAction == PostUploadJob.ImageAction.KEEP) {
+            return;
+        }
+
+        Map<String, Object> imageFields = job.imageAction == PostUploadJob.ImageAction.REPLACE
+                ? job.uploadedImage().toFields()
+                : PostImages.clearedFields();
+        // Read and switch in one transaction, so the image replaced is exactly the one deleted
+        List<String> replaced = awaitWrite(db.runTransaction(transaction -> {
+            DocumentSnapshot current = transaction.get(post);
+            if (!current.exists()) {
+                throw new FirebaseFirestoreException("The post was deleted before the changes were uploaded.",
+                        FirebaseFirestoreException.Code.NOT_FOUND);
+            }
+            transaction.update(post, imageFields);
+            return Arrays.asList(current.getString(PostImages.IMAGE_URL_FIELD),
+                    current.getString(PostImages.MEDIUM_URL_FIELD),
+                    current.getString(PostImages.THUMB_URL_FIELD));
+        }));
+        // A rerun after the switch reads this job's own image back; that one stays
+        List<String> orphans = new ArrayList<>(replaced);
+        orphans.removeAll(Arrays.asList(job.downloadUrls));
+        queue.addCleanup(orphans); // Deleted after the jobs, see cleanUpImages
+    }
+
+    /**
+     * Waits for a Firestore write. A post that no longer exists fails the job for good, and the
+     * job is dropped, as there is nothing left to edit.
+     */
+    private static <T> T awaitWrite(Task<T> write) throws Exception {
+        try {
+            return Tasks.await(write, WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof FirebaseFirestoreException
+                    && ((FirebaseFirestoreException) cause).getCode() == FirebaseFirestoreException.Code.NOT_FOUND) {
+                throw new PermanentFailure("The post was deleted before the changes were uploaded.", true);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the images on the cleanup list: replaced images of edited posts and uploads of
+     * dropped jobs. Images that fail for a reason a retry cannot fix are dropped from the list.
+     * @return True if the list is empty now.
+     */
+    private boolean cleanUpImages(PostUploadQueue queue) {
+        List<String> urls = queue.pendingCleanup();
+        List<String> done = new ArrayList<>();
+        FirebaseStorage storage = FirebaseStorage.getInstance();
+        for (String url : urls) {
+            if (isStopped()) {
+                break;
+            }
+            try {
+                Tasks.await(PostImages.delete(storage, url), WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                done.add(url);
+            } catch (Exception e) {
+                Throwable cause = unwrap(e);
+                if (!isTransient(cause)) {
+                    Log.w(TAG, "Giving up on deleting " + url + ": " + cause.getMessage());
+                    done.add(url);
+                }
+            }
+        }
+        queue.cleanupDone(done);
+        return done.size() == urls.size();
+    }
+
+    /**
+     * Encodes the variants (once) and uploads those not stored yet, smallest first.
+     */
+    private void uploadImage(PostUploadQueue queue, PostUploadJob job) throws Exception {
+        if (job.imageUploaded()) {
+            return;
+        }
+        job.state = PostUploadJob.State.UPLOADING;
+        queue.update(job);
+
+        File[] variants = queue.variantFilesOf(job);
+        if (!allExist(variants)) {
+            File source = queue.sourceFileOf(job);
+            if (!source.exists()) {
+                throw new PermanentFailure("The image of this post is no longer on the device.", false);
+            }
+            try {
+                PostImages.encodeVariantsToFiles(getApplicationContext().getContentResolver(), Uri.fromFile(source), variants);
+            } catch (IOException e) {
+                throw new PermanentFailure(e.getMessage(), false);
+            }
+        }
+
+        job.bytesTotal = 0;
+        for (File variant : variants) {
+            job.bytesTotal += variant.length();
+        }
+        StorageReference folder = FirebaseStorage.getInstance().getReference().child(job.storageFolder);
+        long uploadedBefore = 0;
+        for (int i = 0; i < variants.length; i++) {
+            if (job.downloadUrls[i] == null) {
+                job.downloadUrls[i] = uploadVariant(queue, job, i, folder.child(PostImages.VARIANT_FILE_NAMES[i]),
+                        variants[i], uploadedBefore);
+                job.sessionUris[i] = null;
+            }
+            uploadedBefore += variants[i].length();
+            job.bytesUploaded = uploadedBefore;
+            queue.update(job);
+        }
+    }
+
+    /**
+     * Uploads one variant, resuming the stored session if there is one.
+     * @return The download URL of the stored variant.
+     */
+    private String uploadVariant(PostUploadQueue queue, PostUploadJob job, int index, StorageReference reference,
+                                 File file, long uploadedBefore) throws Exception {
+        String session = job.sessionUris[index];
+        try {
+            runUpload(queue, job, index, reference, file, uploadedBefore, session);
+        } catch (ExecutionException e) {
+            if (session == null || isTransient(unwrap(e))) {
+                throw e;
+            }
+            // The stored session expired or was rejected: start this variant over
+            Log.w(TAG, "Session of " + reference.getPath() + " unusable, restarting: " + unwrap(e).getMessage());
+            job.sessionUris[index] = null;
+            queue.update(job);
+            runUpload(queue, job, index, reference, file, uploadedBefore, null);
+        }
+        return Tasks.await(reference.getDownloadUrl(), WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS).toString();
+    }
+
+    private void runUpload(PostUploadQueue queue, PostUploadJob job, int index, StorageReference reference,
+                           File file, long uploadedBefore, @Nullable String session) throws Exception {
+        UploadTask upload = reference.putFile(Uri.fromFile(file), PostImages.variantMetadata(),
+                session != null ? Uri.parse(session) : null);
+        currentUpload = upload;
+        // Progress callbacks run on the disk executor, so the worker thread can block on the
+        // upload. They only hand the latest snapshot over: the job is only changed on this thread
+        AtomicReference<UploadTask.TaskSnapshot> progress = new AtomicReference<>();
+        upload.addOnProgressListener(AppExecutors.diskIO(), progress::set);
+        try {
+            // Storage retries on its own before failing. A paused upload never completes, so the
+            // wait is in steps that notice when the worker is stopped
+            while (true) {
+                try {
+                    Tasks.await(upload, STOP_CHECK_SECONDS, TimeUnit.SECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    applyProgress(queue, job, index, uploadedBefore, progress.getAndSet(null));
+                    if (isStopped()) {
+                        upload.pause(); // Keeps the session for the next run; onStopped may have done so already
+                        throw new TimeoutException("Upload stopped; the next run resumes its session.");
+                    }
+                }
+            }
+        } finally {
+            currentUpload = null;
+            // A session that started after the last step is kept for the retry as well
+            applyProgress(queue, job, index, uploadedBefore, progress.getAndSet(null));
+        }
+    }
+
+    /**
+     * Copies an upload snapshot into the job. A new session is stored right away, so a killed
+     * process can resume it; plain progress is only shown.
+     */
+    private static void applyProgress(PostUploadQueue queue, PostUploadJob job, int index, long uploadedBefore,
+                                      @Nullable UploadTask.TaskSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        job.bytesUploaded = uploadedBefore + snapshot.getBytesTransferred();
+        Uri sessionUri = snapshot.getUploadSessionUri();
+        if (job.sessionUris[index] == null && sessionUri != null) {
+            job.sessionUris[index] = sessionUri.toString();
+            queue.update(job);
+        } else {
+            queue.reportProgress(job);
+        }
+    }
+
+    private void fail(PostUploadQueue queue, PostUploadJob job, String message, boolean discard) {
+        if (discard) {
+            // Nothing left to retry: drop the job and anything it uploaded
+            try {
+                Tasks.await(queue.deleteUploadedImage(job));
+            } catch (ExecutionException | InterruptedException e) {
+                Log.w(TAG, "Cleanup of job " + job.id + " skipped: " + e.getMessage());
+            }
+            queue.remove(job);
+            // The feeds showed the change already; it will never be saved
+            AppExecutors.runOnMain(() -> PostStore.getInstance(getApplicationContext()).rollback(job.postId, job.id));
+            return;
+        }
+        job.state = PostUploadJob.State.FAILED;
+        job.lastError = message;
+        queue.update(job);
+    }
+
+    private static boolean allExist(File[] files) {
+        for (File file : files) {
+            if (!file.exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Throwable unwrap(Exception e) {
+        return e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * @return True for failures that a later attempt can get past without anyone's help.
+     */
+    private static boolean isTransient(Throwable e) {
+        if (e instanceof TimeoutException || e instanceof InterruptedException || e instanceof IOException) {
+            return true;
+        }
+        if (e instanceof StorageException) {
+            int code = ((StorageException) e).getErrorCode();
+            return code == StorageException.ERROR_RETRY_LIMIT_EXCEEDED
+                    || code == StorageException.ERROR_UNKNOWN
+                    || code == StorageException.ERROR_CANCELED;
+        }
+        if (e instanceof FirebaseFirestoreException) {
+            switch (((FirebaseFirestoreException) e).getCode()) {
+                case UNAVAILABLE:
+                case DEADLINE_EXCEEDED:
+                case ABORTED:
+                case INTERNAL:
+                case RESOURCE_EXHAUSTED:
+                case UNKNOWN:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A failure that retrying cannot fix.
+     */
+    private static class PermanentFailure extends Exception {
+        final boolean discard; // True if the job can be dropped, as there is nothing to retry
+
+        PermanentFailure(String message, boolean discard) {
+            super(message);
+            this.discard = discard;
+        }
+    }
+}
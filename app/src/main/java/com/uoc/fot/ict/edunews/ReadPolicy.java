@@ -0,0 +1,145 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.Objects;
+
+/**
+ * Cache-first read policy for Firestore. A read is answered from the local cache right away
+ * and then revalidated against the server, unless the last server read of the same key is
+ * younger than the maximum age the calling screen accepts. The time of the last server read
+ * of every key is kept in SharedPreferences, so it survives a cold start together with the
+ * Firestore cache.
+ */
+public class ReadPolicy {
+
+    private static final String TAG = "ReadPolicy";
+    private static final String PREFS_NAME = "read_freshness";
+
+    // Maximum age of each screen's data before it is revalidated against the server
+    public static final long HOME_MAX_AGE_MILLIS = 60_000L;
+    public static final long CATEGORY_MAX_AGE_MILLIS = 2 * 60_000L;
+    public static final long MY_POSTS_MAX_AGE_MILLIS = 5 * 60_000L;
+    public static final long ARTICLE_MAX_AGE_MILLIS = 5 * 60_000L;
+    public static final long PROFILE_MAX_AGE_MILLIS = 10 * 60_000L;
+    // Always revalidate, e.g. for an explicit refresh
+    public static final long ALWAYS_REVALIDATE = 0L;
+
+    /**
+     * Receives a document read.
+     */
+    public interface DocumentCallback {
+        /**
+         * Called with the cached snapshot first if there is one, and then with the server snapshot
+         * only if its data differs from what was already delivered.
+         * @param document The snapshot.
+         * @param fromCache True if it came from the local cache and may still be replaced.
+         */
+        void onDocument(DocumentSnapshot document, boolean fromCache);
+
+        /**
+         * Called when the server read fails. A cached snapshot may already have been delivered.
+         */
+        void onError(Exception e);
+    }
+
+    private static ReadPolicy instance;
+
+    private final SharedPreferences prefs;
+
+    private ReadPolicy(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @param context Any context; only the application context is retained.
+     * @return The process-wide read policy.
+     */
+    public static synchronized ReadPolicy getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReadPolicy(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @param key The query or document key.
+     * @param maxAgeMillis The age the caller accepts.
+     * @return True if the key was read from the server less than maxAgeMillis ago.
+     */
+    public boolean isFresh(String key, long maxAgeMillis) {
+        if (maxAgeMillis <= 0) {
+            return false;
+        }
+        long fetchedAt = prefs.getLong(key, 0L);
+        long age = System.currentTimeMillis() - fetchedAt;
+        return fetchedAt > 0 && age >= 0 && age < maxAgeMillis;
+    }
+
+    /**
+     * Records that the key was just read from the server.
+     */
+    public void markFetched(String key) {
+        prefs.edit().putLong(key, System.currentTimeMillis()).apply();
+    }
+
+    /**
+     * Marks the key as stale so its next read goes to the server.
+     */
+    public void invalidate(String key) {
+        prefs.edit().remove(key).apply();
+    }
+
+    /**
+     * Marks every key as stale, e.g. after a write that affects many queries or on sign-out.
+     */
+    public void invalidateAll() {
+        prefs.edit().clear().apply();
+    }
+
+    /**
+     * Reads a document cache first. The cached copy is delivered immediately if present; the
+     * server is asked unless the document was read from it less than maxAgeMillis ago.
+     * @param reference The document to read.
+     * @param maxAgeMillis The staleness the calling screen accepts.
+     * @param callback Receives the snapshots on the main thread.
+     */
+    public void getDocument(DocumentReference reference, long maxAgeMillis, DocumentCallback callback) {
+        final String key = reference.getPath();
+        reference.get(Source.CACHE).addOnCompleteListener(cacheTask -> {
+            DocumentSnapshot cached = cacheTask.isSuccessful() ? cacheTask.getResult() : null;
+            boolean haveCached = cached != null && cached.exists();
+            boolean fresh = isFresh(key, maxAgeMillis);
+
+            if (haveCached) {
+                callback.onDocument(cached, !fresh);
+                if (fresh) {
+                    return; // Recent enough for this screen, skip the network entirely
+                }
+            }
+
+            reference.get(Source.SERVER).addOnCompleteListener(serverTask -> {
+                if (serverTask.isSuccessful() && serverTask.getResult() != null) {
+                    DocumentSnapshot server = serverTask.getResult();
+                    markFetched(key);
+                    if (haveCached && server.exists() && Objects.equals(cached.getData(), server.getData())) {
+                        return; // Nothing changed since the cached copy was shown
+                    }
+                    callback.onDocument(server, false);
+                } else {
+                    Exception e = serverTask.getException() != null ? serverTask.getException() : new Exception("Unknown error");
+                    if (haveCached) {
+                        Log.w(TAG, "Revalidating " + key + " failed, keeping the cached copy: " + e.getMessage());
+                    }
+                    callback.onError(e);
+                }
+            });
+        });
+    }
+}
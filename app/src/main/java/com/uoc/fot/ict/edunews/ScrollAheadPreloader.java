@@ -0,0 +1,165 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.CustomTarget;
+import com.bumptech.glide.request.transition.Transition;
+
+/**
+ * Loads the thumbnails of the rows just past the edge of a news list into Glide's memory cache,
+ * so they are ready when the rows are bound instead of popping in. Preloads use the same list
+ * profile as {@link NewsArticleAdapter}, so a preloaded image is exactly the bitmap the row
+ * asks for.
+ *
+ * How far ahead is preloaded follows the scroll speed, between {@link #MIN_AHEAD} and
+ * {@link #MAX_AHEAD} rows. Preloads run at low priority, at most {@link #MAX_AHEAD} at a time,
+ * and are cancelled when the scroll direction changes, so they never hold up rows on screen.
+ */
+public class ScrollAheadPreloader extends RecyclerView.OnScrollListener {
+
+    // Rows preloaded ahead of the screen when scrolling slowly, and at most when flinging
+    private static final int MIN_AHEAD = 3;
+    private static final int MAX_AHEAD = 12;
+    // Preload what the current speed will bring on screen within roughly this many frames
+    private static final int LOOKAHEAD_FRAMES = 30;
+
+    private final RequestManager requestManager;
+    private final LinearLayoutManager layoutManager;
+    private final NewsArticleAdapter adapter;
+    private final int adapterOffset;
+
+    private final RequestOptions thumbnailOptions;
+    private final int thumbnailEdgePx;
+    // Fixed pool of targets; reusing one clears its previous preload, which bounds the work in flight
+    private final PreloadTarget[] targets = new PreloadTarget[MAX_AHEAD];
+    private int nextTarget;
+
+    private boolean scrollingDown = true;
+    // Next adapter position to preload in the current direction, or NO_POSITION to start at the screen edge
+    private int nextPosition = RecyclerView.NO_POSITION;
+
+    /**
+     * @param context Used to resolve the thumbnail size.
+     * @param requestManager The Glide request manager of the screen, so preloads stop with it.
+     * @param layoutManager The layout manager of the observed RecyclerView.
+     * @param adapter The article adapter of the list.
+     * @param adapterOffset Number of rows before the first article, e.g. a header in a ConcatAdapter.
+     */
+    public ScrollAheadPreloader(Context context, RequestManager requestManager, LinearLayoutManager layoutManager,
+                                NewsArticleAdapter adapter, int adapterOffset) {
+        this.requestManager = requestManager;
+        this.layoutManager = layoutManager;
+        this.adapter = adapter;
+        this.adapterOffset = adapterOffset;
+        this.thumbnailOptions = ImageRequests.list(context).priority(Priority.LOW);
+        this.thumbnailEdgePx = context.getResources().getDimensionPixelSize(R.dimen.article_thumbnail_max_edge);
+        int height = context.getResources().getDimensionPixelSize(R.dimen.article_thumbnail_height);
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = new PreloadTarget(thumbnailEdgePx, height);
+        }
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0) {
+            return; // Layout pass, not a scroll
+        }
+        boolean down = dy > 0;
+        if (down != scrollingDown) {
+            // Rows in the old direction are not needed any more
+            cancelAll();
+            scrollingDown = down;
+        }
+
+        int itemCount = layoutManager.getItemCount();
+        int ahead = rowsAhead(Math.abs(dy));
+        if (down) {
+            int lastVisible = layoutManager.findLastVisibleItemPosition();
+            if (lastVisible == RecyclerView.NO_POSITION) {
+                return;
+            }
+            int from = nextPosition == RecyclerView.NO_POSITION ? lastVisible + 1 : Math.max(nextPosition, lastVisible + 1);
+            int to = Math.min(lastVisible + ahead, itemCount - 1);
+            for (int position = from; position <= to; position++) {
+                preload(position);
+            }
+            nextPosition = Math.max(from, to + 1);
+        } else {
+            int firstVisible = layoutManager.findFirstVisibleItemPosition();
+            if (firstVisible == RecyclerView.NO_POSITION) {
+                return;
+            }
+            int from = nextPosition == RecyclerView.NO_POSITION ? firstVisible - 1 : Math.min(nextPosition, firstVisible - 1);
+            int to = Math.max(firstVisible - ahead, 0);
+            for (int position = from; position >= to; position--) {
+                preload(position);
+            }
+            nextPosition = Math.min(from, to - 1);
+        }
+    }
+
+    /**
+     * Cancels all outstanding preloads, e.g. when the list is replaced.
+     */
+    public void cancelAll() {
+        for (PreloadTarget target : targets) {
+            requestManager.clear(target);
+        }
+        nextPosition = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * @param pixelsPerFrame Distance of the last scroll event.
+     * @return How many rows past the screen edge to preload at this speed.
+     */
+    private int rowsAhead(int pixelsPerFrame) {
+        View firstChild = layoutManager.getChildAt(0);
+        int rowHeight = firstChild != null ? Math.max(1, firstChild.getHeight()) : 1;
+        int rows = (int) Math.ceil((double) pixelsPerFrame * LOOKAHEAD_FRAMES / rowHeight);
+        return Math.max(MIN_AHEAD, Math.min(MAX_AHEAD, rows));
+    }
+
+    private void preload(int position) {
+        NewsArticle article = adapter.getArticleAt(position - adapterOffset);
+        if (article == null) {
+            return; // Header, footer or outside the list
+        }
+        String url = article.getImageUrlFor(thumbnailEdgePx);
+        if (url == null || url.isEmpty()) {
+            return;
+        }
+        PreloadTarget target = targets[nextTarget];
+        nextTarget = (nextTarget + 1) % targets.length;
+        requestManager.load(url).apply(thumbnailOptions).into(target); // Replaces the target's old preload
+    }
+
+    /**
+     * Target that only warms the cache; the decoded image is dropped as soon as it arrives.
+     */
+    private static final class PreloadTarget extends CustomTarget<Drawable> {
+
+        PreloadTarget(int width, int height) {
+            super(width, height);
+        }
+
+        @Override
+        public void onResourceReady(@NonNull Drawable resource, @Nullable Transition<? super Drawable> transition) {
+            // Nothing to show, the image is now in the memory cache
+        }
+
+        @Override
+        public void onLoadCleared(@Nullable Drawable placeholder) {
+            // Nothing is held
+        }
+    }
+}
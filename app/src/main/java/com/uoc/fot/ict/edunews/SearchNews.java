@@ -0,0 +1,189 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.ImageButton;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Global search over every post the app has loaded so far, answered from the on-device
+ * {@link PostSearchStore}, so it works without a connection. Typing only searches the device;
+ * submitting the query also asks Firestore for matching posts (see
+ * {@link PostRepository#loadSearchPage}), page by page as the results are scrolled. Server pages
+ * are added to the on-device index and the local search is run again, so all results are ranked
+ * and highlighted together.
+ */
+public class SearchNews extends AppCompatActivity {
+
+    // More results than anyone scrolls through; ranking makes the first few count
+    private static final int MAX_RESULTS = 100;
+    // Wait this long after the last keystroke before searching
+    private static final long SEARCH_DEBOUNCE_MILLIS = 150;
+    // The next server page is requested this many rows before the end of the results
+    private static final int PREFETCH_DISTANCE = 5;
+
+    private SearchView searchView;
+    private RecyclerView searchResultsRecyclerView;
+    private TextView emptyStateText;
+    private SearchResultAdapter searchResultAdapter;
+    private PostSearchStore searchStore;
+    private PostRepository postRepository;
+
+    // The submitted query whose server results are being paged, or null if none
+    private String serverQuery;
+
+    // Incremented for every search, so results of a superseded query are dropped
+    private int searchGeneration;
+
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable debouncedSearch = this::runSearch;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_search_news);
+
+        // Initialize UI components
+        ImageButton backButton = findViewById(R.id.backButton);
+        searchView = findViewById(R.id.searchView);
+        searchResultsRecyclerView = findViewById(R.id.searchResultsRecyclerView);
+        emptyStateText = findViewById(R.id.emptyStateText);
+        searchStore = PostSearchStore.getInstance(this);
+        postRepository = PostRepository.getInstance(this);
+
+        searchResultAdapter = new SearchResultAdapter(this::navigateToNewsDetail);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        searchResultsRecyclerView.setLayoutManager(layoutManager);
+        searchResultsRecyclerView.setAdapter(searchResultAdapter);
+        searchResultsRecyclerView.addOnScrollListener(new PaginationScrollListener(
+                layoutManager, PREFETCH_DISTANCE, () -> loadServerPage(false)));
+        // Hold back image loads for rows that only fly past during a fling
+        new FlingImagePauser(Glide.with(this)).attachTo(searchResultsRecyclerView);
+
+        backButton.setOnClickListener(v -> getOnBackPressedDispatcher().onBackPressed());
+
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchHandler.removeCallbacks(debouncedSearch);
+                runSearch(); // Search right away on submit
+                serverQuery = query;
+                loadServerPage(true); // And look beyond what this device has seen
+                searchView.clearFocus(); // Hide the keyboard to reveal the results
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (serverQuery != null && !serverQuery.equals(newText)) {
+                    serverQuery = null; // Server results belong to the submitted text only
+                }
+                searchHandler.removeCallbacks(debouncedSearch);
+                searchHandler.postDelayed(debouncedSearch, SEARCH_DEBOUNCE_MILLIS);
+                return true;
+            }
+        });
+        searchView.requestFocus();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Posts may have been indexed, edited or deleted meanwhile
+        if (searchView.getQuery().length() > 0) {
+            runSearch();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchHandler.removeCallbacks(debouncedSearch);
+    }
+
+    private void runSearch() {
+        final String query = searchView.getQuery().toString();
+        final int generation = ++searchGeneration;
+        searchStore.search(query, MAX_RESULTS, results -> {
+            if (generation != searchGeneration || isFinishing() || isDestroyed()) {
+                return; // A newer keystroke superseded this result
+            }
+            showResults(query, results);
+        });
+    }
+
+    /**
+     * Requests a page of server results for the submitted query. Nothing happens without a
+     * submitted query, while a page is in flight, or after the last page.
+     * @param fromStart True for the first page of a newly submitted query.
+     */
+    private void loadServerPage(boolean fromStart) {
+        if (serverQuery == null) {
+            return;
+        }
+        final String query = serverQuery;
+        postRepository.loadSearchPage(query, fromStart, new PostRepository.PageCallback() {
+            @Override
+            public void onPageLoaded(List<NewsArticle> page, boolean endReached) {
+                if (!page.isEmpty() && query.equals(serverQuery) && !isFinishing() && !isDestroyed()) {
+                    runSearch(); // The page is in the on-device index by now, rank it with the rest
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                // Typically offline; the on-device results stay on screen
+                Toast.makeText(SearchNews.this, "Could not search online: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Hands the results to the adapter and updates the empty state.
+     */
+    private void showResults(String query, List<PostSearchStore.Result> results) {
+        searchResultAdapter.submitList(new ArrayList<>(results));
+        if (!results.isEmpty()) {
+            emptyStateText.setVisibility(View.GONE);
+            searchResultsRecyclerView.setVisibility(View.VISIBLE);
+            return;
+        }
+        if (SearchQuery.parse(query).isEmpty()) {
+            emptyStateText.setText("Search every post you have browsed, even offline.");
+        } else if (query.equals(serverQuery)) {
+            emptyStateText.setText("No posts found matching your search.");
+        } else {
+            emptyStateText.setText("No posts found on this device. Press search to look online.");
+        }
+        emptyStateText.setVisibility(View.VISIBLE);
+        searchResultsRecyclerView.setVisibility(View.GONE);
+    }
+
+    /**
+     * Opens the article of a tapped result.
+     * @param newsArticle The article of the result.
+     */
+    private void navigateToNewsDetail(NewsArticle newsArticle) {
+        ArticleHandoff.put(newsArticle); // Lets the article screen draw it, even offline
+        Intent intent = new Intent(this, news.class);
+        intent.putExtra("NEWS_ARTICLE_ID", newsArticle.getId());
+        startActivity(intent);
+    }
+}
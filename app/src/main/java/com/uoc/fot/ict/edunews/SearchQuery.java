@@ -0,0 +1,112 @@
+package com.uoc.fot.ict.edunews;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parsed search box query. Words are matched as prefixes ("edu" finds "education"); text in
+ * double quotes is matched as an exact phrase ("\"exam results\""). All parts must match.
+ * Tokens go through {@link SearchTokens}, exactly like the indexed text.
+ */
+public final class SearchQuery {
+
+    private final List<String> prefixes;
+    private final List<List<String>> phrases;
+
+    private SearchQuery(List<String> prefixes, List<List<String>> phrases) {
+        this.prefixes = Collections.unmodifiableList(prefixes);
+        this.phrases = Collections.unmodifiableList(phrases);
+    }
+
+    /**
+     * @param text The search text as typed. An unclosed quote runs to the end of the text, so a
+     * phrase already matches while it is being typed.
+     */
+    public static SearchQuery parse(String text) {
+        List<String> prefixes = new ArrayList<>();
+        List<List<String>> phrases = new ArrayList<>();
+        String[] segments = (text != null ? text : "").split("\"", -1);
+        for (int i = 0; i < segments.length; i++) {
+            List<String> tokens = SearchTokens.tokenize(segments[i]);
+            if (i % 2 == 0) {
+                prefixes.addAll(tokens); // Outside quotes
+            } else if (!tokens.isEmpty()) {
+                phrases.add(tokens); // Even a single quoted word is matched exactly, not as a prefix
+            }
+        }
+        return new SearchQuery(prefixes, phrases);
+    }
+
+    /** @return True if the query has nothing to search for. */
+    public boolean isEmpty() {
+        return prefixes.isEmpty() && phrases.isEmpty();
+    }
+
+    /**
+     * @return The query in SQLite FTS syntax, e.g. {@code edu* "exam results"}. Tokens only
+     * contain letters and digits and are lowercase, so they can never form FTS operators.
+     */
+    String toMatchExpression() {
+        StringBuilder match = new StringBuilder();
+        for (String prefix : prefixes) {
+            match.append(prefix).append("* ");
+        }
+        for (List<String> phrase : phrases) {
+            match.append('"').append(String.join(" ", phrase)).append("\" ");
+        }
+        return match.toString().trim();
+    }
+
+    /**
+     * Term frequency of the query in a tokenized text: every token starting with a prefix and
+     * every occurrence of a phrase counts once.
+     * @param tokens Normalized tokens of the text, in order.
+     */
+    int frequencyIn(String[] tokens) {
+        int count = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            for (String prefix : prefixes) {
+                if (tokens[i].startsWith(prefix)) {
+                    count++;
+                }
+            }
+            for (List<String> phrase : phrases) {
+                if (phraseAt(tokens, i, phrase)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param word One normalized word of a displayed text.
+     * @return True if the word is part of what the query matched and should be highlighted.
+     */
+    boolean highlights(String word) {
+        for (String prefix : prefixes) {
+            if (word.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (List<String> phrase : phrases) {
+            if (phrase.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean phraseAt(String[] tokens, int start, List<String> phrase) {
+        if (start + phrase.size() > tokens.length) {
+            return false;
+        }
+        for (int j = 0; j < phrase.size(); j++) {
+            if (!tokens[start + j].equals(phrase.get(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,158 @@
+package com.uoc.fot.ict.edunews;
+
+import android.graphics.Typeface;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.core.util.Consumer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.RequestOptions;
+
+/**
+ * Adapter for the global search results. Rows look like the news lists, with the words the
+ * query matched highlighted in the title and description.
+ */
+public class SearchResultAdapter extends ListAdapter<PostSearchStore.Result, SearchResultAdapter.ResultViewHolder> {
+
+    // A description whose first match starts later than this is shown from shortly before the match
+    private static final int SNIPPET_MAX_LEAD = 60;
+    private static final int SNIPPET_CONTEXT = 20;
+    private static final String ELLIPSIS = "…";
+
+    private static final DiffUtil.ItemCallback<PostSearchStore.Result> DIFF = new DiffUtil.ItemCallback<PostSearchStore.Result>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull PostSearchStore.Result oldItem, @NonNull PostSearchStore.Result newItem) {
+            return NewsArticleDiff.INSTANCE.areItemsTheSame(oldItem.getArticle(), newItem.getArticle());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull PostSearchStore.Result oldItem, @NonNull PostSearchStore.Result newItem) {
+            return oldItem.equals(newItem); // Includes the highlights, which change with the query
+        }
+    };
+
+    private final Consumer<NewsArticle> onArticleClick;
+
+    /**
+     * @param onArticleClick Called with the article of a tapped result.
+     */
+    public SearchResultAdapter(Consumer<NewsArticle> onArticleClick) {
+        super(DIFF);
+        this.onArticleClick = onArticleClick;
+        setHasStableIds(true);
+    }
+
+    @NonNull
+    @Override
+    public ResultViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_news_article, parent, false);
+        return new ResultViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ResultViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return NewsArticleDiff.stableIdOf(getItem(position).getArticle());
+    }
+
+    class ResultViewHolder extends RecyclerView.ViewHolder {
+        final ImageView articleImage;
+        final TextView articleTitle;
+        final TextView articleDate;
+        final TextView articleDescription;
+        final TextView readMoreButton;
+        final int thumbnailEdgePx;
+        final RequestOptions thumbnailOptions;
+        final int highlightColor;
+
+        ResultViewHolder(@NonNull View itemView) {
+            super(itemView);
+            articleImage = itemView.findViewById(R.id.articleImage);
+            articleTitle = itemView.findViewById(R.id.articleTitle);
+            articleDate = itemView.findViewById(R.id.articleDate);
+            articleDescription = itemView.findViewById(R.id.articleDescription);
+            readMoreButton = itemView.findViewById(R.id.readMoreButton);
+            thumbnailEdgePx = itemView.getResources().getDimensionPixelSize(R.dimen.article_thumbnail_max_edge);
+            thumbnailOptions = ImageRequests.list(itemView.getContext());
+            highlightColor = ContextCompat.getColor(itemView.getContext(), R.color.ButtonColour);
+        }
+
+        void bind(PostSearchStore.Result result) {
+            NewsArticle article = result.getArticle();
+            // Served from Glide's disk cache when offline, as long as the row was seen before
+            Glide.with(itemView.getContext())
+                    .load(article.getImageUrlFor(thumbnailEdgePx))
+                    .apply(thumbnailOptions)
+                    .placeholder(R.drawable.image_placeholder_background)
+                    .error(R.drawable.image_placeholder_background)
+                    .into(articleImage);
+
+            articleTitle.setText(highlight(article.getTitle(), result.getTitleHighlights(), 0));
+
+            String dateText = article.getListDateText();
+            if (dateText != null) {
+                articleDate.setText(dateText);
+                articleDate.setVisibility(View.VISIBLE);
+            } else {
+                articleDate.setVisibility(View.GONE);
+            }
+
+            articleDescription.setText(snippet(article.getDescription(), result.getDescriptionHighlights()));
+
+            itemView.setOnClickListener(v -> onArticleClick.accept(article));
+            readMoreButton.setOnClickListener(v -> onArticleClick.accept(article));
+        }
+
+        /**
+         * The description is cut to three lines in the row, so a match far into it would be
+         * invisible; such descriptions are shown from a word shortly before the first match.
+         */
+        private CharSequence snippet(String description, int[] highlights) {
+            if (description == null || highlights.length == 0 || highlights[0] <= SNIPPET_MAX_LEAD) {
+                return highlight(description, highlights, 0);
+            }
+            int start = description.lastIndexOf(' ', highlights[0] - SNIPPET_CONTEXT) + 1;
+            if (start == 0) {
+                return highlight(description, highlights, 0); // One long word, nothing to cut at
+            }
+            return highlight(ELLIPSIS + description.substring(start), highlights, start - ELLIPSIS.length());
+        }
+
+        /**
+         * @param shift Subtracted from every highlight offset, for text that was cut at the start.
+         */
+        private CharSequence highlight(String text, int[] highlights, int shift) {
+            if (text == null || highlights.length == 0) {
+                return text;
+            }
+            SpannableString spannable = new SpannableString(text);
+            for (int i = 0; i + 1 < highlights.length; i += 2) {
+                int start = highlights[i] - shift;
+                int end = highlights[i + 1] - shift;
+                if (start < 0 || end > text.length()) {
+                    continue; // Cut away by the snippet
+                }
+                spannable.setSpan(new StyleSpan(Typeface.BOLD), start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                spannable.setSpan(new ForegroundColorSpan(highlightColor), start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+            return spannable;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.uoc.fot.ict.edunews;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits post text into normalized search tokens. Normalization lowercases with the root locale
+ * and strips accents, so "Café" and "cafe" match and the result does not depend on the device
+ * language. Everything that indexes or queries post text goes through here, so both sides
+ * always agree on what a token is.
+ */
+public final class SearchTokens {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchTokens() {
+        // Static helpers only
+    }
+
+    /**
+     * @param text Any text, may be null.
+     * @return The lowercased, accent-free text.
+     */
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param text Any text, may be null.
+     * @return Its normalized tokens in order of appearance, including repeats.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalize(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @return The distinct normalized tokens of all given texts, in order of first appearance.
+     */
+    public static Set<String> distinctTokens(String... texts) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String text : texts) {
+            tokens.addAll(tokenize(text));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,45 @@
+package com.uoc.fot.ict.edunews;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Shows one pre-inflated view as a single RecyclerView item, e.g. a header placed
+ * in front of a list with a ConcatAdapter so that it scrolls together with the rows.
+ */
+public class SingleViewAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    private final View view;
+
+    /**
+     * @param view The view to show. It must not be attached to a parent yet.
+     */
+    public SingleViewAdapter(View view) {
+        this.view = view;
+        setHasStableIds(true); // Allows use in a ConcatAdapter with isolated stable IDs
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new RecyclerView.ViewHolder(view) { };
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        // The view is bound by its owner, nothing to do here
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return 0;
+    }
+
+    @Override
+    public int getItemCount() {
+        return 1;
+    }
+}
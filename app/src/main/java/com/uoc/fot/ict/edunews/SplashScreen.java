@@ -3,66 +3,46 @@ package com.uoc.fot.ict.edunews;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.os.Handler;
 import android.util.Log;
 
 import androidx.activity.EdgeToEdge;
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.Task;
-import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseUser;
-
 public class SplashScreen extends AppCompatActivity {
 
     private static final String PREFS_NAME = "MyAppPrefs";
     private static final String KEY_FIRST_LAUNCH = "is_first_launch";
     private static final String TAG = "SplashScreen"; // Tag for logging
 
-    private FirebaseAuth mAuth; // Firebase Auth instance
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_splash_screen);
+    }
 
-        // Initialize Firebase Auth
-        mAuth = FirebaseAuth.getInstance();
-
-        new Handler().postDelayed(() -> {
-            FirebaseUser currentUser = mAuth.getCurrentUser();
-
-            if (currentUser != null) {
-                // User is logged in, now check if their account is still valid (not deleted by admin)
-                currentUser.reload().addOnCompleteListener(new OnCompleteListener<Void>() {
-                    @Override
-                    public void onComplete(@NonNull Task<Void> task) {
-                        Intent nextIntent;
-                        if (task.isSuccessful()) {
-                            // User reloaded successfully, meaning their account still exists
-                            Log.d(TAG, "Firebase user session is valid. Navigating to Home.");
-                            nextIntent = new Intent(SplashScreen.this, home.class);
-                        } else {
-                            // User reload failed (e.g., account deleted or disabled)
-                            Log.w(TAG, "Firebase user session invalid or account deleted. Redirecting to login/onboarding.", task.getException());
-                            // Sign out the current user if reload fails to clear invalid state
-                            mAuth.signOut();
-                            handleFirstLaunchOrSignIn();
-                            return; // Return here to prevent double navigation
-                        }
-                        startActivity(nextIntent);
-                        finish(); // Finish the SplashScreen activity
-                    }
-                });
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Stays up until the account is checked and the home feed can be drawn, no longer;
+        // the work itself started with the process (see AppStartup). The listener is removed
+        // in onStop, so it is added again on every start: a user who left during the splash
+        // and came back is routed as soon as the (possibly long completed) startup allows.
+        AppStartup.getInstance(this).whenReady().addOnSuccessListener(this, route -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            if (route == AppStartup.Route.HOME) {
+                // User is logged in and their account still exists; the feed is already loaded
+                Log.d(TAG, "Firebase user session is valid. Navigating to Home.");
+                startActivity(new Intent(SplashScreen.this, home.class));
+                finish(); // Finish the SplashScreen activity
             } else {
-                // No user is logged in, proceed with the normal first launch / sign in flow
+                // No user is logged in (or the account was deleted), proceed with the normal first launch / sign in flow
                 Log.d(TAG, "No Firebase user logged in. Proceeding to login/onboarding.");
                 handleFirstLaunchOrSignIn();
             }
-        }, 1000); // 1.5 second delay
+        });
     }
 
     /**
@@ -3,10 +3,8 @@ package com.uoc.fot.ict.edunews;
 import android.app.Activity;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.net.Uri;
-import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -20,43 +18,31 @@ import android.widget.CheckBox;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
 import android.widget.ProgressBar;
+import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Toast;
-import android.graphics.ImageDecoder; // Required for decoding image on newer Android versions
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.activity.OnBackPressedCallback; // For modern back press handling
 
 import com.bumptech.glide.Glide; // Image loading library
-import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
-import com.google.android.gms.tasks.Tasks; // For Tasks.whenAllComplete
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthRecentLoginRequiredException; // Potentially useful for reauthentication
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot; // For iterating query results
 import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
 
-import java.io.ByteArrayOutputStream; // For compressing bitmap to byte array
 import java.io.IOException; // For handling IO exceptions
-import java.io.InputStream; // For reading image data
-import java.util.ArrayList; // For list of tasks
 import java.util.HashMap; // For Firestore data maps
-import java.util.List; // For list of tasks
 import java.util.Map; // For Firestore data maps
 import java.util.Objects; // For Objects.requireNonNull
-import java.util.concurrent.ExecutorService; // For background threading
-import java.util.concurrent.Executors; // For creating ExecutorService
 import java.util.regex.Pattern; // For mobile number validation
 
 import de.hdodenhof.circleimageview.CircleImageView; // Custom Circular ImageView
@@ -71,13 +57,19 @@ public class UserInfo extends AppCompatActivity {
 
     private static final String TAG = "UserInfoActivity";
 
+    // Profile pictures are shown as small circles: longest edge in pixels, JPEG quality and size to stay under
+    private static final int PROFILE_PICTURE_EDGE = 512;
+    private static final int PROFILE_PICTURE_QUALITY = 85;
+    private static final long PROFILE_PICTURE_TARGET_BYTES = 100 * 1024;
+
     // UI Elements
     private TextInputEditText usernameInput, addressInput, mobileInput, emailInput;
     private TextInputLayout usernameInputLayout, addressInputLayout, mobileInputLayout;
     private Button editSaveButton, mainActionButton, deleteAccountButton;
     private ImageButton editProfilePictureButton;
     private CircleImageView profilePicture;
-    private ProgressBar progressBar;
+    private ProgressBar progressBar, deletionProgressBar;
+    private TextView deletionProgressText;
     private LinearLayout authorButtonsLayout;
 
     // Firebase Instances
@@ -107,10 +99,11 @@ public class UserInfo extends AppCompatActivity {
     // Activity Result Launcher for picking images (modern replacement for startActivityForResult)
     private ActivityResultLauncher<Intent> pickImageLauncher;
 
-    // For background processing to prevent UI freezes
-    private ExecutorService executorService;
     private Handler handler; // For posting UI updates back to the main thread
 
+    // Deletes the account in resumable steps
+    private AccountDeletion accountDeletion;
+
     // OnBackPressedCallback for modern back press handling
     private OnBackPressedCallback onBackPressedCallback;
 
@@ -127,6 +120,7 @@ public class UserInfo extends AppCompatActivity {
         setupOnBackPressedCallback();
         fetchUserData(); // Initiates data loading and UI population
         setupListeners();
+        offerToResumeAccountDeletion();
     }
 
     /**
@@ -141,11 +135,11 @@ public class UserInfo extends AppCompatActivity {
     }
 
     /**
-     * Initializes ExecutorService for background tasks and Handler for UI updates.
+     * Initializes the Handler for UI updates and the account deletion engine.
      */
     private void initializeThreading() {
-        executorService = Executors.newSingleThreadExecutor();
         handler = new Handler(Looper.getMainLooper());
+        accountDeletion = new AccountDeletion(this);
     }
 
     /**
@@ -174,6 +168,8 @@ public class UserInfo extends AppCompatActivity {
         profilePicture = findViewById(R.id.profilePicture); // User's profile picture ImageView
         editProfilePictureButton = findViewById(R.id.editProfilePictureButton); // Button to change profile picture
         progressBar = findViewById(R.id.progressBar); // Progress indicator
+        deletionProgressBar = findViewById(R.id.deletionProgressBar); // Account deletion progress
+        deletionProgressText = findViewById(R.id.deletionProgressText);
     }
 
     /**
@@ -187,7 +183,7 @@ public class UserInfo extends AppCompatActivity {
                         selectedImageUri = result.getData().getData(); // Get the URI of the selected image
                         if (selectedImageUri != null) {
                             // Display the newly selected image immediately
-                            Glide.with(this).load(selectedImageUri).into(profilePicture);
+                            Glide.with(this).load(selectedImageUri).apply(ImageRequests.avatar(profilePicture)).into(profilePicture);
                             Toast.makeText(this, "Image selected, click 'Save' to upload.", Toast.LENGTH_SHORT).show();
                         }
                     } else {
@@ -285,6 +281,14 @@ public class UserInfo extends AppCompatActivity {
             startActivity(intent);
         });
 
+        // Live updates toggle: a device setting, applied the next time a feed screen opens
+        Switch liveUpdatesToggle = findViewById(R.id.liveUpdatesToggle);
+        liveUpdatesToggle.setChecked(FeedSettings.isLiveUpdatesEnabled(this));
+        liveUpdatesToggle.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            FeedSettings.setLiveUpdatesEnabled(this, isChecked);
+            Toast.makeText(UserInfo.this, isChecked ? "Live news updates turned on." : "Live news updates turned off.", Toast.LENGTH_SHORT).show();
+        });
+
         // Developer info button listener
         findViewById(R.id.devInfo).setOnClickListener(v -> {
             Toast.makeText(UserInfo.this, "Opening Developer Informations...", Toast.LENGTH_SHORT).show();
@@ -295,78 +299,96 @@ public class UserInfo extends AppCompatActivity {
 
     /**
      * Fetches user data from Firebase Firestore and updates UI.
-     * If user data doesn't exist, it creates a default document.
+     * If user data doesn't exist, it creates a default document, unless an account deletion that
+     * already removed it is waiting to be resumed.
      * If no current user, it redirects to the sign-in screen.
      */
     private void fetchUserData() {
         if (currentUser != null) {
             String userId = currentUser.getUid();
-            DocumentReference userRef = db.collection("users").document(userId);
 
-            userRef.get().addOnCompleteListener(new OnCompleteListener<DocumentSnapshot>() {
+            // Shared profile store: the profile usually shows instantly from the screen that opened
+            // this one, and is only read again when it is older than UserProfileStore.PROFILE_TTL_MILLIS
+            UserProfileStore.getInstance(this).observe(this, userId, new UserProfileStore.Listener() {
                 @Override
-                public void onComplete(@NonNull Task<DocumentSnapshot> task) {
-                    if (task.isSuccessful()) {
-                        DocumentSnapshot document = task.getResult();
-                        if (document.exists()) {
-                            // Store original data to detect changes later
-                            originalUsername = document.getString("username");
-                            originalAddress = document.getString("address");
-                            originalMobile = document.getString("mobileNumber");
-                            originalProfilePictureUrl = document.getString("profilePictureUrl");
-
-                            // Set current data for display
-                            currentUsername = originalUsername;
-                            currentAddress = originalAddress;
-                            currentMobile = originalMobile;
-                            currentEmail = currentUser.getEmail(); // Email from FirebaseAuth
-                            currentProfilePictureUrl = originalProfilePictureUrl; // Currently displayed URL
-                            Boolean authorStatus = document.getBoolean("author");
-                            isAuthor = (authorStatus != null && authorStatus);
-
-                            Log.d(TAG, "User data fetched: " + currentUsername + ", isAuthor: " + isAuthor);
-                            displayUserData(false); // Display in view mode
-                        } else {
-                            // If user document doesn't exist, create a default one
-                            Log.d(TAG, "User data document does not exist, creating default.");
-                            currentEmail = currentUser.getEmail();
-                            currentUsername = currentUser.getDisplayName() != null ? currentUser.getDisplayName() : "";
-                            currentAddress = "";
-                            currentMobile = "";
-                            currentProfilePictureUrl = "";
-                            isAuthor = false;
-
-                            Map<String, Object> defaultUserData = new HashMap<>();
-                            defaultUserData.put("username", currentUsername);
-                            defaultUserData.put("email", currentEmail);
-                            defaultUserData.put("address", currentAddress);
-                            defaultUserData.put("mobileNumber", currentMobile);
-                            defaultUserData.put("profilePictureUrl", currentProfilePictureUrl);
-                            defaultUserData.put("author", isAuthor);
-
-                            db.collection("users").document(userId).set(defaultUserData)
-                                    .addOnSuccessListener(aVoid -> {
-                                        Log.d(TAG, "Default user data created in Firestore.");
-                                        // Update original values after creating default
-                                        originalUsername = currentUsername;
-                                        originalAddress = currentAddress;
-                                        originalMobile = currentMobile;
-                                        originalProfilePictureUrl = currentProfilePictureUrl;
-                                        displayUserData(false); // Display in view mode
-                                    })
-                                    .addOnFailureListener(e -> {
-                                        Log.e(TAG, "Error creating default user data", e);
-                                        Toast.makeText(UserInfo.this, "Error creating user data: " + (e.getMessage() != null ? e.getMessage() : "Unknown error"), Toast.LENGTH_LONG).show();
-                                        displayUserData(false); // Still attempt to display what we have
-                                    });
-                        }
-                    } else {
-                        // Handle failure to fetch user data
-                        Log.e(TAG, "Failed to load user data from Firestore: ", task.getException());
-                        Toast.makeText(UserInfo.this, "Failed to load user data: " + (task.getException() != null ? task.getException().getMessage() : "Unknown error"), Toast.LENGTH_LONG).show();
-                        currentEmail = currentUser.getEmail(); // Still display email if available from Auth
+                public void onProfile(UserProfile profile) {
+                    if (isFinishing() || isDestroyed() || isEditMode) {
+                        return; // Never overwrite fields the user is editing with a late server copy
+                    }
+                    if (profile.exists()) {
+                        // Store original data to detect changes later
+                        originalUsername = profile.getUsername();
+                        originalAddress = profile.getAddress();
+                        originalMobile = profile.getMobileNumber();
+                        originalProfilePictureUrl = profile.getProfilePictureUrl();
+
+                        // Set current data for display
+                        currentUsername = originalUsername;
+                        currentAddress = originalAddress;
+                        currentMobile = originalMobile;
+                        currentEmail = currentUser.getEmail(); // Email from FirebaseAuth
+                        currentProfilePictureUrl = originalProfilePictureUrl; // Currently displayed URL
+                        isAuthor = profile.isAuthor();
+
+                        Log.d(TAG, "User data fetched: " + currentUsername + ", isAuthor: " + isAuthor);
+                        displayUserData(false); // Display in view mode
+                    } else if (accountDeletion.hasPending(userId)) {
+                        // Deleted by an interrupted account deletion; recreating it would leave
+                        // the profile behind once the deletion is resumed
+                        Log.d(TAG, "User data document already deleted by a pending account deletion.");
+                        currentEmail = currentUser.getEmail();
                         displayUserData(false);
+                    } else {
+                        // If user document doesn't exist, create a default one
+                        Log.d(TAG, "User data document does not exist, creating default.");
+                        currentEmail = currentUser.getEmail();
+                        currentUsername = currentUser.getDisplayName() != null ? currentUser.getDisplayName() : "";
+                        currentAddress = "";
+                        currentMobile = "";
+                        currentProfilePictureUrl = "";
+                        isAuthor = false;
+
+                        Map<String, Object> defaultUserData = new HashMap<>();
+                        defaultUserData.put("username", currentUsername);
+                        defaultUserData.put("email", currentEmail);
+                        defaultUserData.put("address", currentAddress);
+                        defaultUserData.put("mobileNumber", currentMobile);
+                        defaultUserData.put("profilePictureUrl", currentProfilePictureUrl);
+                        defaultUserData.put("author", isAuthor);
+
+                        db.collection("users").document(userId).set(defaultUserData)
+                                .addOnSuccessListener(aVoid -> {
+                                    Log.d(TAG, "Default user data created in Firestore.");
+                                    // Update original values after creating default
+                                    originalUsername = currentUsername;
+                                    originalAddress = currentAddress;
+                                    originalMobile = currentMobile;
+                                    originalProfilePictureUrl = currentProfilePictureUrl;
+                                    UserProfileStore.getInstance(UserInfo.this).put(new UserProfile(userId, true, currentUsername,
+                                            currentEmail, currentAddress, currentMobile, currentProfilePictureUrl, isAuthor));
+                                    displayUserData(false); // Display in view mode
+                                })
+                                .addOnFailureListener(e -> {
+                                    Log.e(TAG, "Error creating default user data", e);
+                                    Toast.makeText(UserInfo.this, "Error creating user data: " + (e.getMessage() != null ? e.getMessage() : "Unknown error"), Toast.LENGTH_LONG).show();
+                                    displayUserData(false); // Still attempt to display what we have
+                                });
+                    }
+                }
+
+                @Override
+                public void onProfileError(Exception e) {
+                    if (isFinishing() || isDestroyed()) {
+                        return;
+                    }
+                    // Handle failure to fetch user data
+                    Log.e(TAG, "Failed to load user data from Firestore: ", e);
+                    if (originalUsername != null) {
+                        return; // The cached profile is already on screen
                     }
+                    Toast.makeText(UserInfo.this, "Failed to load user data: " + (e.getMessage() != null ? e.getMessage() : "Unknown error"), Toast.LENGTH_LONG).show();
+                    currentEmail = currentUser.getEmail(); // Still display email if available from Auth
+                    displayUserData(false);
                 }
             });
         } else {
@@ -396,6 +418,7 @@ public class UserInfo extends AppCompatActivity {
         if (currentProfilePictureUrl != null && !currentProfilePictureUrl.isEmpty()) {
             Glide.with(this)
                     .load(currentProfilePictureUrl)
+                    .apply(ImageRequests.avatar(profilePicture))
                     .placeholder(R.drawable.user) // Placeholder while loading
                     .error(R.drawable.user) // Fallback on error
                     .into(profilePicture);
@@ -559,34 +582,13 @@ public class UserInfo extends AppCompatActivity {
         progressBar.setVisibility(View.VISIBLE);
         Toast.makeText(this, "Saving profile...", Toast.LENGTH_SHORT).show();
 
-        // Execute image upload and Firestore update on a background thread
-        executorService.execute(() -> {
+        // Execute image preparation on the shared image thread, so large photos never block the UI
+        AppExecutors.imageWork().execute(() -> {
             try {
                 if (selectedImageUri != null) { // If a new image is selected, upload it first
-                    Bitmap bitmap;
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                        bitmap = ImageDecoder.decodeBitmap(ImageDecoder.createSource(getContentResolver(), selectedImageUri));
-                    } else {
-                        InputStream imageStream = getContentResolver().openInputStream(selectedImageUri);
-                        bitmap = BitmapFactory.decodeStream(imageStream);
-                        if (imageStream != null) {
-                            imageStream.close(); // Close the stream to prevent resource leaks
-                        }
-                    }
-
-                    if (bitmap == null) {
-                        handler.post(() -> {
-                            progressBar.setVisibility(View.GONE);
-                            Toast.makeText(UserInfo.this, "Failed to decode image.", Toast.LENGTH_LONG).show();
-                            Log.e(TAG, "Bitmap is null after decoding image URI.");
-                        });
-                        return;
-                    }
-
-                    // Compress the bitmap to JPEG format
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    bitmap.compress(Bitmap.CompressFormat.JPEG, 75, baos); // 75% quality
-                    byte[] data = baos.toByteArray();
+                    // Decoded downsampled and upright, never at the camera's full resolution
+                    byte[] data = ImageCompressor.prepare(getContentResolver(), selectedImageUri, PROFILE_PICTURE_EDGE,
+                            Bitmap.CompressFormat.JPEG, PROFILE_PICTURE_QUALITY, PROFILE_PICTURE_TARGET_BYTES);
 
                     // Define Storage reference path for profile picture (unique to user)
                     StorageReference profilePicsRef = storageRef.child("profile_pictures/" + currentUser.getUid() + ".jpg");
@@ -658,6 +660,13 @@ public class UserInfo extends AppCompatActivity {
                     currentMobile = newMobile;
                     currentProfilePictureUrl = profilePictureUrl;
 
+                    // Every screen showing this profile picks up the edit without reading it again
+                    UserProfileStore profileStore = UserProfileStore.getInstance(UserInfo.this);
+                    UserProfile known = profileStore.peek(currentUser.getUid());
+                    profileStore.put(known != null
+                            ? known.withEdits(newUsername, newAddress, newMobile, profilePictureUrl)
+                            : new UserProfile(currentUser.getUid(), true, newUsername, currentEmail, newAddress, newMobile, profilePictureUrl, isAuthor));
+
                     handler.post(() -> {
                         progressBar.setVisibility(View.GONE);
                         Toast.makeText(UserInfo.this, "Profile updated successfully!", Toast.LENGTH_SHORT).show();
@@ -699,6 +708,10 @@ public class UserInfo extends AppCompatActivity {
      * Helper method to sign out and navigate to sign-in activity, clearing activity stack.
      */
     private void signOutAndNavigateToSignIn() {
+        PostRepository.getInstance(this).clear(); // Cached feeds belong to the previous session
+        UserProfileStore.getInstance(this).clear(); // And so do cached profiles
+        PostStore.getInstance(this).clear(); // And the local changes laid over them
+        PostSearchStore.getInstance(this).clear(); // And the search index built from them
         Intent intent = new Intent(UserInfo.this, SignIn.class);
         intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
         startActivity(intent);
@@ -738,9 +751,9 @@ public class UserInfo extends AppCompatActivity {
     }
 
     /**
-     * Orchestrates the multi-step account deletion process.
-     * Steps include: deleting profile picture, user's posts & images (if applicable),
-     * user document from Firestore, and finally the Firebase Authentication account.
+     * Starts the multi-step account deletion (see {@link AccountDeletion}): profile picture,
+     * user's posts & images (if applicable), user document from Firestore, and finally the
+     * Firebase Authentication account. Progress is shown below the buttons.
      * @param deletePosts True if author's posts should also be deleted.
      */
     private void executeAccountDeletion(boolean deletePosts) {
@@ -750,25 +763,96 @@ public class UserInfo extends AppCompatActivity {
             return;
         }
 
-        // Show progress and disable buttons to prevent re-clicks
+        showDeletionInProgress();
+        Toast.makeText(this, "Deleting account...", Toast.LENGTH_LONG).show();
+        handleDeletionResult(accountDeletion.start(currentUser, deletePosts, currentProfilePictureUrl, this::showDeletionProgress));
+    }
+
+    /**
+     * Offers to finish an account deletion that was interrupted, e.g. by closing the app or by
+     * a sign-in that was too old to delete the account.
+     */
+    private void offerToResumeAccountDeletion() {
+        if (currentUser == null || !accountDeletion.hasPending(currentUser.getUid())) {
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Finish Deleting Account?")
+                .setMessage("Deleting your account was interrupted. Continue where it stopped?")
+                .setPositiveButton("Continue", (dialog, which) -> {
+                    showDeletionInProgress();
+                    handleDeletionResult(accountDeletion.resume(currentUser, this::showDeletionProgress));
+                })
+                .setNegativeButton("Keep Account", (dialog, which) -> accountDeletion.abandon())
+                .show();
+    }
+
+    /**
+     * Shows the progress views and disables buttons to prevent re-clicks.
+     */
+    private void showDeletionInProgress() {
         progressBar.setVisibility(View.VISIBLE);
         editSaveButton.setEnabled(false);
         mainActionButton.setEnabled(false);
         if (deleteAccountButton != null) deleteAccountButton.setEnabled(false);
+        deletionProgressBar.setIndeterminate(true);
+        deletionProgressBar.setVisibility(View.VISIBLE);
+        deletionProgressText.setVisibility(View.VISIBLE);
+    }
 
-        Toast.makeText(this, "Deleting account...", Toast.LENGTH_LONG).show();
+    /**
+     * Updates the progress views for the current deletion step.
+     */
+    private void showDeletionProgress(AccountDeletion.Step step, int postsDone, int postsTotal) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        switch (step) {
+            case PROFILE_PICTURE:
+                deletionProgressText.setText("Deleting profile picture...");
+                break;
+            case POSTS:
+                deletionProgressText.setText(postsTotal > 0
+                        ? "Deleting posts: " + Math.min(postsDone, postsTotal) + " of " + postsTotal
+                        : "Deleting posts: " + postsDone);
+                break;
+            case USER_DOCUMENT:
+                deletionProgressText.setText("Deleting profile data...");
+                break;
+            case AUTH_ACCOUNT:
+                deletionProgressText.setText("Deleting account...");
+                break;
+        }
+        if (step == AccountDeletion.Step.POSTS && postsTotal > 0) {
+            deletionProgressBar.setIndeterminate(false);
+            deletionProgressBar.setMax(postsTotal);
+            deletionProgressBar.setProgress(postsDone);
+        } else {
+            deletionProgressBar.setIndeterminate(true);
+        }
+    }
 
-        // Start deletion process on a background thread
-        executorService.execute(() -> {
-            // Chain deletion tasks sequentially using callbacks
-            deleteProfilePicture(() -> {
-                deleteUserPostsAndImages(deletePosts, () -> {
-                    deleteUserDocument(() -> {
-                        deleteFirebaseAuthAccount();
-                    });
+    /**
+     * Navigates away once the account is gone, or reports why the deletion stopped.
+     */
+    private void handleDeletionResult(Task<Void> deletion) {
+        deletion.addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Firebase Authentication account deleted.");
+                    Toast.makeText(UserInfo.this, "Account deleted successfully!", Toast.LENGTH_LONG).show();
+                    signOutAndNavigateToSignIn(); // Navigate away after successful deletion
+                })
+                .addOnFailureListener(e -> {
+                    if (e instanceof FirebaseAuthRecentLoginRequiredException) {
+                        // User needs to re-authenticate (e.g., if session expired); the rest is already deleted
+                        Log.e(TAG, "Recent login required for account deletion.", e);
+                        if (!isFinishing() && !isDestroyed()) {
+                            showReauthenticateDialog();
+                        }
+                    } else {
+                        Log.e(TAG, "Account deletion stopped: " + e.getMessage());
+                        handleDeletionFailure("Account deletion stopped. It continues where it left off next time", e);
+                    }
                 });
-            });
-        });
     }
 
     /**
@@ -779,7 +863,12 @@ public class UserInfo extends AppCompatActivity {
      */
     private void handleDeletionFailure(String message, Exception e) {
         handler.post(() -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
             progressBar.setVisibility(View.GONE);
+            deletionProgressBar.setVisibility(View.GONE);
+            deletionProgressText.setVisibility(View.GONE);
             editSaveButton.setEnabled(true);
             mainActionButton.setEnabled(true);
             if (deleteAccountButton != null) deleteAccountButton.setEnabled(true);
@@ -788,146 +877,6 @@ public class UserInfo extends AppCompatActivity {
         });
     }
 
-    /**
-     * Step 1 in deletion process: Deletes the user's profile picture from Firebase Storage.
-     * Continues to the next step via `onComplete` runnable regardless of success/failure.
-     * @param onComplete Callback to run after profile picture deletion attempt.
-     */
-    private void deleteProfilePicture(Runnable onComplete) {
-        // Check if there's a profile picture URL and it's a Firebase Storage URL
-        if (currentProfilePictureUrl != null && !currentProfilePictureUrl.isEmpty() && currentProfilePictureUrl.contains("firebasestorage.googleapis.com")) {
-            try {
-                StorageReference profilePicRef = FirebaseStorage.getInstance().getReferenceFromUrl(currentProfilePictureUrl);
-                profilePicRef.delete()
-                        .addOnSuccessListener(aVoid -> {
-                            Log.d(TAG, "Profile picture deleted successfully.");
-                            onComplete.run(); // Proceed
-                        })
-                        .addOnFailureListener(e -> {
-                            Log.e(TAG, "Failed to delete profile picture (might not exist or permissions issue): " + e.getMessage());
-                            onComplete.run(); // Proceed even if deletion fails (e.g., file not found)
-                        });
-            } catch (IllegalArgumentException e) {
-                // If URL is not a valid Firebase Storage URL (e.g., empty or malformed)
-                Log.w(TAG, "Profile picture URL is not a valid Firebase Storage URL. Skipping deletion. Error: " + e.getMessage());
-                onComplete.run(); // Proceed
-            }
-        } else {
-            // No profile picture or not a Firebase Storage URL, proceed immediately
-            Log.d(TAG, "No profile picture to delete or URL not from Firebase Storage.");
-            onComplete.run();
-        }
-    }
-
-    /**
-     * Step 2 in deletion process: Deletes user's posts from Firestore and their associated images from Storage.
-     * This is conditional based on `isAuthor` and `deletePosts` flag.
-     * Uses `Tasks.whenAllComplete` to wait for all deletions.
-     * @param deletePosts True if posts should be deleted.
-     * @param onComplete Callback to run after all post/image deletion attempts.
-     */
-    private void deleteUserPostsAndImages(boolean deletePosts, Runnable onComplete) {
-        if (isAuthor && deletePosts && currentUser != null) {
-            db.collection("posts")
-                    .whereEqualTo("userId", currentUser.getUid()) // Query for posts by current user
-                    .get()
-                    .addOnCompleteListener(task -> {
-                        if (task.isSuccessful()) {
-                            List<Task<Void>> deletionTasks = new ArrayList<>(); // List to hold all deletion tasks
-                            for (QueryDocumentSnapshot doc : task.getResult()) {
-                                String imageUrl = doc.getString("imageUrl");
-                                // Delete associated image from Storage
-                                if (imageUrl != null && !imageUrl.isEmpty() && imageUrl.contains("firebasestorage.googleapis.com")) {
-                                    try {
-                                        StorageReference postImageRef = FirebaseStorage.getInstance().getReferenceFromUrl(imageUrl);
-                                        // Add image deletion task to list. Add `addOnFailureListener` to log errors but allow `whenAllComplete` to proceed.
-                                        deletionTasks.add(postImageRef.delete().addOnFailureListener(e -> Log.e(TAG, "Failed to delete post image for post " + doc.getId() + ": " + e.getMessage())));
-                                    } catch (IllegalArgumentException e) {
-                                        Log.w(TAG, "Post image URL for post " + doc.getId() + " not valid, skipping image deletion: " + e.getMessage());
-                                    }
-                                }
-                                // Add post document deletion task to list
-                                deletionTasks.add(doc.getReference().delete().addOnFailureListener(e -> Log.e(TAG, "Failed to delete post document " + doc.getId() + ": " + e.getMessage())));
-                            }
-
-                            // Execute all deletion tasks concurrently and wait for them to complete
-                            if (!deletionTasks.isEmpty()) {
-                                Tasks.whenAllComplete(deletionTasks)
-                                        .addOnCompleteListener(allTasks -> {
-                                            if (allTasks.isSuccessful()) {
-                                                Log.d(TAG, "All user posts and images deleted successfully.");
-                                            } else {
-                                                Log.e(TAG, "One or more post/image deletions failed. Errors may be logged above.");
-                                            }
-                                            onComplete.run(); // Proceed regardless of individual task success
-                                        });
-                            } else {
-                                Log.d(TAG, "No posts found for user to delete.");
-                                onComplete.run(); // No posts, proceed
-                            }
-                        } else {
-                            // Failed to query posts
-                            Log.e(TAG, "Failed to query user posts for deletion: " + task.getException());
-                            onComplete.run(); // Proceed even if query fails
-                        }
-                    });
-        } else {
-            // Not an author or posts not opted for deletion, proceed immediately
-            Log.d(TAG, "Skipping post deletion (not author or deletePosts not checked).");
-            onComplete.run();
-        }
-    }
-
-    /**
-     * Step 3 in deletion process: Deletes the user's document from Firestore.
-     * @param onComplete Callback to run after user document deletion attempt.
-     */
-    private void deleteUserDocument(Runnable onComplete) {
-        if (currentUser != null) {
-            db.collection("users").document(currentUser.getUid()).delete()
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "User document deleted from Firestore.");
-                        onComplete.run(); // Proceed
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to delete user document from Firestore: " + e.getMessage());
-                        handleDeletionFailure("Failed to delete user data.", e); // Handle and stop
-                    });
-        } else {
-            Log.e(TAG, "Current user is null, cannot delete user document.");
-            handleDeletionFailure("Authentication error during deletion.", null); // Handle and stop
-        }
-    }
-
-    /**
-     * Final step in deletion process: Deletes the user's account from Firebase Authentication.
-     * This step requires the user to have recently logged in.
-     */
-    private void deleteFirebaseAuthAccount() {
-        if (currentUser != null) {
-            currentUser.delete()
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "Firebase Authentication account deleted.");
-                        Toast.makeText(UserInfo.this, "Account deleted successfully!", Toast.LENGTH_LONG).show();
-                        signOutAndNavigateToSignIn(); // Navigate away after successful deletion
-                    })
-                    .addOnFailureListener(e -> {
-                        if (e instanceof FirebaseAuthRecentLoginRequiredException) {
-                            // User needs to re-authenticate (e.g., if session expired)
-                            Log.e(TAG, "Recent login required for account deletion.", e);
-                            handler.post(() -> showReauthenticateDialog());
-                        } else {
-                            // Other authentication errors
-                            Log.e(TAG, "Failed to delete Firebase Auth account: " + e.getMessage());
-                            handleDeletionFailure("Failed to delete account (authentication error).", e);
-                        }
-                    });
-        } else {
-            Log.e(TAG, "Current user is null, cannot delete Firebase Auth account.");
-            handleDeletionFailure("Authentication error during deletion.", null);
-        }
-    }
-
     /**
      * Displays a dialog prompting the user to re-authenticate to delete their account.
      */
@@ -949,12 +898,4 @@ public class UserInfo extends AppCompatActivity {
                 .show();
     }
 
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        // Shut down the executor service to prevent memory leaks
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdownNow();
-        }
-    }
 }
\ No newline at end of file
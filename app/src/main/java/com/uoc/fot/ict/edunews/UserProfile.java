@@ -0,0 +1,95 @@
+package com.uoc.fot.ict.edunews;
+
+import androidx.annotation.Nullable;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.Objects;
+
+/**
+ * Immutable copy of a "users" document, as held by {@link UserProfileStore}.
+ */
+public final class UserProfile {
+
+    private final String uid;
+    private final boolean exists; // False if the user has no profile document
+    private final String username;
+    private final String email;
+    private final String address;
+    private final String mobileNumber;
+    private final String profilePictureUrl;
+    private final boolean author;
+
+    public UserProfile(String uid, boolean exists, String username, String email, String address,
+                       String mobileNumber, String profilePictureUrl, boolean author) {
+        this.uid = uid;
+        this.exists = exists;
+        this.username = username;
+        this.email = email;
+        this.address = address;
+        this.mobileNumber = mobileNumber;
+        this.profilePictureUrl = profilePictureUrl;
+        this.author = author;
+    }
+
+    /**
+     * Maps a "users" document, which may not exist.
+     */
+    public static UserProfile fromSnapshot(DocumentSnapshot document) {
+        if (!document.exists()) {
+            return new UserProfile(document.getId(), false, null, null, null, null, null, false);
+        }
+        Boolean author = document.getBoolean("author");
+        return new UserProfile(
+                document.getId(),
+                true,
+                document.getString("username"),
+                document.getString("email"),
+                document.getString("address"),
+                document.getString("mobileNumber"),
+                document.getString("profilePictureUrl"),
+                author != null && author);
+    }
+
+    /**
+     * @return A copy with the fields the profile screen lets the user edit replaced.
+     */
+    public UserProfile withEdits(String username, String address, String mobileNumber, @Nullable String profilePictureUrl) {
+        return new UserProfile(uid, true, username, email, address, mobileNumber,
+                profilePictureUrl != null ? profilePictureUrl : this.profilePictureUrl, author);
+    }
+
+    public String getUid() { return uid; }
+    public boolean exists() { return exists; }
+    public String getUsername() { return username; }
+    public String getEmail() { return email; }
+    public String getAddress() { return address; }
+    public String getMobileNumber() { return mobileNumber; }
+    public String getProfilePictureUrl() { return profilePictureUrl; }
+    public boolean isAuthor() { return author; }
+
+    /** @return True if the profile has a picture to load. */
+    public boolean hasProfilePicture() {
+        return profilePictureUrl != null && !profilePictureUrl.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UserProfile)) return false;
+        UserProfile that = (UserProfile) o;
+        return exists == that.exists
+                && author == that.author
+                && Objects.equals(uid, that.uid)
+                && Objects.equals(username, that.username)
+                && Objects.equals(email, that.email)
+                && Objects.equals(address, that.address)
+                && Objects.equals(mobileNumber, that.mobileNumber)
+                && Objects.equals(profilePictureUrl, that.profilePictureUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(uid, exists, username, email, address, mobileNumber, profilePictureUrl, author);
+    }
+}
@@ -0,0 +1,241 @@
+package com.uoc.fot.ict.edunews;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Source;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * App-wide store of user profiles (the signed-in user and any author), so screens stop reading
+ * the same "users" document one after another.
+ *
+ * <ul>
+ *     <li>A profile read from the server is reused for {@link #PROFILE_TTL_MILLIS}.</li>
+ *     <li>Concurrent requests for the same user share one read (single flight).</li>
+ *     <li>A cold start shows the Firestore cache copy first, the same way {@link ReadPolicy} does.</li>
+ *     <li>Local edits are {@link #put put} here, and every observing screen sees them at once.</li>
+ * </ul>
+ * All methods must be called on the main thread; listeners are called on it too.
+ */
+public class UserProfileStore {
+
+    private static final String TAG = "UserProfileStore";
+
+    public static final long PROFILE_TTL_MILLIS = ReadPolicy.PROFILE_MAX_AGE_MILLIS;
+
+    /**
+     * Receives a user's profile.
+     */
+    public interface Listener {
+        /**
+         * Called with the known profile right away, and again whenever it changes, until the
+         * observing screen is destroyed.
+         */
+        void onProfile(UserProfile profile);
+
+        /**
+         * Called when a read fails. A cached profile may already have been delivered.
+         */
+        void onProfileError(Exception e);
+    }
+
+    private static UserProfileStore instance;
+
+    private final FirebaseFirestore db;
+    private final ReadPolicy readPolicy;
+
+    private final Map<String, UserProfile> profiles = new HashMap<>();
+    private final Map<String, Long> fetchedAt = new HashMap<>(); // elapsedRealtime of the last server read
+    private final Set<String> inFlight = new HashSet<>(); // Users with a read in progress
+    private final Map<String, List<Observer>> observers = new HashMap<>();
+
+    private UserProfileStore(Context context) {
+        db = FirebaseFirestore.getInstance();
+        readPolicy = ReadPolicy.getInstance(context);
+    }
+
+    /**
+     * @param context Any context; only the application context is retained.
+     * @return The process-wide store.
+     */
+    public static synchronized UserProfileStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new UserProfileStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Delivers a user's profile to the listener for as long as the owner is alive. A known
+     * profile is delivered immediately; a read is only started if it is missing or expired and
+     * no other read for the same user is running.
+     * @param owner The observing screen; the listener is dropped when it is destroyed.
+     * @param uid The user to observe.
+     * @param listener Receives the profile and later changes.
+     */
+    public void observe(LifecycleOwner owner, String uid, Listener listener) {
+        Observer observer = new Observer(uid, listener);
+        List<Observer> forUser = observers.get(uid);
+        if (forUser == null) {
+            forUser = new ArrayList<>();
+            observers.put(uid, forUser);
+        }
+        forUser.add(observer);
+        owner.getLifecycle().addObserver(observer);
+
+        UserProfile known = profiles.get(uid);
+        if (known != null) {
+            observer.deliver(known);
+        }
+        refresh(uid);
+    }
+
+    /**
+     * Starts reading a profile before any screen observes it, e.g. during startup, so the
+     * first screen finds it in memory. Does nothing if it is known and fresh or being read.
+     */
+    public void prefetch(String uid) {
+        refresh(uid);
+    }
+
+    /**
+     * @return The profile currently held for the user, or null if none is known yet.
+     */
+    @Nullable
+    public UserProfile peek(String uid) {
+        return profiles.get(uid);
+    }
+
+    /**
+     * Stores a profile the app has just written itself, e.g. after the user edited their
+     * profile, and hands it to every observer. It counts as freshly read.
+     */
+    public void put(UserProfile profile) {
+        fetchedAt.put(profile.getUid(), SystemClock.elapsedRealtime());
+        store(profile);
+    }
+
+    /**
+     * Forgets one user, e.g. after their account was deleted.
+     */
+    public void remove(String uid) {
+        profiles.remove(uid);
+        fetchedAt.remove(uid);
+    }
+
+    /**
+     * Forgets every profile, e.g. on sign-out.
+     */
+    public void clear() {
+        profiles.clear();
+        fetchedAt.clear();
+    }
+
+    private boolean isFresh(String uid) {
+        Long at = fetchedAt.get(uid);
+        return at != null && SystemClock.elapsedRealtime() - at < PROFILE_TTL_MILLIS;
+    }
+
+    private void refresh(String uid) {
+        if (isFresh(uid) || !inFlight.add(uid)) {
+            return; // Still valid, or another screen's read will deliver it
+        }
+        DocumentReference reference = db.collection("users").document(uid);
+        if (profiles.containsKey(uid)) {
+            readFromServer(uid, reference);
+            return;
+        }
+        // Nothing in memory (cold start): show the Firestore cache copy while the server answers
+        reference.get(Source.CACHE).addOnCompleteListener(cacheTask -> {
+            DocumentSnapshot cached = cacheTask.isSuccessful() ? cacheTask.getResult() : null;
+            if (cached != null && cached.exists()) {
+                store(UserProfile.fromSnapshot(cached));
+                if (readPolicy.isFresh(reference.getPath(), PROFILE_TTL_MILLIS)) {
+                    // Read from the server recently in an earlier process, no need to ask again
+                    fetchedAt.put(uid, SystemClock.elapsedRealtime());
+                    inFlight.remove(uid);
+                    return;
+                }
+            }
+            readFromServer(uid, reference);
+        });
+    }
+
+    private void readFromServer(String uid, DocumentReference reference) {
+        reference.get(Source.SERVER).addOnCompleteListener(task -> {
+            inFlight.remove(uid);
+            if (task.isSuccessful() && task.getResult() != null) {
+                readPolicy.markFetched(reference.getPath());
+                fetchedAt.put(uid, SystemClock.elapsedRealtime());
+                store(UserProfile.fromSnapshot(task.getResult()));
+            } else {
+                Exception e = task.getException() != null ? task.getException() : new Exception("Unknown error");
+                Log.w(TAG, "Reading profile " + uid + " failed: " + e.getMessage());
+                for (Observer observer : observersOf(uid)) {
+                    observer.listener.onProfileError(e);
+                }
+            }
+        });
+    }
+
+    private void store(UserProfile profile) {
+        profiles.put(profile.getUid(), profile);
+        for (Observer observer : observersOf(profile.getUid())) {
+            observer.deliver(profile);
+        }
+    }
+
+    private List<Observer> observersOf(String uid) {
+        List<Observer> forUser = observers.get(uid);
+        return forUser != null ? new ArrayList<>(forUser) : new ArrayList<>(); // Copy, listeners may observe again
+    }
+
+    /**
+     * One listener of one screen. Skips deliveries equal to the last one it received.
+     */
+    private final class Observer implements DefaultLifecycleObserver {
+        final String uid;
+        final Listener listener;
+        @Nullable
+        UserProfile delivered;
+
+        Observer(String uid, Listener listener) {
+            this.uid = uid;
+            this.listener = listener;
+        }
+
+        void deliver(UserProfile profile) {
+            if (!profile.equals(delivered)) {
+                delivered = profile;
+                listener.onProfile(profile);
+            }
+        }
+
+        @Override
+        public void onDestroy(@NonNull LifecycleOwner owner) {
+            List<Observer> forUser = observers.get(uid);
+            if (forUser != null) {
+                forUser.remove(this);
+                if (forUser.isEmpty()) {
+                    observers.remove(uid);
+                }
+            }
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.uoc.fot.ict.edunews;
 
 import android.content.Intent;
+import android.graphics.Rect;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.View;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.ConcatAdapter;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
@@ -15,9 +19,6 @@ import com.bumptech.glide.Glide;
 import com.google.android.material.imageview.ShapeableImageView;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.Query;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -28,20 +29,24 @@ public class home extends AppCompatActivity {
     private RecyclerView olderNewsRecyclerView;
     private ShapeableImageView profileIcon;
     private SwipeRefreshLayout swipeRefreshLayout;
+    private View headerView;
 
     private LatestNewsBannerAdapter latestNewsBannerAdapter;
     private CategoryAdapter categoryAdapter;
     private NewsArticleAdapter newsArticleAdapter;
 
-    private FirebaseFirestore db;
     private FirebaseUser currentUser; // Added to store the current user
-
-    // To keep track of the last document from the latest news query for pagination
-    private DocumentSnapshot lastDocumentOfLatestNews;
+    private PostRepository postRepository;
+    private LiveFeed liveFeed; // Null unless live updates are enabled in the profile screen
+    // The feed as loaded, newest first, before local changes from the PostStore
+    private final List<NewsArticle> loadedFeed = new ArrayList<>();
 
     // Added TAG for logging errors
     private static final String TAG = "HomeActivity";
 
+    // Request the next page of older news when this many rows are left below the screen
+    private static final int OLDER_NEWS_PREFETCH_DISTANCE = 5;
+
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -49,37 +54,71 @@ public class home extends AppCompatActivity {
         setContentView(R.layout.activity_home);
 
         initializeFirebase();
+        initializeLiveFeed();
         initializeViews();
         setupAdapters();
         setupRefreshLayout();
         loadCurrentUserProfilePicture(); // Calling the new, more robust method
-        fetchData(); // Unified method to fetch all initial data
+        fetchData(ReadPolicy.HOME_MAX_AGE_MILLIS); // Unified method to fetch all initial data
         setupListeners();
+        // Posts created, edited or deleted on this device show up without a refresh
+        PostStore.getInstance(this).observe(this, this::showHomeFeed);
     }
 
     private void initializeFirebase() {
         FirebaseAuth mAuth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
         currentUser = mAuth.getCurrentUser(); // Initialize currentUser here
+        postRepository = PostRepository.getInstance(this);
+    }
+
+    /**
+     * In live mode the feed follows new, edited and deleted posts while the screen is visible,
+     * so a swipe to refresh no longer needs to refetch anything.
+     */
+    private void initializeLiveFeed() {
+        if (!FeedSettings.isLiveUpdatesEnabled(this)) {
+            return;
+        }
+        liveFeed = new LiveFeed(this, PostSearchStore.getInstance(this), new LiveFeed.Listener() {
+            @Override
+            public void onLiveFeedChanged(List<NewsArticle> articles) {
+                showHomeFeed(articles);
+            }
+
+            @Override
+            public void onLiveFeedError(Exception e) {
+                Log.e(TAG, "Live home feed stopped: " + e.getMessage());
+            }
+        });
     }
 
     private void initializeViews() {
-        latestNewsViewPager = findViewById(R.id.latestNewsViewPager);
-        categoriesRecyclerView = findViewById(R.id.categoriesRecyclerView);
         olderNewsRecyclerView = findViewById(R.id.olderNewsRecyclerView);
-        profileIcon = findViewById(R.id.profileIcon);
         swipeRefreshLayout = findViewById(R.id.swipeRefreshLayout);
+
+        // The header scrolls as the first item of the older news list
+        headerView = getLayoutInflater().inflate(R.layout.layout_home_header, olderNewsRecyclerView, false);
+        latestNewsViewPager = headerView.findViewById(R.id.latestNewsViewPager);
+        categoriesRecyclerView = headerView.findViewById(R.id.categoriesRecyclerView);
+        profileIcon = headerView.findViewById(R.id.profileIcon);
     }
 
     private void setupRefreshLayout() {
         swipeRefreshLayout.setOnRefreshListener(() -> {
-            fetchData(); // Re-fetch all data on refresh
+            if (liveFeed != null && liveFeed.isListening()) {
+                swipeRefreshLayout.setRefreshing(false); // Already current, nothing to fetch
+                return;
+            }
+            fetchData(ReadPolicy.ALWAYS_REVALIDATE); // Re-fetch all data on refresh
         });
     }
 
-    private void fetchData() {
+    /**
+     * @param maxAgeMillis How old the cached feed may be before it is revalidated against the server.
+     */
+    private void fetchData(long maxAgeMillis) {
         swipeRefreshLayout.setRefreshing(true); // Show refreshing indicator
-        fetchLatestNews();
+        fetchHomeFeed(maxAgeMillis);
         setupCategories();
     }
 
@@ -93,12 +132,29 @@ public class home extends AppCompatActivity {
         categoriesRecyclerView.setAdapter(categoryAdapter);
 
         newsArticleAdapter = new NewsArticleAdapter(new ArrayList<>(), this::navigateToNewsDetail);
-        olderNewsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        olderNewsRecyclerView.setAdapter(newsArticleAdapter);
+        LinearLayoutManager olderNewsLayoutManager = new LinearLayoutManager(this);
+        olderNewsRecyclerView.setLayoutManager(olderNewsLayoutManager);
+        ConcatAdapter.Config concatConfig = new ConcatAdapter.Config.Builder()
+                .setStableIdMode(ConcatAdapter.Config.StableIdMode.ISOLATED_STABLE_IDS)
+                .build();
+        olderNewsRecyclerView.setAdapter(new ConcatAdapter(concatConfig, new SingleViewAdapter(headerView), newsArticleAdapter));
+        olderNewsRecyclerView.addItemDecoration(new ArticleInsetDecoration(
+                getResources().getDimensionPixelSize(R.dimen.home_article_horizontal_padding)));
+        olderNewsRecyclerView.addOnScrollListener(new PaginationScrollListener(
+                olderNewsLayoutManager, OLDER_NEWS_PREFETCH_DISTANCE, this::loadMoreOlderNews));
+        // Warm the thumbnails of the rows about to scroll in; the header is the first row
+        olderNewsRecyclerView.addOnScrollListener(new ScrollAheadPreloader(
+                this, Glide.with(this), olderNewsLayoutManager, newsArticleAdapter, 1));
+        // Hold back image loads for rows and banners that only fly past during a fling
+        FlingImagePauser flingImagePauser = new FlingImagePauser(Glide.with(this));
+        flingImagePauser.attachTo(olderNewsRecyclerView);
+        flingImagePauser.attachTo(latestNewsViewPager);
     }
 
     private void setupListeners() {
         profileIcon.setOnClickListener(v -> navigateToUserProfile());
+        // Search works on the posts indexed on this device, so it needs no sign-in or connection
+        headerView.findViewById(R.id.searchButton).setOnClickListener(v -> startActivity(new Intent(this, SearchNews.class)));
     }
 
     private void navigateToUserProfile() {
@@ -112,66 +168,134 @@ public class home extends AppCompatActivity {
     }
 
     /**
-     * Loads the current user's profile picture into the top bar icon by fetching from Firestore.
+     * Loads the current user's profile picture into the top bar icon from the shared
+     * UserProfileStore, which only reads Firestore when no other screen already has it.
      */
     private void loadCurrentUserProfilePicture() {
         if (currentUser != null) {
-            String userId = currentUser.getUid();
-            db.collection("users").document(userId).get()
-                    .addOnSuccessListener(documentSnapshot -> {
-                        if (documentSnapshot.exists()) {
-                            String profilePictureUrl = documentSnapshot.getString("profilePictureUrl");
-                            if (profilePictureUrl != null && !profilePictureUrl.isEmpty()) {
-                                Glide.with(this)
-                                        .load(profilePictureUrl)
-                                        .placeholder(R.drawable.user) // Default user icon
-                                        .error(R.drawable.user)
-                                        .into(profileIcon);
-                            } else {
-                                profileIcon.setImageResource(R.drawable.user); // Default icon if URL is null/empty
-                            }
-                        } else {
-                            profileIcon.setImageResource(R.drawable.user); // Default icon if user doc not found
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to load profile picture for top bar: " + e.getMessage());
-                        profileIcon.setImageResource(R.drawable.user); // Fallback to default icon on error
-                    });
+            UserProfileStore.getInstance(this).observe(this, currentUser.getUid(), new UserProfileStore.Listener() {
+                @Override
+                public void onProfile(UserProfile profile) {
+                    if (isFinishing() || isDestroyed()) {
+                        return;
+                    }
+                    if (profile.hasProfilePicture()) {
+                        Glide.with(home.this)
+                                .load(profile.getProfilePictureUrl())
+                                .apply(ImageRequests.avatar(profileIcon))
+                                .placeholder(R.drawable.user) // Default user icon
+                                .error(R.drawable.user)
+                                .into(profileIcon);
+                    } else {
+                        profileIcon.setImageResource(R.drawable.user); // Default icon if there is no picture or no profile
+                    }
+                }
+
+                @Override
+                public void onProfileError(Exception e) {
+                    Log.e(TAG, "Failed to load profile picture for top bar: " + e.getMessage());
+                    // A cached picture may already be shown; the icon keeps whatever it has
+                }
+            });
         } else {
             profileIcon.setImageResource(R.drawable.user); // Default icon if no user logged in
         }
     }
 
 
-    private void fetchLatestNews() {
-        db.collection("posts")
-                .orderBy("postDate", Query.Direction.DESCENDING)
-                .limit(5)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        List<NewsArticle> latestNews = new ArrayList<>();
-                        for (DocumentSnapshot document : task.getResult().getDocuments()) {
-                            latestNews.add(mapDocumentToNewsArticle(document));
-                        }
-                        latestNewsBannerAdapter.updateData(latestNews);
-
-                        if (!task.getResult().getDocuments().isEmpty()) {
-                            lastDocumentOfLatestNews = task.getResult().getDocuments().get(task.getResult().size() - 1);
-                            fetchOlderNews();
-                        } else {
-                            lastDocumentOfLatestNews = null;
-                            newsArticleAdapter.updateData(new ArrayList<>());
-                            Toast.makeText(this, "No latest news found for banners.", Toast.LENGTH_SHORT).show();
-                            swipeRefreshLayout.setRefreshing(false);
-                        }
-                    } else {
-                        Log.e(TAG, "Error fetching latest news: " + task.getException().getMessage());
-                        Toast.makeText(this, "Error fetching latest news: " + task.getException().getMessage(), Toast.LENGTH_SHORT).show();
-                        swipeRefreshLayout.setRefreshing(false);
-                    }
-                });
+    /**
+     * Loads the home feed through the repository. A cached copy is shown immediately when
+     * available, and the list is updated again once Firestore answers. In live mode the
+     * server result is then followed by the LiveFeed.
+     *
+     * @param maxAgeMillis How old the cached feed may be before it is revalidated against the server.
+     */
+    private void fetchHomeFeed(long maxAgeMillis) {
+        postRepository.loadHomeFeed(maxAgeMillis, new PostRepository.FeedCallback() {
+            @Override
+            public void onArticlesLoaded(List<NewsArticle> articles, boolean fromCache) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                // First page plus any pages already scrolled through
+                List<NewsArticle> feed = new ArrayList<>(articles);
+                feed.addAll(postRepository.getLoadedHomePages());
+                showHomeFeed(feed);
+
+                if (fromCache) {
+                    return; // Keep the refresh indicator while revalidating against the server
+                }
+                swipeRefreshLayout.setRefreshing(false);
+                if (liveFeed != null) {
+                    liveFeed.seed(postRepository.homeQuery(), postRepository.sortField(), true, feed);
+                }
+                if (articles.isEmpty()) {
+                    Toast.makeText(home.this, "No news articles found in the database.", Toast.LENGTH_SHORT).show();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                Log.e(TAG, "Error fetching home feed: " + e.getMessage());
+                Toast.makeText(home.this, "Error fetching latest news: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                swipeRefreshLayout.setRefreshing(false);
+            }
+        });
+    }
+
+    /**
+     * Replaces the loaded feed and shows it.
+     *
+     * @param loaded All loaded articles, newest first.
+     */
+    private void showHomeFeed(List<NewsArticle> loaded) {
+        loadedFeed.clear();
+        loadedFeed.addAll(loaded);
+        showHomeFeed();
+    }
+
+    /**
+     * Shows the home feed with the local changes of the PostStore laid over it: the first 5
+     * articles fill the banner pager and the rest fill the older news list. Both adapters diff
+     * against what is already shown.
+     */
+    private void showHomeFeed() {
+        List<NewsArticle> feed = PostStore.getInstance(this).applyTo(loadedFeed, article -> true, true, false);
+        int bannerCount = Math.min(PostRepository.HOME_BANNER_COUNT, feed.size());
+        latestNewsBannerAdapter.updateData(new ArrayList<>(feed.subList(0, bannerCount)));
+        newsArticleAdapter.updateData(new ArrayList<>(feed.subList(bannerCount, feed.size())));
+    }
+
+    /**
+     * Loads the next page of older news and appends it to the list. Called while the user
+     * scrolls near the end of the list; the repository ignores calls while a page is in flight.
+     */
+    private void loadMoreOlderNews() {
+        postRepository.loadNextHomePage(new PostRepository.PageCallback() {
+            @Override
+            public void onPageLoaded(List<NewsArticle> page, boolean endReached) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                // In live mode the LiveFeed republishes the whole feed with the page at the end
+                if (liveFeed == null || !liveFeed.appendPage(page)) {
+                    loadedFeed.addAll(page);
+                    showHomeFeed();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                Log.e(TAG, "Error fetching older news: " + e.getMessage());
+                Toast.makeText(home.this, "Error fetching older news: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private void setupCategories() {
@@ -202,56 +326,6 @@ public class home extends AppCompatActivity {
         startActivity(intent);
     }
 
-    private void fetchOlderNews() {
-        Query query = db.collection("posts")
-                .orderBy("postDate", Query.Direction.DESCENDING);
-
-        if (lastDocumentOfLatestNews != null) {
-            query = query.startAfter(lastDocumentOfLatestNews);
-        } else {
-            Toast.makeText(this, "No specific starting point for older news, fetching overall latest.", Toast.LENGTH_SHORT).show();
-        }
-
-        query.limit(30)
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        List<NewsArticle> olderNews = new ArrayList<>();
-                        for (DocumentSnapshot document : task.getResult().getDocuments()) {
-                            olderNews.add(mapDocumentToNewsArticle(document));
-                        }
-                        newsArticleAdapter.updateData(olderNews);
-                        if (olderNews.isEmpty() && lastDocumentOfLatestNews != null) {
-                            Toast.makeText(this, "No more older news found.", Toast.LENGTH_SHORT).show();
-                        } else if (olderNews.isEmpty() && lastDocumentOfLatestNews == null) {
-                            Toast.makeText(this, "No news articles found in the database.", Toast.LENGTH_SHORT).show();
-                        }
-                    } else {
-                        Log.e(TAG, "Error fetching older news: " + task.getException().getMessage());
-                        Toast.makeText(this, "Error fetching older news: " + task.getException().getMessage(), Toast.LENGTH_SHORT).show();
-                    }
-                    swipeRefreshLayout.setRefreshing(false);
-                });
-    }
-
-    private NewsArticle mapDocumentToNewsArticle(DocumentSnapshot document) {
-        String id = document.getId();
-        String title = document.getString("title");
-        String category = document.getString("category");
-        String description = document.getString("description");
-        String imageUrl = document.getString("imageUrl");
-        String author = document.getString("author");
-
-        String postDate = document.getString("postDate");
-        if (postDate == null) {
-            postDate = "";
-        }
-
-        String userId = document.getString("userId");
-
-        return new NewsArticle(id, title, description, imageUrl, postDate, category, author, userId);
-    }
-
     /**
      * Callback method when a news article card is clicked.
      * Navigates to the News activity for the selected article.
@@ -259,10 +333,30 @@ public class home extends AppCompatActivity {
      * @param newsArticle The NewsArticle object that was clicked.
      */
     private void navigateToNewsDetail(NewsArticle newsArticle) {
+        ArticleHandoff.put(newsArticle); // Lets the article screen draw it before Firestore answers
         Intent intent = new Intent(this, news.class);
         intent.putExtra("NEWS_ARTICLE_ID", newsArticle.getId());
         startActivity(intent);
 
         Toast.makeText(this, "Opening article: " + newsArticle.getTitle(), Toast.LENGTH_SHORT).show();
     }
-}
\ No newline at end of file
+
+    /**
+     * Insets the older news cards horizontally without affecting the full-width header item.
+     */
+    private static class ArticleInsetDecoration extends RecyclerView.ItemDecoration {
+        private final int horizontalInset;
+
+        ArticleInsetDecoration(int horizontalInset) {
+            this.horizontalInset = horizontalInset;
+        }
+
+        @Override
+        public void getItemOffsets(@NonNull Rect outRect, @NonNull View view, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+            if (parent.getChildViewHolder(view) instanceof NewsArticleAdapter.ArticleViewHolder) {
+                outRect.left = horizontalInset;
+                outRect.right = horizontalInset;
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.uoc.fot.ict.edunews;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.View;
 import android.widget.ImageButton;
@@ -12,15 +13,13 @@ import android.widget.Toast;
 import android.widget.ScrollView; // Explicitly import ScrollView
 
 import androidx.activity.OnBackPressedCallback;
-import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.constraintlayout.widget.ConstraintLayout;
 import androidx.constraintlayout.widget.ConstraintSet;
 import androidx.transition.TransitionManager; // For smooth animations
 
 import com.bumptech.glide.Glide;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.material.card.MaterialCardView; // Import MaterialCardView
 import com.google.android.material.imageview.ShapeableImageView;
 import com.google.firebase.auth.FirebaseAuth;
@@ -29,10 +28,7 @@ import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.FirebaseFirestore;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.util.Objects;
 
 /**
  * The 'news' (NewsArticleActivity) displays a detailed view of a single news article.
@@ -72,6 +68,9 @@ public class news extends AppCompatActivity {
 
     // Article Data
     private String currentArticleId;
+    private boolean articleShown; // True once a copy of the article (handed over, cached or fresh) is on screen
+    private String shownImageUrl; // Image currently loaded into the hero view, to skip reloading it
+    private boolean localVersionShown; // True while this device's unsaved version of the post is on screen
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -87,6 +86,12 @@ public class news extends AppCompatActivity {
         Intent intent = getIntent();
         if (intent != null && intent.hasExtra("NEWS_ARTICLE_ID")) {
             currentArticleId = intent.getStringExtra("NEWS_ARTICLE_ID");
+            // Draw the article the list handed over right away, then revalidate it
+            NewsArticle handedOff = ArticleHandoff.get(currentArticleId);
+            if (handedOff != null) {
+                showArticle(handedOff, null);
+            }
+            PostStore.getInstance(this).observe(this, this::onLocalPostsChanged);
             fetchNewsArticle(currentArticleId); // Always attempt to fetch the current article
         } else {
             // If no article ID is provided at all, show a toast and close the activity
@@ -226,17 +231,22 @@ public class news extends AppCompatActivity {
 
     /**
      * Fetches the news article data from Firestore using the provided article ID.
-     * Populates the UI elements with the fetched data.
+     * The cached copy is shown first; the server copy replaces it only if it differs, and the
+     * server is skipped entirely if it was asked less than ReadPolicy.ARTICLE_MAX_AGE_MILLIS ago.
+     * If the article was handed over by the list it is already on screen, and each copy only
+     * patches the fields that differ from it.
      * This method includes checks to prevent Glide from loading images into a destroyed activity.
      * @param articleId The document ID of the news article in Firestore's "posts" collection.
      */
     private void fetchNewsArticle(String articleId) {
-        progressBar.setVisibility(View.VISIBLE); // Show progress bar
+        if (!articleShown) {
+            progressBar.setVisibility(View.VISIBLE); // Show progress bar only if there is nothing to look at yet
+        }
         DocumentReference docRef = db.collection("posts").document(articleId);
 
-        docRef.get().addOnSuccessListener(new OnSuccessListener<DocumentSnapshot>() {
+        ReadPolicy.getInstance(this).getDocument(docRef, ReadPolicy.ARTICLE_MAX_AGE_MILLIS, new ReadPolicy.DocumentCallback() {
             @Override
-            public void onSuccess(DocumentSnapshot documentSnapshot) {
+            public void onDocument(DocumentSnapshot documentSnapshot, boolean fromCache) {
                 progressBar.setVisibility(View.GONE); // Hide progress bar on success
 
                 // Crucial: Check if the activity is still valid before performing UI operations
@@ -245,91 +255,24 @@ public class news extends AppCompatActivity {
                     return;
                 }
 
+                if (showPendingVersion()) {
+                    // Not saved yet: the server has no copy, or a pending one without the image
+                    return;
+                }
                 if (documentSnapshot.exists()) {
-                    // Retrieve data from DocumentSnapshot, ensuring field names match Firestore.
-                    String title = documentSnapshot.getString("title");
-                    String description = documentSnapshot.getString("description");
-                    String imageUrl = documentSnapshot.getString("imageUrl");
-                    String postDate = documentSnapshot.getString("postDate");
-                    String author = documentSnapshot.getString("author");
-                    Boolean edited = documentSnapshot.getBoolean("edited");
-                    String editDate = documentSnapshot.getString("editDate");
-                    Boolean isAnonymousPost = documentSnapshot.getBoolean("isAnonymousPost");
-
-                    // Populate UI elements
-                    newsArticleTitleTextView.setText(title);
-                    newsArticleDescriptionTextView.setText(description);
-
-                    // Display author, considering anonymous status
-                    String authorToDisplay = "Unknown Author";
-                    if (isAnonymousPost != null && isAnonymousPost) {
-                        authorToDisplay = "Anonymous";
-                    } else if (author != null && !author.isEmpty()) {
-                        authorToDisplay = author;
-                    }
-                    newsArticleAuthorTextView.setText("By: " + authorToDisplay);
-
-                    // Format and display date and time
-                    if (postDate != null && !postDate.isEmpty()) {
-                        try {
-                            SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-                            Date date = inputFormat.parse(postDate);
-                            SimpleDateFormat outputTimeFormat = new SimpleDateFormat("hh:mm a", Locale.getDefault());
-                            SimpleDateFormat outputDateFormat = new SimpleDateFormat("yyyy.MM.dd", Locale.getDefault());
-
-                            String formattedTime = outputTimeFormat.format(date);
-                            String formattedDate = outputDateFormat.format(date);
-                            newsArticleDateTimeTextView.setText(formattedTime + " | " + formattedDate);
-                            newsArticleDateTimeTextView.setVisibility(View.VISIBLE);
-                        } catch (ParseException e) {
-                            Log.e(TAG, "Error parsing post date: " + postDate, e);
-                            newsArticleDateTimeTextView.setText(postDate); // Fallback to raw date string
-                            newsArticleDateTimeTextView.setVisibility(View.VISIBLE);
-                        }
-                    } else {
-                        newsArticleDateTimeTextView.setVisibility(View.GONE);
-                    }
-
-                    // Handle "Edited" status and display
-                    if (edited != null && edited && editDate != null && !editDate.isEmpty()) {
-                        try {
-                            SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-                            Date date = inputFormat.parse(editDate);
-                            SimpleDateFormat outputFormat = new SimpleDateFormat("yyyy.MM.dd | hh:mm a", Locale.getDefault());
-                            String formattedEditDate = outputFormat.format(date);
-                            editedTextView.setText("Edited: " + formattedEditDate);
-                            editedTextView.setVisibility(View.VISIBLE);
-                        } catch (ParseException e) {
-                            Log.e(TAG, "Error parsing edit date: " + editDate, e);
-                            editedTextView.setText("Edited"); // Fallback
-                            editedTextView.setVisibility(View.VISIBLE);
-                        }
-                    } else {
-                        editedTextView.setVisibility(View.GONE);
-                    }
-
-                    // Load image using Glide library
-                    if (imageUrl != null && !imageUrl.isEmpty()) {
-                        Glide.with(news.this)
-                                .load(imageUrl)
-                                .placeholder(R.drawable.circular_background_grey) // Placeholder
-                                .error(R.drawable.cross) // Error image
-                                .into(newsArticleImageView);
-                    } else {
-                        newsArticleImageView.setImageResource(R.drawable.renew); // Default image if no URL
-                    }
-
-                    // Update top bar title
-                    postTitleTextView.setText(title);
-
+                    showArticle(NewsArticle.fromSnapshot(documentSnapshot), documentSnapshot);
                 } else {
+                    if (!fromCache) {
+                        // Deleted since it was indexed, e.g. opened from search results found offline
+                        PostSearchStore.getInstance(news.this).remove(articleId);
+                    }
                     Toast.makeText(news.this, "News article not found.", Toast.LENGTH_SHORT).show();
                     finish(); // Close activity
                 }
             }
-        }).addOnFailureListener(new OnFailureListener() {
+
             @Override
-            public void onFailure(@NonNull Exception e) {
+            public void onError(Exception e) {
                 progressBar.setVisibility(View.GONE); // Hide progress bar on failure
 
                 // Crucial: Check if the activity is still valid before showing Toast/logging
@@ -337,6 +280,11 @@ public class news extends AppCompatActivity {
                     Log.d(TAG, "Activity is no longer valid, skipping error UI updates.");
                     return;
                 }
+                if (articleShown) {
+                    // The cached copy stays on screen; it just could not be revalidated
+                    Log.w(TAG, "Could not refresh article, showing cached copy: " + e.getMessage());
+                    return;
+                }
 
                 Toast.makeText(news.this, "Error loading news article: " + (e != null ? e.getMessage() : "Unknown error"), Toast.LENGTH_LONG).show();
                 Log.e(TAG, "Error fetching document: " + (e != null ? e.getMessage() : "Unknown error"), e);
@@ -346,48 +294,153 @@ public class news extends AppCompatActivity {
     }
 
     /**
-     * Loads the current user's profile picture into the top bar icon.
-     * Fetches the URL from Firestore's "users" collection.
-     * Includes checks to prevent Glide from loading images into a destroyed activity.
+     * Shows this device's version of the post while one of its changes is still uploading, with
+     * its local image. A pending deletion is left to the server copy.
+     * @return True if the local version is shown.
+     */
+    private boolean showPendingVersion() {
+        PostStore store = PostStore.getInstance(this);
+        NewsArticle local = store.isPending(currentArticleId) ? store.get(currentArticleId) : null;
+        if (local == null) {
+            return false;
+        }
+        showArticle(local, null);
+        localVersionShown = true;
+        return true;
+    }
+
+    /**
+     * Follows the post's local changes: a new pending version is shown, and once it is saved (or
+     * rolled back) the article is read again.
+     */
+    private void onLocalPostsChanged() {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        if (!showPendingVersion() && localVersionShown) {
+            localVersionShown = false;
+            fetchNewsArticle(currentArticleId);
+        }
+    }
+
+    /**
+     * Populates the UI with an article. Only views whose content differs from what is already
+     * shown are touched, so revalidating a handed-over article does not flicker or reload the image.
+     * @param article The article to show.
+     * @param document The post document the article was mapped from, or null for a handed-over
+     * article. Fields the lists do not carry (anonymity, edit status) are only read from it.
+     */
+    private void showArticle(NewsArticle article, @Nullable DocumentSnapshot document) {
+        // Populate UI elements
+        setTextIfChanged(newsArticleTitleTextView, article.getTitle());
+        setTextIfChanged(newsArticleDescriptionTextView, article.getDescription());
+
+        // Display author, considering anonymous status
+        Boolean isAnonymousPost = document != null ? document.getBoolean("isAnonymousPost") : null;
+        String authorToDisplay = "Unknown Author";
+        if (isAnonymousPost != null && isAnonymousPost) {
+            authorToDisplay = "Anonymous";
+        } else if (article.getAuthor() != null && !article.getAuthor().isEmpty()) {
+            authorToDisplay = article.getAuthor();
+        }
+        setTextIfChanged(newsArticleAuthorTextView, "By: " + authorToDisplay);
+
+        // Format and display date and time using the shared formatters
+        String postDate = article.getPostDate();
+        if (article.hasPostDate()) {
+            setTextIfChanged(newsArticleDateTimeTextView, PostDates.formatForDetail(article.getPostDateMillis()));
+            newsArticleDateTimeTextView.setVisibility(View.VISIBLE);
+        } else if (postDate != null && !postDate.isEmpty()) {
+            setTextIfChanged(newsArticleDateTimeTextView, postDate); // Fallback to raw date string
+            newsArticleDateTimeTextView.setVisibility(View.VISIBLE);
+        } else {
+            newsArticleDateTimeTextView.setVisibility(View.GONE);
+        }
+
+        // Handle "Edited" status and display; a handed-over article leaves it to the document
+        if (document != null) {
+            Boolean edited = document.getBoolean("edited");
+            if (edited != null && edited) {
+                long editDateMillis = PostDates.readMillis(document, PostDates.EDIT_TIMESTAMP_FIELD, "editDate");
+                if (editDateMillis != PostDates.UNKNOWN) {
+                    setTextIfChanged(editedTextView, "Edited: " + PostDates.formatForEdited(editDateMillis));
+                } else {
+                    setTextIfChanged(editedTextView, "Edited"); // Fallback
+                }
+                editedTextView.setVisibility(View.VISIBLE);
+            } else {
+                editedTextView.setVisibility(View.GONE);
+            }
+        }
+
+        // Smallest stored variant that fills the screen width (full size on large screens)
+        String imageUrl = article.getImageUrlFor(getResources().getDisplayMetrics().widthPixels);
+        if (!articleShown || !Objects.equals(imageUrl, shownImageUrl)) {
+            shownImageUrl = imageUrl;
+            if (imageUrl != null && !imageUrl.isEmpty()) {
+                // While the hero image loads, show the list thumbnail if it is still in memory
+                String thumbnailUrl = article.getImageUrlFor(getResources().getDimensionPixelSize(R.dimen.article_thumbnail_max_edge));
+                Glide.with(news.this)
+                        .load(imageUrl)
+                        .apply(ImageRequests.detail(news.this))
+                        .thumbnail(Glide.with(news.this)
+                                .load(thumbnailUrl)
+                                .apply(ImageRequests.list(news.this).onlyRetrieveFromCache(true)))
+                        .placeholder(R.drawable.circular_background_grey) // Placeholder
+                        .error(R.drawable.cross) // Error image
+                        .into(newsArticleImageView);
+            } else {
+                Glide.with(news.this).clear(newsArticleImageView);
+                newsArticleImageView.setImageResource(R.drawable.renew); // Default image if no URL
+            }
+        }
+
+        // Update top bar title
+        setTextIfChanged(postTitleTextView, article.getTitle());
+        articleShown = true;
+    }
+
+    /**
+     * Sets the text only if it differs, to avoid relayouts when a revalidated copy is unchanged.
+     */
+    private static void setTextIfChanged(TextView view, CharSequence text) {
+        if (!TextUtils.equals(view.getText(), text)) {
+            view.setText(text);
+        }
+    }
+
+    /**
+     * Loads the current user's profile picture into the top bar icon from the shared
+     * UserProfileStore, which only reads Firestore when no other screen already has it.
      */
     private void loadCurrentUserProfilePicture() {
         if (currentUser != null) {
-            String userId = currentUser.getUid();
-            db.collection("users").document(userId).get()
-                    .addOnSuccessListener(documentSnapshot -> {
-                        // Crucial: Check if the activity is still valid before performing UI operations
-                        if (isFinishing() || isDestroyed()) {
-                            Log.d(TAG, "Activity is no longer valid, skipping profile picture load.");
-                            return;
-                        }
-
-                        if (documentSnapshot.exists()) {
-                            String profilePictureUrl = documentSnapshot.getString("profilePictureUrl");
-                            if (profilePictureUrl != null && !profilePictureUrl.isEmpty()) {
-                                Glide.with(this)
-                                        .load(profilePictureUrl)
-                                        .placeholder(R.drawable.user) // Default user icon as placeholder
-                                        .error(R.drawable.user) // Default user icon on error
-                                        .into(profileIconImageView);
-                            } else {
-                                profileIconImageView.setImageResource(R.drawable.user); // Default icon if URL is empty/null
-                            }
-                        } else {
-                            profileIconImageView.setImageResource(R.drawable.user); // Default icon if user doc not found
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to load profile picture for top bar: " + (e != null ? e.getMessage() : "Unknown error"));
-                        // Even on failure, check activity state before setting image
-                        if (!isFinishing() && !isDestroyed()) {
-                            profileIconImageView.setImageResource(R.drawable.user);
-                        }
-                    });
+            UserProfileStore.getInstance(this).observe(this, currentUser.getUid(), new UserProfileStore.Listener() {
+                @Override
+                public void onProfile(UserProfile profile) {
+                    if (isFinishing() || isDestroyed()) {
+                        return;
+                    }
+                    if (profile.hasProfilePicture()) {
+                        Glide.with(news.this)
+                                .load(profile.getProfilePictureUrl())
+                                .apply(ImageRequests.avatar(profileIconImageView))
+                                .placeholder(R.drawable.user) // Default user icon
+                                .error(R.drawable.user)
+                                .into(profileIconImageView);
+                    } else {
+                        profileIconImageView.setImageResource(R.drawable.user); // Default icon if there is no picture or no profile
+                    }
+                }
+
+                @Override
+                public void onProfileError(Exception e) {
+                    Log.e(TAG, "Failed to load profile picture for top bar: " + e.getMessage());
+                    // A cached picture may already be shown; the icon keeps whatever it has
+                }
+            });
         } else {
-            // No user logged in, set default icon if activity is still valid
-            if (!isFinishing() && !isDestroyed()) {
-                profileIconImageView.setImageResource(R.drawable.user);
-            }
+            profileIconImageView.setImageResource(R.drawable.user); // Default icon if no user logged in
         }
     }
-}
+}
\ No newline at end of file
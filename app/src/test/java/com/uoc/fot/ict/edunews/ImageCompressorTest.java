@@ -0,0 +1,41 @@
+package com.uoc.fot.ict.edunews;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Local unit tests for the sample size {@link ImageCompressor} decodes picked images with.
+ */
+public class ImageCompressorTest {
+
+    @Test
+    public void sampleSizeFor_smallImageIsNotSampled() {
+        assertEquals(1, ImageCompressor.sampleSizeFor(1000, 800, 2048));
+    }
+
+    @Test
+    public void sampleSizeFor_keepsTheLongEdgeAtLeastMaxEdge() {
+        assertEquals(16, ImageCompressor.sampleSizeFor(8000, 6000, 480)); // 500 px, the next step would be 250
+        assertEquals(2, ImageCompressor.sampleSizeFor(4096, 100, 2048)); // Exactly maxEdge is still enough
+    }
+
+    @Test
+    public void sampleSizeFor_budgetWinsOverTheEdge() {
+        // 4000 x 3000 at 4 bytes a pixel is 48 MB, twice the budget, though 4000 px is only just over 2048
+        assertEquals(2, ImageCompressor.sampleSizeFor(4000, 3000, 2048));
+        // A large maxEdge alone would not sample at all; the budget takes it down to 1500 x 1125
+        assertEquals(8, ImageCompressor.sampleSizeFor(12000, 9000, 8192));
+    }
+
+    @Test
+    public void sampleSizeFor_alwaysFitsTheBudget() {
+        int[][] sizes = {{4000, 3000}, {12000, 9000}, {30000, 1000}, {6000, 6000}};
+        for (int[] size : sizes) {
+            int sampleSize = ImageCompressor.sampleSizeFor(size[0], size[1], 8192);
+            long bytes = (long) (size[0] / sampleSize) * (size[1] / sampleSize) * 4;
+            assertTrue(size[0] + " x " + size[1], bytes <= ImageCompressor.DECODE_BUDGET_BYTES);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.uoc.fot.ict.edunews;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+
+/**
+ * Local unit tests for the bound that ends a {@link LiveFeed} window at the last shown post.
+ */
+public class LiveFeedTest {
+
+    private static NewsArticle postedAt(String postDate) {
+        return new NewsArticle("post", "Title", "Text", null, postDate, "News", "Author", "user");
+    }
+
+    @Test
+    public void boundaryOf_beforeRolloutIsTheLegacyString() {
+        // Feeds order by the "postDate" string until the timestamp rollout, in both directions
+        NewsArticle last = postedAt("2025-06-15 10:30:00");
+        assertEquals("2025-06-15 10:30:00", LiveFeed.boundaryOf(PostSortKey.LEGACY_FIELD, last, true));
+        assertEquals("2025-06-15 10:30:00", LiveFeed.boundaryOf(PostSortKey.LEGACY_FIELD, last, false));
+    }
+
+    @Test
+    public void boundaryOf_postWithoutDateHasNoBound() {
+        assertNull(LiveFeed.boundaryOf(PostSortKey.LEGACY_FIELD, postedAt(""), true));
+        assertNull(LiveFeed.boundaryOf(PostDates.POST_TIMESTAMP_FIELD, postedAt(""), true));
+    }
+
+    @Test
+    public void boundaryOf_afterRolloutIsATimestampThatIncludesThePost() {
+        NewsArticle last = postedAt("2025-06-15 10:30:00");
+        last.setPostDateMillis(1_750_000_000_123L);
+        Object newestFirst = LiveFeed.boundaryOf(PostDates.POST_TIMESTAMP_FIELD, last, true);
+        Object oldestFirst = LiveFeed.boundaryOf(PostDates.POST_TIMESTAMP_FIELD, last, false);
+        assertTrue(newestFirst instanceof Timestamp);
+        assertEquals(new Timestamp(1_750_000_000L, 123_000_000), newestFirst);
+        // Rounded up, so a stored timestamp with sub-millisecond digits is still inside the window
+        assertEquals(new Timestamp(1_750_000_000L, 124_000_000), oldestFirst);
+    }
+}
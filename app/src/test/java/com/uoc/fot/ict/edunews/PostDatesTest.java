@@ -0,0 +1,41 @@
+package com.uoc.fot.ict.edunews;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Local unit tests for parsing the stored "yyyy-MM-dd HH:mm:ss" post dates. Malformed strings
+ * are left out: they are logged through android.util.Log, which is not available here.
+ */
+public class PostDatesTest {
+
+    @Test
+    public void parseStored_readsTheStringInTheGivenZone() {
+        assertEquals(Instant.parse("2025-06-15T10:30:00Z").toEpochMilli(),
+                PostDates.parseStored("2025-06-15 10:30:00", ZoneOffset.UTC));
+        // Asia/Colombo is UTC+05:30, the default zone of the backfill
+        assertEquals(Instant.parse("2025-06-15T05:00:00Z").toEpochMilli(),
+                PostDates.parseStored("2025-06-15 10:30:00", ZoneId.of("Asia/Colombo")));
+    }
+
+    @Test
+    public void parseStored_missingDateIsUnknown() {
+        assertEquals(PostDates.UNKNOWN, PostDates.parseStored(null, ZoneOffset.UTC));
+        assertEquals(PostDates.UNKNOWN, PostDates.parseStored("", ZoneOffset.UTC));
+    }
+
+    @Test
+    public void parseStored_stringOrderIsDateOrder() {
+        // Feeds order by the string until the timestamp rollout is done, see PostSortKey
+        String earlier = "2024-12-31 23:59:59";
+        String later = "2025-01-01 00:00:00";
+        assertTrue(earlier.compareTo(later) < 0);
+        assertTrue(PostDates.parseStored(earlier, ZoneOffset.UTC) < PostDates.parseStored(later, ZoneOffset.UTC));
+    }
+}
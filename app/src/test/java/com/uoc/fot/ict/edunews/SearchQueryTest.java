@@ -0,0 +1,66 @@
+package com.uoc.fot.ict.edunews;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Local unit tests for {@link SearchQuery} parsing, its FTS expression and term frequency.
+ */
+public class SearchQueryTest {
+
+    @Test
+    public void parse_wordsBecomePrefixes() {
+        assertEquals("edu* exam*", SearchQuery.parse("Edu  exam").toMatchExpression());
+    }
+
+    @Test
+    public void parse_quotedTextBecomesAPhrase() {
+        // Prefixes come first, then phrases
+        assertEquals("cafe* \"exam results\"", SearchQuery.parse("\"Exam Results\" café").toMatchExpression());
+    }
+
+    @Test
+    public void parse_unclosedQuoteRunsToTheEnd() {
+        assertEquals("news* \"exam res\"", SearchQuery.parse("news \"exam res").toMatchExpression());
+    }
+
+    @Test
+    public void parse_operatorsAreOnlyWords() {
+        assertEquals("edu* or* exam*", SearchQuery.parse("edu OR -exam*").toMatchExpression());
+    }
+
+    @Test
+    public void parse_blankTextIsEmpty() {
+        assertTrue(SearchQuery.parse(null).isEmpty());
+        assertTrue(SearchQuery.parse("").isEmpty());
+        assertTrue(SearchQuery.parse("  \"\" ").isEmpty());
+        assertFalse(SearchQuery.parse("a").isEmpty());
+    }
+
+    @Test
+    public void frequencyIn_countsEveryTokenAPrefixMatches() {
+        String[] tokens = {"examination", "results", "exam", "day"};
+        assertEquals(2, SearchQuery.parse("exam").frequencyIn(tokens));
+    }
+
+    @Test
+    public void frequencyIn_countsWholePhrasesOnly() {
+        String[] tokens = {"exam", "results", "of", "exam"};
+        assertEquals(1, SearchQuery.parse("\"exam results\"").frequencyIn(tokens));
+    }
+
+    @Test
+    public void frequencyIn_quotedWordIsNotAPrefix() {
+        assertEquals(0, SearchQuery.parse("\"exam\"").frequencyIn(new String[]{"examination"}));
+    }
+
+    @Test
+    public void frequencyIn_addsPrefixAndPhraseHits() {
+        String[] tokens = {"exam", "results", "exam", "exams"};
+        // "exam" prefixes three tokens, the phrase occurs once
+        assertEquals(4, SearchQuery.parse("exam \"exam results\"").frequencyIn(tokens));
+    }
+}
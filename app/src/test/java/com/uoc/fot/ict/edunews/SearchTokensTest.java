@@ -0,0 +1,49 @@
+package com.uoc.fot.ict.edunews;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Local unit tests for {@link SearchTokens}: indexed text and queries must normalize the same way.
+ */
+public class SearchTokensTest {
+
+    @Test
+    public void normalize_lowercasesAndStripsAccents() {
+        assertEquals("cafe", SearchTokens.normalize("Café"));
+        assertEquals("ecole uber naive", SearchTokens.normalize("ÉCOLE Über naïve"));
+    }
+
+    @Test
+    public void normalize_ignoresTheDeviceLocale() {
+        // Root locale: "I" never becomes a dotless "ı" as it would in Turkish
+        assertEquals("title", SearchTokens.normalize("TITLE"));
+    }
+
+    @Test
+    public void normalize_nullAndEmptyGiveEmpty() {
+        assertEquals("", SearchTokens.normalize(null));
+        assertEquals("", SearchTokens.normalize(""));
+    }
+
+    @Test
+    public void tokenize_splitsOnAnythingButLettersAndDigits() {
+        assertEquals(Arrays.asList("exam", "results", "2025", "cafe"),
+                SearchTokens.tokenize("Exam-results, 2025! (Café)"));
+    }
+
+    @Test
+    public void tokenize_keepsRepeatsInOrder() {
+        assertEquals(Arrays.asList("news", "and", "news"), SearchTokens.tokenize("News and news"));
+    }
+
+    @Test
+    public void tokenize_blankTextHasNoTokens() {
+        assertEquals(Collections.emptyList(), SearchTokens.tokenize("  ,. "));
+        assertEquals(Collections.emptyList(), SearchTokens.tokenize(null));
+    }
+}